@@ -0,0 +1,268 @@
+package com.dpg.crowdscout.network;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import com.crowdscout.api.models.instagram.InstagramMedia;
+import com.dpg.crowdscout.models.LocationModel;
+import com.dpg.crowdscout.models.VenueSummary;
+import com.dpg.crowdscout.utils.BitmapPool;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drives RestClient and the image download path at a fixed concurrency and reports throughput and latency, so
+ * performance changes can be compared against a stand-in server (see tools/standin-server) with a reproducible
+ * baseline.
+ * <p/>
+ * Calls alternate between explore requests for venue summaries, cycling through every VenueFilter, and media
+ * requests for the venues returned so far. Every call bypasses the ResponseCache, unless the harness revalidates:
+ * then calls go through the cache, whose entries are all treated as stale, so that repeated calls are served from
+ * the cache and revalidated in the background, which the stand-in server answers with 304. Images referenced by
+ * the media are downloaded and decoded on a separate pool. Once all calls complete, and any revalidations with
+ * them, the results and the NetworkMetrics of every endpoint are logged.
+ * <p/>
+ * Debug builds only. Must be started on the UI thread
+ */
+public class LoadHarness {
+    private static final String LOG_TAG = LoadHarness.class.getSimpleName();
+
+    /**
+     * How often the harness checks whether background revalidations are done once every call has completed
+     */
+    private static final long REVALIDATION_POLL_MS = 100;
+
+    private final String m_address;
+    private final int m_callCount;
+    private final int m_concurrency;
+    private final int m_imageConcurrency;
+    private final boolean m_isRevalidating;
+
+    private final Handler m_handler = new Handler(Looper.getMainLooper());
+    private final NetworkMetrics.Histogram m_callLatency = new NetworkMetrics.Histogram();
+    private final NetworkMetrics.Histogram m_imageLatency = new NetworkMetrics.Histogram();
+    private final List<String> m_venueIds = new ArrayList<>();
+
+    private ExecutorService m_imageExecutor;
+    private long m_startedAt;
+    private int m_notModifiedBefore;
+    private int m_started;
+    private int m_completed;
+    private int m_failed;
+
+    private final AtomicInteger m_pendingImages = new AtomicInteger();
+    private final AtomicInteger m_failedImages = new AtomicInteger();
+    private final AtomicLong m_imageBytes = new AtomicLong();
+    private long m_finishedCallsAt;
+
+    /**
+     * @param address          {@link String} Address explore requests are made for
+     * @param callCount        Number of API calls to make
+     * @param concurrency      Number of API calls kept in flight
+     * @param imageConcurrency Number of image downloads kept in flight, 0 to skip images
+     * @param isRevalidating   true to go through the ResponseCache and revalidate every cache hit, false to bypass it
+     */
+    public LoadHarness(@NonNull String address, int callCount, int concurrency, int imageConcurrency, boolean isRevalidating) {
+        m_address = address;
+        m_callCount = callCount;
+        m_concurrency = Math.max(1, concurrency);
+        m_imageConcurrency = imageConcurrency;
+        m_isRevalidating = isRevalidating;
+    }
+
+    public void start() {
+        Log.i(LOG_TAG, String.format("start(): %d calls for %s, concurrency=%d, imageConcurrency=%d, revalidating=%s",
+                m_callCount, m_address, m_concurrency, m_imageConcurrency, m_isRevalidating));
+
+        if (m_imageConcurrency > 0) {
+            m_imageExecutor = Executors.newFixedThreadPool(m_imageConcurrency);
+        }
+        if (m_isRevalidating) {
+            RestClient.INSTANCE.setCacheTtlOverride(0);
+        }
+        m_notModifiedBefore = RestClient.INSTANCE.getNotModifiedCount();
+        m_startedAt = SystemClock.elapsedRealtime();
+        for (int i = 0; i < m_concurrency; i++) {
+            startNextCall();
+        }
+    }
+
+    // *******************************************************
+    // API CALLS
+    // *******************************************************
+
+    private void startNextCall() {
+        if (m_started >= m_callCount) {
+            return;
+        }
+
+        final int index = m_started++;
+        final long callStartedAt = SystemClock.elapsedRealtime();
+
+        // Media calls need venue ids, so the first round (and any call made before one is known) explores
+        if (index % 2 == 0 || m_venueIds.isEmpty()) {
+            final LocationModel.VenueFilter[] filters = LocationModel.VenueFilter.values();
+            RestClient.INSTANCE.exploreSummaries(m_address, filters[(index / 2) % filters.length], !m_isRevalidating,
+                    RequestScheduler.Priority.INTERACTIVE, new RestClient.PromiseCallback<List<VenueSummary>>() {
+                @Override
+                public void onSuccess(@NonNull List<VenueSummary> venues) {
+                    for (VenueSummary venue : venues) {
+                        if (venue.getId() != null && !m_venueIds.contains(venue.getId())) {
+                            m_venueIds.add(venue.getId());
+                        }
+                    }
+                    onCallComplete(callStartedAt, true);
+                }
+
+                @Override
+                public void onError(@NonNull String message) {
+                    onCallComplete(callStartedAt, false);
+                }
+            });
+        } else {
+            final String venueId = m_venueIds.get((index / 2) % m_venueIds.size());
+            RestClient.INSTANCE.getRecentFoursquareMedia(venueId, !m_isRevalidating, new RestClient.PromiseCallback<List<InstagramMedia>>() {
+                @Override
+                public void onSuccess(@NonNull List<InstagramMedia> media) {
+                    for (InstagramMedia item : media) {
+                        if (item.images != null && item.images.low_resolution != null) {
+                            downloadImage(item.images.low_resolution.url);
+                        }
+                    }
+                    onCallComplete(callStartedAt, true);
+                }
+
+                @Override
+                public void onError(@NonNull String message) {
+                    onCallComplete(callStartedAt, false);
+                }
+            });
+        }
+    }
+
+    private void onCallComplete(long callStartedAt, boolean isSuccessful) {
+        m_callLatency.record(SystemClock.elapsedRealtime() - callStartedAt);
+        m_completed++;
+        if (!isSuccessful) {
+            m_failed++;
+        }
+
+        if (m_completed < m_callCount) {
+            startNextCall();
+            return;
+        }
+
+        m_finishedCallsAt = SystemClock.elapsedRealtime();
+        finishWhenIdle();
+    }
+
+    /**
+     * Finishes once no image download and no revalidation is left in flight. Revalidations don't call back when
+     * they are answered with 304, so they are polled for
+     */
+    private void finishWhenIdle() {
+        if (m_pendingImages.get() > 0) {
+            return;
+        }
+        if (RestClient.INSTANCE.getInFlightCount() > 0) {
+            m_handler.postDelayed(new Runnable() {
+                @Override
+                public void run() {
+                    finishWhenIdle();
+                }
+            }, REVALIDATION_POLL_MS);
+            return;
+        }
+        finish();
+    }
+
+    // *******************************************************
+    // IMAGES
+    // *******************************************************
+
+    private void downloadImage(@Nullable final String imageUrl) {
+        if (m_imageExecutor == null || imageUrl == null) {
+            return;
+        }
+
+        m_pendingImages.incrementAndGet();
+        m_imageExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final long downloadStartedAt = SystemClock.elapsedRealtime();
+                try {
+                    final Bitmap bitmap = HttpTransport.INSTANCE.get(new URL(imageUrl), 0, RequestScheduler.Priority.VISIBLE_IMAGE,
+                            new HttpTransport.BodyReader<Bitmap>() {
+                                @Override
+                                public Bitmap read(String contentType, @NonNull InputStream body) throws IOException {
+                                    return BitmapFactory.decodeStream(body);
+                                }
+                            });
+                    if (bitmap == null) {
+                        m_failedImages.incrementAndGet();
+                    } else {
+                        m_imageBytes.addAndGet(bitmap.getByteCount());
+                        bitmap.recycle();
+                    }
+                } catch (IOException e) {
+                    m_failedImages.incrementAndGet();
+                } finally {
+                    m_imageLatency.record(SystemClock.elapsedRealtime() - downloadStartedAt);
+                    if (m_pendingImages.decrementAndGet() == 0) {
+                        m_handler.post(new Runnable() {
+                            @Override
+                            public void run() {
+                                if (m_completed >= m_callCount) {
+                                    finishWhenIdle();
+                                }
+                            }
+                        });
+                    }
+                }
+            }
+        });
+    }
+
+    // *******************************************************
+    // REPORT
+    // *******************************************************
+
+    private void finish() {
+        if (m_imageExecutor != null) {
+            m_imageExecutor.shutdown();
+            m_imageExecutor = null;
+        }
+        if (m_isRevalidating) {
+            RestClient.INSTANCE.setCacheTtlOverride(-1);
+        }
+
+        final long callsMs = Math.max(1, m_finishedCallsAt - m_startedAt);
+        final long totalMs = Math.max(1, SystemClock.elapsedRealtime() - m_startedAt);
+        final long images = m_imageLatency.getCount();
+
+        Log.i(LOG_TAG, String.format("finish(): %d calls (%d failed) in %dms, %.1f calls/s, latency %s",
+                m_completed, m_failed, callsMs, m_completed * 1000f / callsMs, m_callLatency));
+        if (m_isRevalidating) {
+            Log.i(LOG_TAG, String.format("finish(): %d revalidations answered with 304",
+                    RestClient.INSTANCE.getNotModifiedCount() - m_notModifiedBefore));
+        }
+        Log.i(LOG_TAG, String.format("finish(): %d images (%d failed) in %dms, %.1f images/s, %.1fMB decoded, latency %s",
+                images, m_failedImages.get(), totalMs, images * 1000f / totalMs, m_imageBytes.get() / (1024f * 1024f), m_imageLatency));
+        NetworkMetrics.INSTANCE.dump();
+        BitmapPool.INSTANCE.dump();
+    }
+}
@@ -0,0 +1,31 @@
+package com.dpg.crowdscout.network;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+
+/**
+ * Starts a LoadHarness run from adb, ie:
+ * <pre>
+ * adb shell am broadcast -a com.dpg.crowdscout.RUN_LOAD_HARNESS --es address "New York, NY" --ei calls 200 \
+ *     --ei concurrency 8 --ei imageConcurrency 4 --ez revalidate true
+ * </pre>
+ * Without revalidate, every call bypasses the response cache.
+ * Results are logged under the LoadHarness and NetworkMetrics tags. Debug builds only
+ */
+public class LoadHarnessReceiver extends BroadcastReceiver {
+    private static final String DEFAULT_ADDRESS = "New York, NY";
+    private static final int DEFAULT_CALL_COUNT = 100;
+    private static final int DEFAULT_CONCURRENCY = 4;
+    private static final int DEFAULT_IMAGE_CONCURRENCY = 4;
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        final String address = intent.getStringExtra("address");
+        new LoadHarness(address == null ? DEFAULT_ADDRESS : address,
+                intent.getIntExtra("calls", DEFAULT_CALL_COUNT),
+                intent.getIntExtra("concurrency", DEFAULT_CONCURRENCY),
+                intent.getIntExtra("imageConcurrency", DEFAULT_IMAGE_CONCURRENCY),
+                intent.getBooleanExtra("revalidate", false)).start();
+    }
+}
@@ -3,6 +3,13 @@ package com.dpg.crowdscout;
 import android.app.Application;
 import android.content.Context;
 
+import com.dpg.crowdscout.network.ConnectionQuality;
+import com.dpg.crowdscout.network.NetworkMetrics;
+import com.dpg.crowdscout.utils.BitmapPool;
+import com.dpg.crowdscout.utils.ImageDownloader;
+
+import java.util.concurrent.TimeUnit;
+
 public class CrowdScoutApp extends Application {
     /**
      * Application Context stored as a singleton to allow for Android resources/assets
@@ -10,6 +17,11 @@ public class CrowdScoutApp extends Application {
      */
     private static Context s_context;
 
+    /**
+     * How often debug builds log the NetworkMetrics of every endpoint
+     */
+    private static final long METRICS_DUMP_INTERVAL_MS = TimeUnit.MINUTES.toMillis(1);
+
     public static Context getAppContext() {
         return s_context;
     }
@@ -18,5 +30,24 @@ public class CrowdScoutApp extends Application {
     public void onCreate() {
         super.onCreate();
         s_context = getApplicationContext();
+
+        // Follow connectivity changes so image sizes, page sizes and prefetching match the active network
+        ConnectionQuality.INSTANCE.start(this);
+
+        if (BuildConfig.DEBUG) {
+            NetworkMetrics.INSTANCE.startPeriodicDump(METRICS_DUMP_INTERVAL_MS);
+        }
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+
+        // Trim the memory cache first: the bitmaps it evicts go to the BitmapPool, which is emptied afterwards so
+        // they are actually freed. Pooled bitmaps only speed up decoding, so they are all given back
+        ImageDownloader.BitmapLruCache.trimMemory(level);
+        if (level >= TRIM_MEMORY_RUNNING_LOW) {
+            BitmapPool.INSTANCE.clear();
+        }
     }
 }
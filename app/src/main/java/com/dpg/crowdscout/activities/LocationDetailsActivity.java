@@ -9,6 +9,7 @@ import com.crowdscout.api.models.foursquare.FoursquareVenue;
 import com.dpg.crowdscout.BuildConfig;
 import com.dpg.crowdscout.fragments.LocationDetailsFragment;
 import com.dpg.crowdscout.models.LocationModel;
+import com.dpg.crowdscout.models.VenueSummary;
 import com.dpg.crowdscout.utils.SingleFragmentActivity;
 
 public class LocationDetailsActivity extends SingleFragmentActivity implements LocationDetailsFragment.OnShowVenueDetailsListener {
@@ -57,12 +58,20 @@ public class LocationDetailsActivity extends SingleFragmentActivity implements L
         m_fragment = null;
     }
 
+    /**
+     * The list only holds summaries, which is all VenueDetailsFragment needs to page through the venue's media, so
+     * the details screen opens right away without loading the full venue
+     */
     @Override
-    public void showVenueDetails(@NonNull FoursquareVenue venue) {
+    public void showVenueDetails(@NonNull final VenueSummary summary) {
         if (DEBUG) {
-            Log.d(LOG_TAG, String.format("showVenueDetails(): %s", venue.name));
+            Log.d(LOG_TAG, String.format("showVenueDetails(): %s", summary.getName()));
         }
 
+        startVenueDetailsActivity(summary.toVenue());
+    }
+
+    private void startVenueDetailsActivity(@NonNull FoursquareVenue venue) {
         // Launch VenueDetailsActivity for the provided venue
         final Intent i = new Intent(this, VenueDetailsActivity.class);
         i.putExtra(VenueDetailsActivity.KEY_VENUE, venue);
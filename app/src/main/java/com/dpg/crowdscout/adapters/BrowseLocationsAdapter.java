@@ -4,7 +4,6 @@ import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.graphics.drawable.Drawable;
-import android.os.AsyncTask;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -17,6 +16,7 @@ import android.widget.TextView;
 import com.dpg.crowdscout.R;
 import com.dpg.crowdscout.models.LocationModel;
 import com.dpg.crowdscout.utils.ImageDownloader;
+import com.dpg.crowdscout.utils.ImageExecutor;
 import com.google.common.base.Strings;
 
 import java.util.List;
@@ -56,14 +56,21 @@ public class BrowseLocationsAdapter extends ArrayAdapter<LocationModel> {
         // url is only available after fetching place details from Places API, which almost doubles time to load
         m_imageDownloader.enableFadeIn();
 
-        // Execute downloads using global thread pool
-        m_imageDownloader.setExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+        // Execute downloads on the image executor, which serves the rows on screen first
+        m_imageDownloader.setExecutor(ImageExecutor.INSTANCE);
     }
 
     public void setImageCache(ImageDownloader.ImageCache imageCache) {
         m_imageDownloader.setImageCache(imageCache);
     }
 
+    /**
+     * Lets image downloads for the positions on screen go first
+     */
+    public void setVisibleRange(int firstPosition, int lastPosition) {
+        m_imageDownloader.setVisibleRange(firstPosition, lastPosition);
+    }
+
     /**
      * Use item position as ID
      */
@@ -147,7 +154,7 @@ public class BrowseLocationsAdapter extends ArrayAdapter<LocationModel> {
 
         // If the current location has a cover photo, load the image
         if (!Strings.isNullOrEmpty(imageUrl)) {
-            m_imageDownloader.loadImageInto(imageUrl, viewHolder.imageView);
+            m_imageDownloader.loadImageInto(imageUrl, viewHolder.imageView, position);
         } else {
             // Otherwise, show the no photo placeholder
             m_imageDownloader.cancelDownloadAndShowDrawable(viewHolder.imageView, m_noPhotosPlaceholder);
@@ -9,7 +9,6 @@ import android.graphics.PorterDuff;
 import android.graphics.PorterDuffColorFilter;
 import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
-import android.os.AsyncTask;
 import android.support.annotation.NonNull;
 import android.view.Gravity;
 import android.view.LayoutInflater;
@@ -21,26 +20,33 @@ import android.widget.ImageView;
 import android.widget.RelativeLayout;
 import android.widget.TextView;
 
-import com.crowdscout.api.models.foursquare.ConcreteImage;
-import com.crowdscout.api.models.foursquare.FoursquareVenue;
 import com.dpg.crowdscout.BuildConfig;
 import com.dpg.crowdscout.R;
+import com.dpg.crowdscout.models.VenueSummary;
 import com.dpg.crowdscout.models.VenueWrapper;
+import com.dpg.crowdscout.network.CancellationScope;
+import com.dpg.crowdscout.network.ConnectionQuality;
 import com.dpg.crowdscout.utils.Helpers;
 import com.dpg.crowdscout.utils.ImageDownloader;
+import com.dpg.crowdscout.utils.ImageExecutor;
 import com.dpg.crowdscout.widgets.TextIconDrawable;
 import com.google.common.base.Strings;
-import com.google.common.collect.Iterables;
 
-import java.util.Set;
+import java.util.Collections;
+import java.util.List;
 
 /**
- * Adapter used to render FoursquareVenue models in the LocationDetailsView's ListView
+ * Adapter used to render VenueSummary models in the LocationDetailsView's ListView
  */
 public class LocationDetailsAdapter extends BaseAdapter {
     private static final String LOG_TAG = LocationDetailsAdapter.class.getSimpleName();
     private static boolean DEBUG = BuildConfig.DEBUG && false;
 
+    /**
+     * Thumbnails are decoded at half resolution to save memory
+     */
+    private static final int THUMBNAIL_SAMPLE_SIZE = 2;
+
     private final Context m_context;
     private final Resources m_resources;
     private final LayoutInflater m_layoutInflater;
@@ -69,9 +75,9 @@ public class LocationDetailsAdapter extends BaseAdapter {
     private final ImageDownloader.BitmapDimension m_categoryIconDimension;
 
     /**
-     * Stores all of the items in the adapter
+     * Unmodifiable snapshot of the items in the adapter, replaced by setItems()
      */
-    private final Set<FoursquareVenue> m_items;
+    private List<VenueSummary> m_items = Collections.emptyList();
 
     /**
      * Touch listener used to apply a different color to provided image view when touched
@@ -121,10 +127,9 @@ public class LocationDetailsAdapter extends BaseAdapter {
     // CONSTRUCTOR
     // *******************************************************
 
-    public LocationDetailsAdapter(final Context context, final Set<FoursquareVenue> items) {
+    public LocationDetailsAdapter(final Context context) {
         super();
         m_context = context;
-        m_items = items;
         m_layoutInflater = LayoutInflater.from(context);
         m_resources = context.getResources();
 
@@ -165,14 +170,14 @@ public class LocationDetailsAdapter extends BaseAdapter {
         m_imageDownloader = new ImageDownloader(context, placeholderImage);
 
         // Use a sample size of 2 to save memory
-        m_imageDownloader.setBitmapSampleSize(2);
+        m_imageDownloader.setBitmapSampleSize(THUMBNAIL_SAMPLE_SIZE);
 
         // Enable fade to add visual cue for when image is not ready right away. This is necessary because the image
         // url is only available after fetching place details from Places API, which almost doubles time to load
         m_imageDownloader.enableFadeIn();
 
-        // Execute downloads using global thread pool
-        m_imageDownloader.setExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+        // Execute downloads on the image executor, which serves the rows on screen first
+        m_imageDownloader.setExecutor(ImageExecutor.INSTANCE);
 
         // Get bitmap used to decorate container for items that have a description
         m_noteBitmap = BitmapFactory.decodeResource(m_resources,
@@ -215,8 +220,18 @@ public class LocationDetailsAdapter extends BaseAdapter {
      * Get Item at position X
      */
     @Override
-    public FoursquareVenue getItem(int position) {
-        return Iterables.get(m_items, position);
+    public VenueSummary getItem(int position) {
+        return m_items.get(position);
+    }
+
+    /**
+     * Swaps in a new snapshot of items without notifying observers. Callers apply the matching
+     * ListMerger.Diff so that only the rows that changed are re-rendered
+     *
+     * @param items {@link List} Unmodifiable snapshot, ie: from ListMerger
+     */
+    public void setItems(@NonNull List<VenueSummary> items) {
+        m_items = items;
     }
 
     /**
@@ -224,7 +239,7 @@ public class LocationDetailsAdapter extends BaseAdapter {
      */
     @Override
     public long getItemId(int position) {
-        final FoursquareVenue item = getItem(position);
+        final VenueSummary item = getItem(position);
         if (item != null) {
             long hashCode = Long.valueOf(item.hashCode());
             // Make sure the hash code was computed correctly
@@ -250,6 +265,17 @@ public class LocationDetailsAdapter extends BaseAdapter {
         m_imageDownloader.setImageCache(imageCache);
     }
 
+    /**
+     * Lets image downloads for the positions on screen go first
+     */
+    public void setVisibleRange(int firstPosition, int lastPosition) {
+        m_imageDownloader.setVisibleRange(firstPosition, lastPosition);
+    }
+
+    public void setCancellationScope(CancellationScope cancellationScope) {
+        m_imageDownloader.setCancellationScope(cancellationScope);
+    }
+
     public void setFadeInEnabled(boolean enabled) {
         if (enabled) {
             final boolean doNotifyDataSetChanged = m_imageDownloader.isFadeInEnabled();
@@ -283,9 +309,8 @@ public class LocationDetailsAdapter extends BaseAdapter {
     public View getView(int position, View convertView, ViewGroup parent) {
         final View view;
         final ViewHolder viewHolder;
-        final FoursquareVenue venue = getItem(position);
-        final VenueWrapper wrappedVenue = new VenueWrapper(venue);
-        final String mostRecentTip = wrappedVenue.getTip();
+        final VenueSummary venue = getItem(position);
+        final String mostRecentTip = venue.getTip();
 
         // Store whether the item has a description or not
         final boolean hasDescription = !Strings.isNullOrEmpty(mostRecentTip);
@@ -327,7 +352,7 @@ public class LocationDetailsAdapter extends BaseAdapter {
         }
 
         // Store the placesID of the place being rendered
-        viewHolder.venueId = venue.id;
+        viewHolder.venueId = venue.getId();
 
         // Add position to description label if edit note is enabled
         if (m_isEditNoteEnabled) {
@@ -339,7 +364,7 @@ public class LocationDetailsAdapter extends BaseAdapter {
             viewHolder.saveTextButton.setTag(R.id.location_details_list_item_key_position, position);
             viewHolder.saveTextButton.setVisibility(View.VISIBLE);
             // Update button text based on whether active venue is saved
-            viewHolder.saveTextButton.setText(Helpers.INSTANCE.getString(wrappedVenue.isSaved() ?
+            viewHolder.saveTextButton.setText(Helpers.INSTANCE.getString(new VenueWrapper(venue.toVenue()).isSaved() ?
                     R.string.unsave : R.string.save));
         } else {
             // Otherwise, just hide the button
@@ -347,7 +372,7 @@ public class LocationDetailsAdapter extends BaseAdapter {
         }
 
         // Set name
-        viewHolder.nameLabel.setText(venue.name);
+        viewHolder.nameLabel.setText(venue.getName());
 
         // Toggle container bg icon based on whether the current item has a description
         if (hasDescription) {
@@ -386,18 +411,18 @@ public class LocationDetailsAdapter extends BaseAdapter {
         }
 
         // Set category name
-        if (wrappedVenue.hasCategory()) {
+        if (venue.hasCategory()) {
             viewHolder.categoryLabel.setVisibility(View.VISIBLE);
-            viewHolder.categoryLabel.setText(wrappedVenue.getCategoryName());
+            viewHolder.categoryLabel.setText(venue.getCategoryName());
         } else {
             // Otherwise, just hide the category icon and label
             viewHolder.categoryLabel.setVisibility(View.GONE);
         }
 
         // Load category icon
-        if (wrappedVenue.hasCategoryIcon()) {
+        if (venue.hasCategoryIcon()) {
             viewHolder.categoryIcon.setVisibility(View.VISIBLE);
-            m_imageDownloader.loadImageInto(wrappedVenue.getCategoryIconUrl(), viewHolder.categoryIcon, m_categoryIconPlaceholder, m_categoryIconDimension);
+            m_imageDownloader.loadImageInto(venue.getCategoryIconUrl(), viewHolder.categoryIcon, m_categoryIconPlaceholder, m_categoryIconDimension, position);
         } else {
             viewHolder.categoryIcon.setVisibility(View.GONE);
 
@@ -410,10 +435,12 @@ public class LocationDetailsAdapter extends BaseAdapter {
         }
 
         // Load venue image
-        if (wrappedVenue.hasPhoto()) {
-            final String imageUrl = wrappedVenue.getPhoto(ConcreteImage.ImageSize.MEDIUM);
+        if (venue.hasPhoto()) {
+            // Photos are subsampled once decoded, so don't download more pixels than will be kept
+            final String imageUrl = venue.getPhoto(ConnectionQuality.INSTANCE.getProfile()
+                    .getVenuePhotoSize(m_targetDimension.width / THUMBNAIL_SAMPLE_SIZE));
             m_imageDownloader.loadImageInto(imageUrl, viewHolder.thumbnailImage, m_loadingPlaceholder,
-                    m_targetDimension, m_oomPlaceholderImage, m_errorPlaceholderImage);
+                    m_targetDimension, m_oomPlaceholderImage, m_errorPlaceholderImage, position);
         } else {
             // If the venue does not have a photo, make sure there are no other active
             // downloads taking place and set proper placeholder to replace previous value
@@ -4,7 +4,8 @@ import android.content.Context;
 import android.content.res.Resources;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
-import android.os.AsyncTask;
+import android.graphics.drawable.Drawable;
+import android.support.annotation.NonNull;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -15,11 +16,14 @@ import android.widget.TextView;
 import com.crowdscout.api.models.instagram.InstagramMedia;
 import com.dpg.crowdscout.BuildConfig;
 import com.dpg.crowdscout.R;
+import com.dpg.crowdscout.network.CancellationScope;
+import com.dpg.crowdscout.network.ConnectionQuality;
 import com.dpg.crowdscout.utils.Helpers;
 import com.dpg.crowdscout.utils.ImageDownloader;
-import com.google.common.collect.Iterables;
+import com.dpg.crowdscout.utils.ImageExecutor;
 
-import java.util.Set;
+import java.util.Collections;
+import java.util.List;
 
 public class VenueDetailsAdapter extends BaseAdapter {
     private static final String LOG_TAG = VenueDetailsAdapter.class.getSimpleName();
@@ -29,21 +33,21 @@ public class VenueDetailsAdapter extends BaseAdapter {
     private final LayoutInflater m_layoutInflater;
     private final ImageDownloader m_imageDownloader;
     private final ImageDownloader.BitmapDimension m_targetDimension;
+    private final Drawable m_noPhotosPlaceholder;
     private final String m_nowText;
     private final String m_newText;
 
     /**
-     * Stores all of the items in the adapter
+     * Unmodifiable snapshot of the items in the adapter, replaced by setItems()
      */
-    private final Set<InstagramMedia> m_items;
+    private List<InstagramMedia> m_items = Collections.emptyList();
 
     // *******************************************************
     // CONSTRUCTOR
     // *******************************************************
 
-    public VenueDetailsAdapter(final Context context, final Set<InstagramMedia> items) {
+    public VenueDetailsAdapter(final Context context) {
         super();
-        m_items = items;
         m_layoutInflater = LayoutInflater.from(context);
         m_resources = context.getResources();
 
@@ -55,6 +59,9 @@ public class VenueDetailsAdapter extends BaseAdapter {
         final Bitmap placeholderImage = BitmapFactory.decodeResource(m_resources,
                 R.drawable.location_image_placeholder);
 
+        // A second placeholder used for when a media has no image the connection allows
+        m_noPhotosPlaceholder = m_resources.getDrawable(R.drawable.no_photo_placeholder);
+
         // Initialize image downloader
         m_imageDownloader = new ImageDownloader(context, placeholderImage);
 
@@ -68,8 +75,8 @@ public class VenueDetailsAdapter extends BaseAdapter {
         // url is only available after fetching place details from Places API, which almost doubles time to load
         m_imageDownloader.enableFadeIn();
 
-        // Execute downloads using global thread pool
-        m_imageDownloader.setExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+        // Execute downloads on the image executor, which serves the rows on screen first
+        m_imageDownloader.setExecutor(ImageExecutor.INSTANCE);
 
         // Get localized strings that will be used often
         m_nowText = m_resources.getString(R.string.recent_now);
@@ -89,7 +96,16 @@ public class VenueDetailsAdapter extends BaseAdapter {
      */
     @Override
     public InstagramMedia getItem(int position) {
-        return Iterables.get(m_items, position);
+        return m_items.get(position);
+    }
+
+    /**
+     * Swaps in a new snapshot of items without notifying observers
+     *
+     * @param items {@link List} Unmodifiable snapshot, ie: from ListMerger
+     */
+    public void setItems(@NonNull List<InstagramMedia> items) {
+        m_items = items;
     }
 
     /**
@@ -114,6 +130,17 @@ public class VenueDetailsAdapter extends BaseAdapter {
         m_imageDownloader.setImageCache(imageCache);
     }
 
+    /**
+     * Lets image downloads for the positions on screen go first
+     */
+    public void setVisibleRange(int firstPosition, int lastPosition) {
+        m_imageDownloader.setVisibleRange(firstPosition, lastPosition);
+    }
+
+    public void setCancellationScope(CancellationScope cancellationScope) {
+        m_imageDownloader.setCancellationScope(cancellationScope);
+    }
+
     @Override
     public View getView(int position, View convertView, ViewGroup parent) {
         final View view;
@@ -143,8 +170,14 @@ public class VenueDetailsAdapter extends BaseAdapter {
             viewHolder.recentLabel.setTextColor(m_resources.getColor(isNow ? android.R.color.holo_red_light : android.R.color.white));
         }
 
-        // Load preview image
-        m_imageDownloader.loadImageInto(item.images.low_resolution.url, viewHolder.imageView);
+        // Load the smallest preview image that fills the cell, within what the connection allows
+        final String imageUrl = ConnectionQuality.INSTANCE.getProfile().getMediaImageUrl(item.images, m_targetDimension.width);
+        if (imageUrl != null) {
+            m_imageDownloader.loadImageInto(imageUrl, viewHolder.imageView, position);
+        } else {
+            // Otherwise, show the no photo placeholder rather than whatever the recycled view last showed
+            m_imageDownloader.cancelDownloadAndShowDrawable(viewHolder.imageView, m_noPhotosPlaceholder);
+        }
 
         return view;
     }
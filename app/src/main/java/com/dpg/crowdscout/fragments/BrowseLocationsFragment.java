@@ -9,12 +9,14 @@ import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.AbsListView;
 import android.widget.AdapterView;
 
 import com.dpg.crowdscout.BuildConfig;
 import com.dpg.crowdscout.R;
 import com.dpg.crowdscout.adapters.BrowseLocationsAdapter;
 import com.dpg.crowdscout.models.LocationModel;
+import com.dpg.crowdscout.network.VenuePrefetcher;
 import com.dpg.crowdscout.utils.ImageDownloader;
 import com.dpg.crowdscout.utils.SimpleCallback;
 import com.dpg.crowdscout.views.BrowseLocationsView;
@@ -23,9 +25,14 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
-public class BrowseLocationsFragment extends Fragment implements View.OnClickListener, AdapterView.OnItemClickListener {
+public class BrowseLocationsFragment extends Fragment implements View.OnClickListener, AdapterView.OnItemClickListener, AbsListView.OnScrollListener {
     private static final String LOG_TAG = BrowseLocationsFragment.class.getSimpleName();
     private static boolean DEBUG = BuildConfig.DEBUG && false;
+
+    /**
+     * Share of the shared image cache this screen's images may take up. Location photos are what coming back to the app shows first, so they may fill the whole cache
+     */
+    private static final float IMAGE_CACHE_SHARE = 1f;
     private static boolean FILTER_CONTAINER_ENABLED = false;
     private static final int DEFAULT_NUM_COLUMNS = 2;
 
@@ -77,6 +84,21 @@ public class BrowseLocationsFragment extends Fragment implements View.OnClickLis
      */
     private ImageDownloader.ImageCache m_imageCache;
 
+    /**
+     * Warms the venue cache for the locations on screen while the user is browsing
+     */
+    private VenuePrefetcher m_venuePrefetcher;
+
+    /**
+     * Schedules prefetching for the visible locations once the grid has settled
+     */
+    private final Runnable m_prefetchVisibleLocationsRunnable = new Runnable() {
+        @Override
+        public void run() {
+            prefetchVisibleLocations();
+        }
+    };
+
     /**
      * Creates a new Fragment instance using the provided list of Location Models
      *
@@ -111,7 +133,8 @@ public class BrowseLocationsFragment extends Fragment implements View.OnClickLis
         // Finish initializing fragment
         m_gridViewSpacing = getResources().getDimensionPixelSize(R.dimen.coll_grid_view_spacing);
         m_adapter = new BrowseLocationsAdapter(getActivity(), m_locations);
-        m_imageCache = ImageDownloader.BitmapLruCache.newInstance(getActivity());
+        m_imageCache = ImageDownloader.BitmapLruCache.getInstance(getActivity()).getNamespace(LOG_TAG, IMAGE_CACHE_SHARE);
+        m_venuePrefetcher = new VenuePrefetcher(getActivity());
     }
 
     @Override
@@ -147,6 +170,7 @@ public class BrowseLocationsFragment extends Fragment implements View.OnClickLis
                 if (m_view.getWidth() > 0) {
                     setupAdapter();
                     m_view.setOnLayoutChangedCallback(null);
+                    m_view.post(m_prefetchVisibleLocationsRunnable);
                 }
             }
         });
@@ -167,7 +191,12 @@ public class BrowseLocationsFragment extends Fragment implements View.OnClickLis
         m_view.setOnCreateLocationClickListener(null);
         m_view.setSortOrderClickListener(null);
         m_view.setGridViewOnItemClickListener(null);
+        m_view.setGridViewOnScrollListener(null);
         m_view.setOnLayoutChangedCallback(null);
+
+        // Stop prefetching once the user leaves the screen
+        m_view.removeCallbacks(m_prefetchVisibleLocationsRunnable);
+        m_venuePrefetcher.cancel();
     }
 
     @Override
@@ -180,7 +209,7 @@ public class BrowseLocationsFragment extends Fragment implements View.OnClickLis
 
         // Initialize image cache
         if (m_imageCache == null) {
-            m_imageCache = ImageDownloader.BitmapLruCache.newInstance(getActivity());
+            m_imageCache = ImageDownloader.BitmapLruCache.getInstance(getActivity()).getNamespace(LOG_TAG, IMAGE_CACHE_SHARE);
         }
 
         // Set references
@@ -189,7 +218,11 @@ public class BrowseLocationsFragment extends Fragment implements View.OnClickLis
         m_view.setOnCreateLocationClickListener(this);
         m_view.setSortOrderClickListener(this);
         m_view.setGridViewOnItemClickListener(this);
+        m_view.setGridViewOnScrollListener(this);
         m_view.setAdapter(m_adapter);
+
+        // Warm the venue cache for whatever is on screen once the grid has been laid out
+        m_view.post(m_prefetchVisibleLocationsRunnable);
     }
 
     @Override
@@ -199,13 +232,6 @@ public class BrowseLocationsFragment extends Fragment implements View.OnClickLis
         }
 
         super.onStop();
-
-        // Destroy image cache in onStop instead of onPause in case we want to save something
-        // during onSaveInstanceState which is called after onPause. Potential future improvement.
-        if (m_imageCache != null) {
-            m_imageCache.clear();
-            m_imageCache = null;
-        }
     }
 
     @Override
@@ -216,10 +242,10 @@ public class BrowseLocationsFragment extends Fragment implements View.OnClickLis
 
         super.onDestroy();
 
-        // Make sure image cache has been destroyed (onDestory can be called without onStop when orientation change occurs)
+        // Cached images stay in the shared cache for when the screen comes back, but no longer count against its quota
         if (m_imageCache != null) {
             m_adapter.setImageCache(null); // just in case onDestroy is called without onPause (ie: orientation change)
-            m_imageCache.clear();
+            m_imageCache.destroy();
             m_imageCache = null;
         }
 
@@ -284,6 +310,8 @@ public class BrowseLocationsFragment extends Fragment implements View.OnClickLis
      */
     @Override
     public void onClick(View v) {
+        m_venuePrefetcher.cancel();
+
         if (v.getId() == R.id.order_by_button) {
             toggleSortOrder();
         }
@@ -291,6 +319,9 @@ public class BrowseLocationsFragment extends Fragment implements View.OnClickLis
 
     @Override
     public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
+        // The user has made a choice, so stop spending bandwidth on guesses
+        m_venuePrefetcher.cancel();
+
         if (m_onShowLocationListener == null) {
             return;
         }
@@ -304,6 +335,35 @@ public class BrowseLocationsFragment extends Fragment implements View.OnClickLis
         }
     }
 
+    @Override
+    public void onScrollStateChanged(AbsListView view, int scrollState) {
+        // Only prefetch while the grid is at rest
+        if (scrollState == SCROLL_STATE_IDLE) {
+            prefetchVisibleLocations();
+        } else {
+            m_venuePrefetcher.cancel();
+        }
+    }
+
+    @Override
+    public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount, int totalItemCount) {
+        m_adapter.setVisibleRange(firstVisibleItem, firstVisibleItem + visibleItemCount - 1);
+    }
+
+    /**
+     * Queues the locations that are currently visible for prefetching
+     */
+    private void prefetchVisibleLocations() {
+        final int firstPosition = Math.max(m_view.getGridViewFirstVisiblePosition(), 0);
+        final int lastPosition = Math.min(m_view.getGridViewLastVisiblePosition(), m_locations.size() - 1);
+
+        if (lastPosition < firstPosition) {
+            return;
+        }
+
+        m_venuePrefetcher.prefetch(new ArrayList<>(m_locations.subList(firstPosition, lastPosition + 1)));
+    }
+
     public void setOnShowLocationListener(OnShowLocationListener adapter) {
         m_onShowLocationListener = adapter;
     }
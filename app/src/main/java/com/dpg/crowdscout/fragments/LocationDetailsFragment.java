@@ -11,32 +11,38 @@ import android.view.ViewGroup;
 import android.view.animation.Animation;
 import android.view.animation.AnimationUtils;
 import android.view.animation.DecelerateInterpolator;
+import android.widget.AbsListView;
 import android.widget.AdapterView;
+import android.widget.ListView;
 import android.widget.Toast;
 
-import com.crowdscout.api.models.foursquare.FoursquareVenue;
 import com.dpg.crowdscout.BuildConfig;
 import com.dpg.crowdscout.R;
 import com.dpg.crowdscout.adapters.LocationDetailsAdapter;
 import com.dpg.crowdscout.models.LocationModel;
+import com.dpg.crowdscout.models.VenueSummary;
 import com.dpg.crowdscout.models.VenueWrapper;
+import com.dpg.crowdscout.network.CancellationScope;
 import com.dpg.crowdscout.network.RestClient;
 import com.dpg.crowdscout.utils.ImageDownloader;
+import com.dpg.crowdscout.utils.ListMerger;
 import com.dpg.crowdscout.views.LocationDetailsView;
 import com.dpg.crowdscout.widgets.ProgressDialogFragment;
-import com.google.common.collect.Iterables;
 
-import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Set;
 
 /**
  * Created by dgraves on 1/27/15.
  */
-public class LocationDetailsFragment extends Fragment implements AdapterView.OnItemClickListener {
+public class LocationDetailsFragment extends Fragment implements AdapterView.OnItemClickListener, AbsListView.OnScrollListener {
     private static final String LOG_TAG = LocationDetailsFragment.class.getSimpleName();
     private static boolean DEBUG = BuildConfig.DEBUG && false;
 
+    /**
+     * Share of the shared image cache this screen's images may take up. Venue thumbnails and category icons are small, so they may fill the whole cache
+     */
+    private static final float IMAGE_CACHE_SHARE = 1f;
+
     /**
      * Keys used in bundle arguments
      */
@@ -48,7 +54,7 @@ public class LocationDetailsFragment extends Fragment implements AdapterView.OnI
      * Interface responsible for displaying venue details when user selects a venue
      */
     public interface OnShowVenueDetailsListener {
-        public void showVenueDetails(@NonNull FoursquareVenue venue);
+        public void showVenueDetails(@NonNull VenueSummary venue);
     }
 
     /**
@@ -73,15 +79,42 @@ public class LocationDetailsFragment extends Fragment implements AdapterView.OnI
     private LocationModel m_location;
 
     /**
-     * Contains the set of venues for the active location
+     * Contains the venues for the active location, in the order they were received. VenueSummary equality is based
+     * on the venue id, so each summary is its own key
+     */
+    private final ListMerger<VenueSummary> m_items = new ListMerger<>(null, new ListMerger.KeyProvider<VenueSummary>() {
+        @NonNull
+        @Override
+        public Object getKey(@NonNull VenueSummary venue) {
+            return venue;
+        }
+    });
+
+    /**
+     * Swaps merged venues into the adapter and re-renders the rows that changed
      */
-    private final Set<FoursquareVenue> m_items = new LinkedHashSet<>(25);
+    private final ListMerger.Listener<VenueSummary> m_onVenuesMerged = new ListMerger.Listener<VenueSummary>() {
+        @Override
+        public void onMerged(@NonNull List<VenueSummary> snapshot, @NonNull ListMerger.Diff diff) {
+            if (DEBUG) {
+                Log.d(LOG_TAG, "onMerged(): " + diff);
+            }
+
+            m_adapter.setItems(snapshot);
+            m_view.dispatchUpdates(diff, m_adapter);
+        }
+    };
 
     /**
      * Image cache used by adapter
      */
     private ImageDownloader.ImageCache m_imageCache;
 
+    /**
+     * Scope of the venue fetch and image downloads started while the fragment is resumed. Cancelled in onPause
+     */
+    private CancellationScope m_cancellationScope;
+
     /**
      * Creates a new Fragment instance using the provided list of Location Models
      *
@@ -114,8 +147,8 @@ public class LocationDetailsFragment extends Fragment implements AdapterView.OnI
         }
 
         // Finish initializing fragment
-        m_adapter = new LocationDetailsAdapter(getActivity(), m_items);
-        m_imageCache = ImageDownloader.BitmapLruCache.newInstance(getActivity());
+        m_adapter = new LocationDetailsAdapter(getActivity());
+        m_imageCache = ImageDownloader.BitmapLruCache.getInstance(getActivity()).getNamespace(LOG_TAG, IMAGE_CACHE_SHARE);
     }
 
     @Override
@@ -133,9 +166,15 @@ public class LocationDetailsFragment extends Fragment implements AdapterView.OnI
 
         super.onPause();
 
+        // Drop the venue fetch and image downloads that are still pending, nothing is going to show them
+        m_cancellationScope.cancel();
+        m_adapter.setCancellationScope(null);
+        ProgressDialogFragment.hide();
+
         // Remove all references to browse view
         m_adapter.setImageCache(null);
         m_view.setListViewOnItemClickListener(null);
+        m_view.setListViewOnScrollListener(null);
     }
 
     @Override
@@ -148,12 +187,15 @@ public class LocationDetailsFragment extends Fragment implements AdapterView.OnI
 
         // Initialize image cache
         if (m_imageCache == null) {
-            m_imageCache = ImageDownloader.BitmapLruCache.newInstance(getActivity());
+            m_imageCache = ImageDownloader.BitmapLruCache.getInstance(getActivity()).getNamespace(LOG_TAG, IMAGE_CACHE_SHARE);
         }
 
         // Set references
+        m_cancellationScope = new CancellationScope();
+        m_adapter.setCancellationScope(m_cancellationScope);
         m_adapter.setImageCache(m_imageCache);
         m_view.setListViewOnItemClickListener(this);
+        m_view.setListViewOnScrollListener(this);
         m_view.setAdapter(m_adapter);
 
         // Refresh venues
@@ -167,31 +209,25 @@ public class LocationDetailsFragment extends Fragment implements AdapterView.OnI
         }
 
         super.onStop();
-
-        // Destroy image cache in onStop instead of onPause in case we want to save something
-        // during onSaveInstanceState which is called after onPause. Potential future improvement.
-        if (m_imageCache != null) {
-            m_imageCache.clear();
-            m_imageCache = null;
-        }
     }
 
     @Override
     public void onDestroy() {
         super.onDestroy();
 
-        // Make sure image cache has been destroyed (onDestory can be called without onStop when orientation change occurs)
+        // Cached images stay in the shared cache for when the screen comes back, but no longer count against its quota
         if (m_imageCache != null) {
             m_adapter.setImageCache(null); // just in case onDestroy is called without onPause (ie: orientation change)
-            m_imageCache.clear();
+            m_imageCache.destroy();
             m_imageCache = null;
         }
 
         // Remove adapter reference
         m_view.setAdapter(null);
 
-        // Clear list of locations
+        // Clear list of locations, dropping any merge still in progress
         m_items.clear();
+        m_adapter.setItems(m_items.getSnapshot());
     }
 
     @Override
@@ -204,15 +240,26 @@ public class LocationDetailsFragment extends Fragment implements AdapterView.OnI
             return;
         }
 
-        final FoursquareVenue model = m_view.getListViewItem(position);
+        final VenueSummary model = m_view.getListViewItem(position);
 
         if (model != null) {
             m_onShowVenueDetailsListener.showVenueDetails(model);
         } else {
-            Log.e(LOG_TAG, "onItemClick(): NULL FoursquareVenue detected at position: " + position);
+            Log.e(LOG_TAG, "onItemClick(): NULL VenueSummary detected at position: " + position);
         }
     }
 
+    @Override
+    public void onScrollStateChanged(AbsListView view, int scrollState) {
+    }
+
+    @Override
+    public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount, int totalItemCount) {
+        // List positions include the header, adapter positions don't
+        final int headerCount = view instanceof ListView ? ((ListView) view).getHeaderViewsCount() : 0;
+        m_adapter.setVisibleRange(firstVisibleItem - headerCount, firstVisibleItem + visibleItemCount - 1 - headerCount);
+    }
+
     public void setOnShowVenueDetailsListener(OnShowVenueDetailsListener adapter) {
         m_onShowVenueDetailsListener = adapter;
     }
@@ -231,8 +278,8 @@ public class LocationDetailsFragment extends Fragment implements AdapterView.OnI
         final LocationDetailsAdapter.ViewHolder viewHolder = parentView == null ? null : (LocationDetailsAdapter.ViewHolder) parentView.getTag();
 
         if (parentView != null && position != null && viewHolder != null) {
-            final FoursquareVenue venue = Iterables.get(m_items, position);
-            final VenueWrapper wrappedVenue = new VenueWrapper(venue);
+            final VenueSummary venue = m_adapter.getItem(position);
+            final VenueWrapper wrappedVenue = new VenueWrapper(venue.toVenue());
 
             // Define listener that will update adapter when the remove animation finishes
             Animation.AnimationListener animationListener = new Animation.AnimationListener() {
@@ -241,14 +288,11 @@ public class LocationDetailsFragment extends Fragment implements AdapterView.OnI
                     // Remove venue from list of saved venues
                     wrappedVenue.unsave();
 
-                    // Remove place from list
-                    m_items.remove(position.intValue());
-
                     // Mark the row that was deleted as needing to be re-inflated
                     viewHolder.needsInflate = true;
 
-                    // Notify the adapter to update the list
-                    m_adapter.notifyDataSetChanged();
+                    // Remove place from list, the adapter is updated once the removal has been merged
+                    m_items.remove(venue, m_onVenuesMerged);
                 }
 
                 @Override
@@ -261,7 +305,7 @@ public class LocationDetailsFragment extends Fragment implements AdapterView.OnI
             };
 
             // Update numItems label
-            m_view.updateNumItemsLabel(m_items.size() - 1);
+            m_view.updateNumItemsLabel(m_adapter.getCount() - 1);
 
             // Start delete place animation
             collapseRow(parentView, animationListener);
@@ -303,32 +347,59 @@ public class LocationDetailsFragment extends Fragment implements AdapterView.OnI
             return;
         }
 
-        // Show Progress Dialog while fetch is in progress
-        ProgressDialogFragment.show(getFragmentManager(), false);
+        // Show Progress Dialog while fetch is in progress, unless there is already something to show.
+        // Cached responses are served right away and revalidated by RestClient in the background
+        if (m_adapter.isEmpty()) {
+            ProgressDialogFragment.show(getFragmentManager(), false);
+        }
 
-        // Fetch Venues for the active location/category
-        RestClient.INSTANCE.explore(m_location.getEncodedName(), m_location.getCategory(), m_items.isEmpty(), new RestClient.PromiseCallback<List<FoursquareVenue>>() {
+        // Fetch Venues for the active location/category. The list only needs summaries, full venues are loaded
+        // once one of them is opened
+        RestClient.INSTANCE.exploreSummaries(m_location.getEncodedName(), m_location.getCategory(), m_cancellationScope.wrap(new RestClient.StreamingCallback<VenueSummary>() {
             @Override
-            public void onSuccess(@NonNull List<FoursquareVenue> venues) {
-                Log.d(LOG_TAG, "refreshVenues(): Finished fetching venues.. # Fetched: " + venues.size());
+            public void onChunk(@NonNull List<VenueSummary> venues) {
+                if (DEBUG) {
+                    Log.d(LOG_TAG, "refreshVenues(): Received chunk.. # Decoded: " + venues.size());
+                }
+
+                // Render the first rows while the rest of the payload is still arriving
+                m_items.merge(venues, m_onVenuesMerged);
+
+                // Hide Progress Dialog as soon as there is something to show
+                ProgressDialogFragment.hide();
+            }
 
-                // Add all venues to Set of items associated with list adapter
-                m_items.addAll(venues);
+            @Override
+            public void onSuccess(@NonNull List<VenueSummary> venues) {
+                Log.d(LOG_TAG, "refreshVenues(): Finished fetching venues.. # Fetched: " + venues.size());
 
-                // Refresh list
-                m_adapter.notifyDataSetChanged();
+                // Merge venues into the list off the UI thread
+                m_items.merge(venues, new ListMerger.Listener<VenueSummary>() {
+                    @Override
+                    public void onMerged(@NonNull List<VenueSummary> snapshot, @NonNull ListMerger.Diff diff) {
+                        m_onVenuesMerged.onMerged(snapshot, diff);
 
-                Log.d(LOG_TAG, "onSuccess(): m_adapter.getCount() = " + m_adapter.getCount());
+                        Log.d(LOG_TAG, "onSuccess(): m_adapter.getCount() = " + m_adapter.getCount());
 
-                // TODO: Show empty view if there are no results. For now, a toast is sufficient
-                if (m_items.isEmpty()) {
-                    Toast.makeText(LocationDetailsFragment.this.getActivity(), "No Venues Found :( Try again later!", Toast.LENGTH_SHORT).show();
-                }
+                        // TODO: Show empty view if there are no results. For now, a toast is sufficient
+                        if (snapshot.isEmpty() && getActivity() != null) {
+                            Toast.makeText(getActivity(), "No Venues Found :( Try again later!", Toast.LENGTH_SHORT).show();
+                        }
+                    }
+                });
 
                 // Hide Progress Dialog on success
                 ProgressDialogFragment.hide();
             }
 
+            @Override
+            public void onRevalidated(@NonNull List<VenueSummary> venues) {
+                Log.d(LOG_TAG, "refreshVenues(): Revalidated venues.. # Fetched: " + venues.size());
+
+                // Only the rows that changed are rebound
+                m_items.merge(venues, m_onVenuesMerged);
+            }
+
             @Override
             public void onError(@NonNull String message) {
                 Log.e(LOG_TAG, String.format("refreshVenues(%s:%s): Error! Unable to fetch venues: %s", m_location.getName(), m_location.getCategory(), message));
@@ -339,6 +410,6 @@ public class LocationDetailsFragment extends Fragment implements AdapterView.OnI
                 // Show error message
                 Toast.makeText(LocationDetailsFragment.this.getActivity(), message, Toast.LENGTH_SHORT).show();
             }
-        });
+        }));
     }
 }
@@ -8,6 +8,7 @@ import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.AbsListView;
 import android.widget.AdapterView;
 import android.widget.GridView;
 import android.widget.TextView;
@@ -18,19 +19,25 @@ import com.crowdscout.api.models.instagram.InstagramMedia;
 import com.dpg.crowdscout.BuildConfig;
 import com.dpg.crowdscout.R;
 import com.dpg.crowdscout.adapters.VenueDetailsAdapter;
-import com.dpg.crowdscout.network.RestClient;
+import com.dpg.crowdscout.network.CancellationScope;
+import com.dpg.crowdscout.network.MediaPager;
 import com.dpg.crowdscout.utils.ImageDownloader;
+import com.dpg.crowdscout.utils.ListMerger;
 import com.dpg.crowdscout.widgets.ProgressDialogFragment;
-import com.google.common.collect.Iterables;
 
+import java.util.Comparator;
 import java.util.List;
-import java.util.Set;
-import java.util.TreeSet;
 
-public class VenueDetailsFragment extends Fragment implements AdapterView.OnItemClickListener {
+public class VenueDetailsFragment extends Fragment implements AdapterView.OnItemClickListener, AbsListView.OnScrollListener, MediaPager.Listener {
     private static final String LOG_TAG = VenueDetailsFragment.class.getSimpleName();
     private static boolean DEBUG = BuildConfig.DEBUG && false;
 
+    /**
+     * Share of the shared image cache this screen's images may take up. Media images are large and a venue has many of them, so
+     * scrolling through them only evicts this screen's own images once they fill half the cache
+     */
+    private static final float IMAGE_CACHE_SHARE = 0.5f;
+
     /**
      * Keys used in bundle arguments
      */
@@ -66,15 +73,41 @@ public class VenueDetailsFragment extends Fragment implements AdapterView.OnItem
     private FoursquareVenue m_venue;
 
     /**
-     * Contains the SortedSet of media for the active location
+     * Contains the media for the active location, in their natural order and deduped by media id
      */
-    private final Set<InstagramMedia> m_items = new TreeSet<>();
+    private final ListMerger<InstagramMedia> m_items = new ListMerger<>(new Comparator<InstagramMedia>() {
+        @Override
+        public int compare(InstagramMedia lhs, InstagramMedia rhs) {
+            return lhs.compareTo(rhs);
+        }
+    }, new ListMerger.KeyProvider<InstagramMedia>() {
+        @NonNull
+        @Override
+        public Object getKey(@NonNull InstagramMedia media) {
+            return media.id == null ? media : media.id;
+        }
+    });
 
     /**
      * Image cache used by adapter
      */
     private ImageDownloader.ImageCache m_imageCache;
 
+    /**
+     * Loads pages of recent media for the active venue
+     */
+    private MediaPager m_pager;
+
+    /**
+     * Scope of the page requests and image downloads started while the fragment is resumed. Cancelled in onPause
+     */
+    private CancellationScope m_cancellationScope;
+
+    /**
+     * Number of items from the end of the grid at which the next page is requested
+     */
+    private int m_prefetchDistance;
+
     /**
      * Creates a new Fragment instance using the provided list of Location Models
      *
@@ -104,8 +137,12 @@ public class VenueDetailsFragment extends Fragment implements AdapterView.OnItem
         }
 
         // Finish initializing fragment
-        m_adapter = new VenueDetailsAdapter(getActivity(), m_items);
-        m_imageCache = ImageDownloader.BitmapLruCache.newInstance(getActivity());
+        m_adapter = new VenueDetailsAdapter(getActivity());
+        m_imageCache = ImageDownloader.BitmapLruCache.getInstance(getActivity()).getNamespace(LOG_TAG, IMAGE_CACHE_SHARE);
+        m_prefetchDistance = getResources().getInteger(R.integer.venue_media_prefetch_distance);
+        if (m_venue != null) {
+            m_pager = new MediaPager(m_venue.id, this);
+        }
     }
 
     @Override
@@ -131,9 +168,18 @@ public class VenueDetailsFragment extends Fragment implements AdapterView.OnItem
 
         super.onPause();
 
+        // Drop the page requests and image downloads that are still pending, nothing is going to show them
+        m_cancellationScope.cancel();
+        m_adapter.setCancellationScope(null);
+        if (m_pager != null) {
+            m_pager.setCancellationScope(null);
+        }
+        ProgressDialogFragment.hide();
+
         // Remove all references to browse view
         m_adapter.setImageCache(null);
         m_gridView.setOnItemClickListener(null);
+        m_gridView.setOnScrollListener(null);
     }
 
     @Override
@@ -146,12 +192,18 @@ public class VenueDetailsFragment extends Fragment implements AdapterView.OnItem
 
         // Initialize image cache
         if (m_imageCache == null) {
-            m_imageCache = ImageDownloader.BitmapLruCache.newInstance(getActivity());
+            m_imageCache = ImageDownloader.BitmapLruCache.getInstance(getActivity()).getNamespace(LOG_TAG, IMAGE_CACHE_SHARE);
         }
 
         // Set references
+        m_cancellationScope = new CancellationScope();
+        m_adapter.setCancellationScope(m_cancellationScope);
+        if (m_pager != null) {
+            m_pager.setCancellationScope(m_cancellationScope);
+        }
         m_adapter.setImageCache(m_imageCache);
         m_gridView.setOnItemClickListener(this);
+        m_gridView.setOnScrollListener(this);
         m_gridView.setAdapter(m_adapter);
 
         // Refresh media
@@ -165,31 +217,30 @@ public class VenueDetailsFragment extends Fragment implements AdapterView.OnItem
         }
 
         super.onStop();
-
-        // Destroy image cache in onStop instead of onPause in case we want to save something
-        // during onSaveInstanceState which is called after onPause. Potential future improvement.
-        if (m_imageCache != null) {
-            m_imageCache.clear();
-            m_imageCache = null;
-        }
     }
 
     @Override
     public void onDestroy() {
         super.onDestroy();
 
-        // Make sure image cache has been destroyed (onDestory can be called without onStop when orientation change occurs)
+        // Cached images stay in the shared cache for when the screen comes back, but no longer count against its quota
         if (m_imageCache != null) {
             m_adapter.setImageCache(null); // just in case onDestroy is called without onPause (ie: orientation change)
-            m_imageCache.clear();
+            m_imageCache.destroy();
             m_imageCache = null;
         }
 
         // Remove adapter reference
         m_gridView.setAdapter(null);
 
-        // Clear list of locations
+        // Drop any page that is still in flight
+        if (m_pager != null) {
+            m_pager.cancel();
+        }
+
+        // Clear list of locations, dropping any merge still in progress
         m_items.clear();
+        m_adapter.setItems(m_items.getSnapshot());
     }
 
     @Override
@@ -202,7 +253,7 @@ public class VenueDetailsFragment extends Fragment implements AdapterView.OnItem
             return;
         }
 
-        final InstagramMedia model = Iterables.get(m_items, position);
+        final InstagramMedia model = m_adapter.getItem(position);
 
         if (model != null) {
             m_onShowMediaDetailsListener.showMediaDetails(model);
@@ -215,49 +266,78 @@ public class VenueDetailsFragment extends Fragment implements AdapterView.OnItem
         m_onShowMediaDetailsListener = adapter;
     }
 
+    @Override
+    public void onScrollStateChanged(AbsListView view, int scrollState) {
+    }
+
+    @Override
+    public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount, int totalItemCount) {
+        m_adapter.setVisibleRange(firstVisibleItem, firstVisibleItem + visibleItemCount - 1);
+
+        // Fetch the next page once the user gets close to the end of what has been loaded
+        if (m_pager != null && totalItemCount > 0 && firstVisibleItem + visibleItemCount >= totalItemCount - m_prefetchDistance) {
+            m_pager.loadNextPage();
+        }
+    }
+
     void refreshMedia() {
         // Make sure there is an active venue
-        if (m_venue == null) {
+        if (m_pager == null) {
             Log.w(LOG_TAG, "refreshMedia() called before venue initialized");
             return;
         }
 
-        // Show Progress Dialog while fetch is in progress
-        ProgressDialogFragment.show(getFragmentManager(), false);
+        // Show Progress Dialog while fetch is in progress, unless there is already something to show.
+        // Cached responses are served right away and revalidated by RestClient in the background
+        if (m_adapter.isEmpty()) {
+            ProgressDialogFragment.show(getFragmentManager(), false);
+        }
+
+        // Fetch the newest page of recent media for the active venue. Older pages are loaded while scrolling
+        m_pager.loadFirstPage();
+    }
 
-        // Fetch Recent Media for the active venue
-        RestClient.INSTANCE.getRecentFoursquareMedia(m_venue.id, m_items.isEmpty(), new RestClient.PromiseCallback<List<InstagramMedia>>() {
-            @Override
-            public void onSuccess(@NonNull List<InstagramMedia> media) {
-                Log.d(LOG_TAG, "refreshMedia(): Finished fetching media.. # Fetched: " + media.size());
+    // *******************************************************
+    // MediaPager.Listener
+    // *******************************************************
 
-                // Add all media to Set of items associated with list adapter
-                m_items.addAll(media);
+    @Override
+    public void onPageLoaded(@NonNull List<InstagramMedia> media) {
+        Log.d(LOG_TAG, "onPageLoaded(): Finished fetching media.. # Media: " + media.size());
+
+        // Merge media into the grid off the UI thread, replacing media already shown by id. Only the cells whose media
+        // changed are re-rendered
+        m_items.merge(media, new ListMerger.Listener<InstagramMedia>() {
+            @Override
+            public void onMerged(@NonNull List<InstagramMedia> snapshot, @NonNull ListMerger.Diff diff) {
+                if (DEBUG) {
+                    Log.d(LOG_TAG, "onMerged(): " + diff);
+                }
 
-                // Refresh list
-                m_adapter.notifyDataSetChanged();
+                m_adapter.setItems(snapshot);
+                ListMerger.dispatchUpdates(diff, m_adapter, m_gridView);
 
-                Log.d(LOG_TAG, "onSuccess(): m_adapter.getCount() = " + m_adapter.getCount());
+                Log.d(LOG_TAG, "onPageLoaded(): m_adapter.getCount() = " + m_adapter.getCount());
 
                 // TODO: Show empty view if there is no recent media. For now, a toast is sufficient
-                if (m_items.isEmpty()) {
-                    Toast.makeText(VenueDetailsFragment.this.getActivity(), "No Recent Media :( Try again later!", Toast.LENGTH_SHORT).show();
+                if (snapshot.isEmpty() && getActivity() != null) {
+                    Toast.makeText(getActivity(), "No Recent Media :( Try again later!", Toast.LENGTH_SHORT).show();
                 }
-
-                // Hide Progress Dialog on success
-                ProgressDialogFragment.hide();
             }
+        });
 
-            @Override
-            public void onError(@NonNull String message) {
-                Log.e(LOG_TAG, String.format("refreshMedia(%s): Error! Unable to fetch venues: %s", m_venue.name, message));
+        // Hide Progress Dialog on success
+        ProgressDialogFragment.hide();
+    }
+
+    @Override
+    public void onPageError(@NonNull String message) {
+        Log.e(LOG_TAG, String.format("onPageError(%s): Error! Unable to fetch media: %s", m_venue.name, message));
 
-                // Hide Progress Dialog on error
-                ProgressDialogFragment.hide();
+        // Hide Progress Dialog on error
+        ProgressDialogFragment.hide();
 
-                // Show error message
-                Toast.makeText(VenueDetailsFragment.this.getActivity(), message, Toast.LENGTH_SHORT).show();
-            }
-        });
+        // Show error message
+        Toast.makeText(VenueDetailsFragment.this.getActivity(), message, Toast.LENGTH_SHORT).show();
     }
 }
@@ -0,0 +1,144 @@
+package com.dpg.crowdscout.models;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.crowdscout.api.models.foursquare.ConcreteImage;
+import com.crowdscout.api.models.foursquare.FoursquareIcon;
+import com.crowdscout.api.models.foursquare.FoursquarePhoto;
+import com.crowdscout.api.models.foursquare.FoursquareVenue;
+import com.google.common.base.Objects;
+import com.google.common.base.Strings;
+
+/**
+ * The handful of venue fields shown in a venue list: name, most recent tip, first photo and category.
+ * <p/>
+ * Explore responses requested for lists are decoded straight into this type, so the rest of each venue (contact,
+ * stats, menus, events, parent venue, etc.) is never materialized. The full FoursquareVenue is fetched by id once
+ * the user opens one. Instances are immutable and may be shared between callbacks.
+ */
+public final class VenueSummary {
+    private final String m_id;
+    private final String m_name;
+    private final String m_tip;
+    private final String m_categoryName;
+    private final FoursquareIcon m_categoryIcon;
+    private final FoursquarePhoto m_photo;
+
+    /**
+     * @param id           {@link String} Foursquare venue ID
+     * @param name         {@link String} Venue name
+     * @param tip          {@link String} Text of the most recent tip, if any
+     * @param categoryName {@link String} Name of the venue's category, if any
+     * @param categoryIcon {@link FoursquareIcon} Icon of the venue's category, if any
+     * @param photo        {@link FoursquarePhoto} First photo of the venue, only prefix and suffix are needed
+     */
+    public VenueSummary(@Nullable String id, @Nullable String name, @Nullable String tip, @Nullable String categoryName,
+                        @Nullable FoursquareIcon categoryIcon, @Nullable FoursquarePhoto photo) {
+        m_id = id;
+        m_name = name;
+        m_tip = tip;
+        m_categoryName = categoryName;
+        m_categoryIcon = categoryIcon;
+        m_photo = photo;
+    }
+
+    @Nullable
+    public String getId() {
+        return m_id;
+    }
+
+    @Nullable
+    public String getName() {
+        return m_name;
+    }
+
+    public boolean hasTips() {
+        return !Strings.isNullOrEmpty(m_tip);
+    }
+
+    @NonNull
+    public String getTip() {
+        return Strings.nullToEmpty(m_tip);
+    }
+
+    public boolean hasPhoto() {
+        return m_photo != null && !Strings.isNullOrEmpty(m_photo.getUrlFromWidth(ConcreteImage.ImageSize.SMALL.width));
+    }
+
+    @NonNull
+    public String getPhoto(@NonNull ConcreteImage.ImageSize size) {
+        if (hasPhoto()) {
+            return m_photo.getUrlFromWidth(size.width);
+        }
+        return "";
+    }
+
+    public boolean hasCategory() {
+        return !Strings.isNullOrEmpty(m_categoryName);
+    }
+
+    public boolean hasCategoryIcon() {
+        return hasCategory() && m_categoryIcon != null && !Strings.isNullOrEmpty(m_categoryIcon.getUrl());
+    }
+
+    @NonNull
+    public String getCategoryName() {
+        return Strings.nullToEmpty(m_categoryName);
+    }
+
+    @NonNull
+    public String getCategoryIconUrl() {
+        if (hasCategoryIcon()) {
+            return m_categoryIcon.getUrl();
+        }
+        return "";
+    }
+
+    /**
+     * Used by the ResponseCache serializer, which writes summaries back in the shape they were received in
+     */
+    @Nullable
+    public FoursquareIcon getCategoryIcon() {
+        return m_categoryIcon;
+    }
+
+    @Nullable
+    public FoursquarePhoto getFirstPhoto() {
+        return m_photo;
+    }
+
+    /**
+     * @return {@link FoursquareVenue} Venue carrying only the id and name, for screens that can start with those
+     * while (or instead of) loading the full venue
+     */
+    @NonNull
+    public FoursquareVenue toVenue() {
+        final FoursquareVenue venue = new FoursquareVenue();
+        venue.id = m_id;
+        venue.name = m_name;
+        return venue;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof VenueSummary)) {
+            return false;
+        }
+        final VenueSummary other = (VenueSummary) o;
+        return m_id == null ? other.m_id == null && Objects.equal(m_name, other.m_name) : m_id.equals(other.m_id);
+    }
+
+    @Override
+    public int hashCode() {
+        return m_id == null ? Objects.hashCode(m_name) : m_id.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "VenueSummary{" + m_id + ", " + m_name + "}";
+    }
+}
@@ -0,0 +1,155 @@
+package com.dpg.crowdscout.network;
+
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Groups the API calls and image tasks started on behalf of a screen so they can all be dropped at once when the
+ * screen goes away, ie: from a fragment's onPause().
+ * <p/>
+ * Callbacks passed through wrap() are never invoked once the scope is cancelled. RestClient also checks them: a
+ * request whose waiting callbacks have all been cancelled is not sent, not retried and not parsed, and a streaming
+ * response stops being decoded. Callbacks of other screens that joined the same request keep it alive. Anything
+ * else, like image tasks, registers a Cancellable with add().
+ * <p/>
+ * A cancelled scope stays cancelled, so create a new one when the screen resumes. Must only be used on the UI
+ * thread, except for isCancelled()
+ */
+public class CancellationScope {
+    /**
+     * Work that can be aborted when its scope is cancelled
+     */
+    public interface Cancellable {
+        /**
+         * Called on UI thread
+         */
+        public void cancel();
+    }
+
+    private final Set<Cancellable> m_cancellables = new LinkedHashSet<>();
+    private volatile boolean m_isCancelled;
+
+    public boolean isCancelled() {
+        return m_isCancelled;
+    }
+
+    /**
+     * Cancels every registered Cancellable and drops the results of every wrapped callback
+     */
+    public void cancel() {
+        if (m_isCancelled) {
+            return;
+        }
+
+        m_isCancelled = true;
+        final List<Cancellable> cancellables = new ArrayList<>(m_cancellables);
+        m_cancellables.clear();
+        for (Cancellable cancellable : cancellables) {
+            cancellable.cancel();
+        }
+    }
+
+    /**
+     * @param cancellable {@link Cancellable} Work to cancel along with the scope. Cancelled right away if the scope
+     *                    already is
+     */
+    public void add(@NonNull Cancellable cancellable) {
+        if (m_isCancelled) {
+            cancellable.cancel();
+        } else {
+            m_cancellables.add(cancellable);
+        }
+    }
+
+    /**
+     * @param cancellable {@link Cancellable} Work that has completed and no longer needs to be cancelled
+     */
+    public void remove(@NonNull Cancellable cancellable) {
+        m_cancellables.remove(cancellable);
+    }
+
+    /**
+     * @return {@link RestClient.PromiseCallback} Callback that forwards to the provided one until the scope is cancelled
+     */
+    @NonNull
+    public <T> RestClient.PromiseCallback<T> wrap(@NonNull RestClient.PromiseCallback<T> callback) {
+        return new ScopedCallback<>(this, callback);
+    }
+
+    @NonNull
+    public <T> RestClient.RevalidatingCallback<T> wrap(@NonNull RestClient.RevalidatingCallback<T> callback) {
+        return new ScopedRevalidatingCallback<>(this, callback);
+    }
+
+    @NonNull
+    public <E> RestClient.StreamingCallback<E> wrap(@NonNull RestClient.StreamingCallback<E> callback) {
+        return new ScopedStreamingCallback<>(this, callback);
+    }
+
+    /**
+     * @return true if the callback was wrapped by a scope that has since been cancelled. May be called from any thread
+     */
+    static boolean isCancelled(@NonNull RestClient.PromiseCallback<?> callback) {
+        return callback instanceof ScopedCallback && ((ScopedCallback<?>) callback).m_scope.isCancelled();
+    }
+
+    private static class ScopedCallback<T> implements RestClient.PromiseCallback<T> {
+        final CancellationScope m_scope;
+        private final RestClient.PromiseCallback<T> m_callback;
+
+        ScopedCallback(@NonNull CancellationScope scope, @NonNull RestClient.PromiseCallback<T> callback) {
+            m_scope = scope;
+            m_callback = callback;
+        }
+
+        @Override
+        public void onSuccess(@NonNull T t) {
+            if (!m_scope.isCancelled()) {
+                m_callback.onSuccess(t);
+            }
+        }
+
+        @Override
+        public void onError(@NonNull String message) {
+            if (!m_scope.isCancelled()) {
+                m_callback.onError(message);
+            }
+        }
+    }
+
+    private static class ScopedRevalidatingCallback<T> extends ScopedCallback<T> implements RestClient.RevalidatingCallback<T> {
+        private final RestClient.RevalidatingCallback<T> m_revalidatingCallback;
+
+        ScopedRevalidatingCallback(@NonNull CancellationScope scope, @NonNull RestClient.RevalidatingCallback<T> callback) {
+            super(scope, callback);
+            m_revalidatingCallback = callback;
+        }
+
+        @Override
+        public void onRevalidated(@NonNull T t) {
+            if (!m_scope.isCancelled()) {
+                m_revalidatingCallback.onRevalidated(t);
+            }
+        }
+    }
+
+    private static class ScopedStreamingCallback<E> extends ScopedRevalidatingCallback<List<E>> implements RestClient.StreamingCallback<E> {
+        private final RestClient.StreamingCallback<E> m_streamingCallback;
+
+        ScopedStreamingCallback(@NonNull CancellationScope scope, @NonNull RestClient.StreamingCallback<E> callback) {
+            super(scope, callback);
+            m_streamingCallback = callback;
+        }
+
+        @Override
+        public void onChunk(@NonNull List<E> items) {
+            if (!m_scope.isCancelled()) {
+                m_streamingCallback.onChunk(items);
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.dpg.crowdscout.network;
+
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+/**
+ * Stops sending requests to an endpoint that keeps failing.
+ * <p/>
+ * After FAILURE_THRESHOLD consecutive failures the breaker opens and requests fail fast for the cool down period.
+ * Once it has elapsed a single trial request is let through (half open): success closes the breaker again, failure
+ * reopens it for another cool down period. If the trial never resolves, another one is allowed after the next
+ * cool down period.
+ * <p/>
+ * How often it opened and how many requests it rejected are recorded in the endpoint's NetworkMetrics.
+ */
+public class CircuitBreaker {
+    private static final String LOG_TAG = CircuitBreaker.class.getSimpleName();
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final NetworkMetrics.EndpointMetrics m_metrics;
+    private final int m_failureThreshold;
+    private final long m_coolDownMillis;
+
+    private State m_state = State.CLOSED;
+    private int m_consecutiveFailures;
+    private long m_nextTrialAt;
+
+    /**
+     * @param metrics {@link NetworkMetrics.EndpointMetrics} Metrics of the endpoint the breaker guards
+     */
+    public CircuitBreaker(@NonNull NetworkMetrics.EndpointMetrics metrics, int failureThreshold, long coolDownMillis) {
+        m_metrics = metrics;
+        m_failureThreshold = failureThreshold;
+        m_coolDownMillis = coolDownMillis;
+    }
+
+    /**
+     * Must be called before each request is sent
+     *
+     * @return true if the request may be sent, false if it should fail fast
+     */
+    public synchronized boolean allowRequest() {
+        if (m_state == State.CLOSED) {
+            return true;
+        }
+
+        final long now = SystemClock.elapsedRealtime();
+        if (now >= m_nextTrialAt) {
+            setState(State.HALF_OPEN);
+            m_nextTrialAt = now + m_coolDownMillis;
+            return true;
+        }
+
+        m_metrics.incrementRejectedRequests();
+        return false;
+    }
+
+    /**
+     * @return true while requests are failing fast. Unlike allowRequest(), never lets a trial request through
+     */
+    public synchronized boolean isOpen() {
+        return m_state != State.CLOSED && SystemClock.elapsedRealtime() < m_nextTrialAt;
+    }
+
+    public synchronized void onSuccess() {
+        m_consecutiveFailures = 0;
+        setState(State.CLOSED);
+    }
+
+    public synchronized void onFailure() {
+        m_consecutiveFailures++;
+        if (m_state == State.HALF_OPEN || (m_state == State.CLOSED && m_consecutiveFailures >= m_failureThreshold)) {
+            m_metrics.incrementTimesOpened();
+            m_nextTrialAt = SystemClock.elapsedRealtime() + m_coolDownMillis;
+            setState(State.OPEN);
+        }
+    }
+
+    public synchronized State getState() {
+        return m_state;
+    }
+
+    private void setState(@NonNull State state) {
+        if (m_state != state) {
+            Log.i(LOG_TAG, String.format("%s: %s -> %s after %d consecutive failures", m_metrics.getName(), m_state, state, m_consecutiveFailures));
+            m_state = state;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.dpg.crowdscout.network;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.support.annotation.NonNull;
+import android.telephony.TelephonyManager;
+import android.util.Log;
+
+import com.dpg.crowdscout.BuildConfig;
+
+/**
+ * Picks the {@link QualityProfile} the app should use right now.
+ * <p/>
+ * The type of the active network sets the ceiling: unmetered Wi-Fi and ethernet allow HIGH, cellular and metered
+ * networks STANDARD, and 2G LOW. Image downloads that go over the network report their throughput, which can
+ * lower the profile further when the connection turns out slower than its type suggests. The estimate is reset
+ * whenever the active network changes.
+ */
+public enum ConnectionQuality {
+    INSTANCE;
+
+    private static final String LOG_TAG = ConnectionQuality.class.getSimpleName();
+    private static final boolean DEBUG = BuildConfig.DEBUG && false;
+
+    /**
+     * Bodies smaller than this are dominated by latency and say little about throughput
+     */
+    private static final long MIN_SAMPLE_BYTES = 8 * 1024;
+
+    /**
+     * Weight of each new sample in the moving average
+     */
+    private static final double SAMPLE_WEIGHT = 0.25;
+
+    /**
+     * Samples needed before the throughput estimate is trusted
+     */
+    private static final int MIN_SAMPLES = 3;
+
+    /**
+     * Measured throughput below which the profile is lowered, in kilobits per second
+     */
+    private static final double LOW_THROUGHPUT_KBPS = 150;
+    private static final double STANDARD_THROUGHPUT_KBPS = 1500;
+
+    private Context m_context;
+    private volatile QualityProfile m_networkProfile = QualityProfile.STANDARD;
+
+    /**
+     * Exponential moving average of measured throughput. Guarded by this
+     */
+    private double m_throughputKbps;
+    private int m_sampleCount;
+
+    private final BroadcastReceiver m_connectivityReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            updateNetworkProfile();
+        }
+    };
+
+    /**
+     * Starts following connectivity changes. Called once from Application.onCreate()
+     */
+    public void start(@NonNull Context context) {
+        m_context = context.getApplicationContext();
+        m_context.registerReceiver(m_connectivityReceiver, new IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION));
+        updateNetworkProfile();
+    }
+
+    /**
+     * @return {@link QualityProfile} Profile of the active network, lowered if measured throughput is poor. May be
+     * called from any thread
+     */
+    @NonNull
+    public QualityProfile getProfile() {
+        final QualityProfile networkProfile = m_networkProfile;
+        final QualityProfile throughputProfile;
+        synchronized (this) {
+            if (m_sampleCount < MIN_SAMPLES) {
+                return networkProfile;
+            } else if (m_throughputKbps < LOW_THROUGHPUT_KBPS) {
+                throughputProfile = QualityProfile.LOW;
+            } else if (m_throughputKbps < STANDARD_THROUGHPUT_KBPS) {
+                throughputProfile = QualityProfile.STANDARD;
+            } else {
+                throughputProfile = QualityProfile.HIGH;
+            }
+        }
+        return throughputProfile.ordinal() < networkProfile.ordinal() ? throughputProfile : networkProfile;
+    }
+
+    /**
+     * Feeds a body that was downloaded from the network into the throughput estimate. Cached responses must not be
+     * reported
+     * <p/>
+     * Not called on UI thread
+     *
+     * @param bytes     Size of the body
+     * @param elapsedMs Time spent reading the body off the connection once the headers arrived, excluding decoding
+     */
+    void recordTransfer(long bytes, long elapsedMs) {
+        if (bytes < MIN_SAMPLE_BYTES || elapsedMs <= 0) {
+            return;
+        }
+
+        final double kbps = bytes * 8.0 / elapsedMs;
+        synchronized (this) {
+            m_throughputKbps = m_sampleCount == 0 ? kbps : SAMPLE_WEIGHT * kbps + (1 - SAMPLE_WEIGHT) * m_throughputKbps;
+            m_sampleCount++;
+        }
+    }
+
+    private void updateNetworkProfile() {
+        final ConnectivityManager connectivityManager = (ConnectivityManager) m_context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        final NetworkInfo networkInfo = connectivityManager.getActiveNetworkInfo();
+
+        final QualityProfile profile;
+        if (networkInfo == null || !networkInfo.isConnected()) {
+            // Nothing is downloaded while offline, so keep whatever was in use
+            return;
+        } else if (networkInfo.getType() == ConnectivityManager.TYPE_MOBILE && isSlowMobileNetwork(networkInfo.getSubtype())) {
+            profile = QualityProfile.LOW;
+        } else if (connectivityManager.isActiveNetworkMetered()) {
+            profile = QualityProfile.STANDARD;
+        } else {
+            profile = QualityProfile.HIGH;
+        }
+
+        synchronized (this) {
+            m_throughputKbps = 0;
+            m_sampleCount = 0;
+        }
+        m_networkProfile = profile;
+
+        if (DEBUG) {
+            Log.d(LOG_TAG, String.format("updateNetworkProfile(%s:%s): %s", networkInfo.getTypeName(), networkInfo.getSubtypeName(), profile));
+        }
+    }
+
+    private static boolean isSlowMobileNetwork(int subtype) {
+        switch (subtype) {
+            case TelephonyManager.NETWORK_TYPE_GPRS:
+            case TelephonyManager.NETWORK_TYPE_EDGE:
+            case TelephonyManager.NETWORK_TYPE_CDMA:
+            case TelephonyManager.NETWORK_TYPE_1xRTT:
+            case TelephonyManager.NETWORK_TYPE_IDEN:
+                return true;
+            default:
+                return false;
+        }
+    }
+}
@@ -7,22 +7,56 @@ import java.util.List;
 import java.util.Map;
 
 import retrofit.Callback;
+import retrofit.client.Response;
 import retrofit.http.GET;
+import retrofit.http.Header;
+import retrofit.http.Headers;
 import retrofit.http.Path;
 import retrofit.http.QueryMap;
+import retrofit.http.Streaming;
 
+/**
+ * Every method names its endpoint in an ENDPOINT_HEADER, which HttpTransport uses to file the call's metrics, and
+ * takes a CALL_HEADER that lets HttpTransport abort calls nobody is waiting on. Both are stripped before sending,
+ * like the priority header.
+ */
 public interface CrowdScoutService {
     // *******************************************************
     // Foursquare
     // *******************************************************
 
+    /**
+     * Returns the raw, unread response so venues can be decoded while the payload is still arriving.
+     * Synchronous - must not be called on the main thread.
+     * <p/>
+     * Validators are optional (null headers are not sent); when the venues have not changed the call fails with
+     * a 304 RetrofitError. The priority header is consumed by HttpTransport and never reaches the server.
+     */
+    @Streaming
+    @Headers(HttpTransport.ENDPOINT_HEADER + ": explore")
     @GET("/foursquare/explore/near/{address}")
-    public void exploreVenues(@Path("address") String address, @QueryMap Map<String, String> options, Callback<ApiResponse<List<FoursquareVenue>>> callback);
+    public Response exploreVenues(@Path("address") String address, @QueryMap Map<String, String> options,
+                                  @Header("If-None-Match") String ifNoneMatch, @Header("If-Modified-Since") String ifModifiedSince,
+                                  @Header(HttpTransport.PRIORITY_HEADER) RequestScheduler.Priority priority,
+                                  @Header(HttpTransport.CALL_HEADER) String callId);
+
+    @Headers(HttpTransport.ENDPOINT_HEADER + ": venue")
+    @GET("/foursquare/venues/{venueId}")
+    public void getVenue(@Path("venueId") String venueId, @QueryMap Map<String, String> options,
+                         @Header("If-None-Match") String ifNoneMatch, @Header("If-Modified-Since") String ifModifiedSince,
+                         @Header(HttpTransport.PRIORITY_HEADER) RequestScheduler.Priority priority,
+                         @Header(HttpTransport.CALL_HEADER) String callId,
+                         Callback<ApiResponse<FoursquareVenue>> callback);
 
     // *******************************************************
     // Instagram
     // *******************************************************
 
+    @Headers(HttpTransport.ENDPOINT_HEADER + ": media")
     @GET("/foursquare/venues/{venueId}/instagram/media")
-    public void getRecentFoursquareMedia(@Path("venueId") String venueId, @QueryMap Map<String, String> options, Callback<ApiResponse<List<InstagramMedia>>> callback);
+    public void getRecentFoursquareMedia(@Path("venueId") String venueId, @QueryMap Map<String, String> options,
+                                         @Header("If-None-Match") String ifNoneMatch, @Header("If-Modified-Since") String ifModifiedSince,
+                                         @Header(HttpTransport.PRIORITY_HEADER) RequestScheduler.Priority priority,
+                                         @Header(HttpTransport.CALL_HEADER) String callId,
+                                         Callback<ApiResponse<List<InstagramMedia>>> callback);
 }
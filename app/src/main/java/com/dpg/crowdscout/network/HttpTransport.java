@@ -0,0 +1,492 @@
+package com.dpg.crowdscout.network;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import com.dpg.crowdscout.BuildConfig;
+import com.dpg.crowdscout.utils.Helpers;
+import com.squareup.okhttp.Cache;
+import com.squareup.okhttp.ConnectionPool;
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.Response;
+
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import retrofit.client.Client;
+import retrofit.client.Header;
+import retrofit.client.OkClient;
+import retrofit.mime.TypedInput;
+
+/**
+ * Process-wide HTTP transport shared by the API client and the image pipeline.
+ * <p/>
+ * Every request goes through a single OkHttpClient, so connections (and their TCP and TLS setup) are pooled and
+ * kept alive across API calls and image downloads. Responses are cached on disk according to their HTTP cache
+ * headers, and the number of concurrent requests to any single host is capped. Requests are started in order of
+ * their {@link RequestScheduler.Priority}. Scheduling delay, time to first byte and body bytes of every request are
+ * recorded in {@link NetworkMetrics}.
+ */
+public enum HttpTransport {
+    INSTANCE;
+
+    private static final String LOG_TAG = HttpTransport.class.getSimpleName();
+    private static final boolean DEBUG = BuildConfig.DEBUG && false;
+
+    private static final long CONNECT_TIMEOUT_SECONDS = 10;
+    private static final long READ_TIMEOUT_SECONDS = 15;
+
+    /**
+     * Idle connections kept alive for reuse, and for how long
+     */
+    private static final int MAX_IDLE_CONNECTIONS = 8;
+    private static final long KEEP_ALIVE_DURATION_MS = 5 * 60 * 1000;
+
+    /**
+     * Maximum number of requests in flight to the same host
+     */
+    private static final int MAX_REQUESTS_PER_HOST = 6;
+
+    private static final String HTTP_CACHE_DIR_NAME = "http";
+    private static final long HTTP_CACHE_MAX_SIZE = 20 * 1024 * 1024; // 20 MiB
+
+    /**
+     * Request header that carries the RequestScheduler.Priority of a Retrofit call. It is removed before the
+     * request is sent; calls without it are treated as interactive.
+     */
+    public static final String PRIORITY_HEADER = "X-CrowdScout-Priority";
+
+    /**
+     * Request header naming the endpoint a Retrofit call's metrics are recorded under. Removed before sending, like
+     * PRIORITY_HEADER. Requests made through get() are recorded under IMAGE_ENDPOINT
+     */
+    public static final String ENDPOINT_HEADER = "X-CrowdScout-Endpoint";
+    public static final String IMAGE_ENDPOINT = "image";
+    private static final String UNKNOWN_ENDPOINT = "unknown";
+
+    /**
+     * Request header identifying a Retrofit call to the CallMonitor. Removed before sending, like PRIORITY_HEADER
+     */
+    public static final String CALL_HEADER = "X-CrowdScout-Call";
+
+    /**
+     * Metrics of the last Retrofit request executed on each thread. Retrofit converts a response body on the thread
+     * that executed the request, which lets the converter file its parse time under the right endpoint
+     */
+    private static final ThreadLocal<NetworkMetrics.EndpointMetrics> s_currentMetrics = new ThreadLocal<>();
+
+    /**
+     * Reads the body of a successful response. The stream is closed by the transport once read() returns
+     * <p/>
+     * Not called on UI thread
+     */
+    public interface BodyReader<T> {
+        public T read(@Nullable String contentType, @NonNull InputStream body) throws IOException;
+    }
+
+    /**
+     * Tells the transport which Retrofit calls are no longer wanted, and is told what each of them downloaded
+     */
+    public interface CallMonitor {
+        /**
+         * Not called on UI thread
+         *
+         * @param callId {@link String} Value of the call's CALL_HEADER
+         * @return true to abort the call: it is not sent if it is still queued, and its response is discarded unread
+         */
+        public boolean isCancelled(@NonNull String callId);
+
+        /**
+         * Called once the body of a response to the call has been read to the end or closed, before Retrofit resolves
+         * the call. Called for every attempt of a call that is retried.
+         * <p/>
+         * Not called on UI thread
+         *
+         * @param callId    {@link String} Value of the call's CALL_HEADER
+         * @param byteCount Number of body bytes read
+         */
+        public void onBodyRead(@NonNull String callId, long byteCount);
+    }
+
+    private final OkHttpClient m_client;
+    private final ConcurrentHashMap<String, Semaphore> m_hostPermits = new ConcurrentHashMap<>();
+    private final RequestScheduler m_scheduler = new RequestScheduler();
+    private volatile CallMonitor m_callMonitor;
+
+    private HttpTransport() {
+        m_client = new OkHttpClient();
+        m_client.setConnectTimeout(CONNECT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        m_client.setReadTimeout(READ_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        m_client.setConnectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_DURATION_MS));
+        m_client.setCache(createCache());
+    }
+
+    public void setCallMonitor(@Nullable CallMonitor callMonitor) {
+        m_callMonitor = callMonitor;
+    }
+
+    /**
+     * @return {@link Client} Retrofit client backed by the shared OkHttpClient and subject to the scheduler and the
+     * per-host limit. A call holds its scheduler slot and host permit until its response body has been read to the
+     * end or closed, which Retrofit does once it has converted it (and streamRequest() once it has decoded it).
+     * Calls the CallMonitor cancels fail with an IOException.
+     */
+    @NonNull
+    public Client createRetrofitClient() {
+        final OkClient okClient = new OkClient(m_client);
+        return new Client() {
+            @Override
+            public retrofit.client.Response execute(retrofit.client.Request request) throws IOException {
+                RequestScheduler.Priority priority = RequestScheduler.Priority.INTERACTIVE;
+                String endpoint = UNKNOWN_ENDPOINT;
+                String callId = null;
+                final List<Header> headers = new ArrayList<>(request.getHeaders().size());
+                for (Header header : request.getHeaders()) {
+                    if (PRIORITY_HEADER.equalsIgnoreCase(header.getName())) {
+                        priority = RequestScheduler.Priority.valueOf(header.getValue());
+                    } else if (ENDPOINT_HEADER.equalsIgnoreCase(header.getName())) {
+                        endpoint = header.getValue();
+                    } else if (CALL_HEADER.equalsIgnoreCase(header.getName())) {
+                        callId = header.getValue();
+                    } else {
+                        headers.add(header);
+                    }
+                }
+
+                final NetworkMetrics.EndpointMetrics metrics = NetworkMetrics.INSTANCE.getEndpoint(endpoint);
+                s_currentMetrics.set(metrics);
+                final long queuedAt = SystemClock.elapsedRealtime();
+                m_scheduler.acquire(priority);
+                final Semaphore permit;
+                try {
+                    permit = acquireHostPermit(new URL(request.getUrl()).getHost());
+                } catch (IOException e) {
+                    m_scheduler.release(priority);
+                    throw e;
+                }
+
+                final Slot slot = new Slot(priority, permit);
+                boolean isBodyPending = false;
+                try {
+                    final long sentAt = SystemClock.elapsedRealtime();
+                    metrics.getSchedulerWait().record(sentAt - queuedAt);
+                    if (isCancelled(callId)) {
+                        throw new InterruptedIOException("Call cancelled: " + callId);
+                    }
+
+                    final retrofit.client.Response response = okClient.execute(
+                            new retrofit.client.Request(request.getMethod(), request.getUrl(), headers, request.getBody()));
+                    metrics.getTimeToFirstByte().record(SystemClock.elapsedRealtime() - sentAt);
+
+                    // Nobody is waiting on the body anymore, so don't let Retrofit read and convert it
+                    if (isCancelled(callId)) {
+                        if (response.getBody() != null) {
+                            response.getBody().in().close();
+                        }
+                        throw new InterruptedIOException("Call cancelled: " + callId);
+                    }
+
+                    if (response.getBody() == null) {
+                        return response;
+                    }
+
+                    // The body still has to come off the connection, so the slot is released once it has been read
+                    isBodyPending = true;
+                    return new retrofit.client.Response(response.getUrl(), response.getStatus(), response.getReason(), response.getHeaders(),
+                            new MeteredTypedInput(response.getBody(), metrics, slot, callId));
+                } finally {
+                    if (!isBodyPending) {
+                        slot.release();
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * Performs a GET request and hands the body of the response to the reader
+     * <p/>
+     * Not called on UI thread
+     *
+     * @param url         {@link URL} Resource to fetch
+     * @param maxStaleSec Number of seconds a cached response may be served past its expiration
+     * @param priority    {@link RequestScheduler.Priority} Class the request is scheduled in
+     * @param reader      {@link BodyReader} Reads the response body
+     * @return Value produced by the reader
+     * @throws IOException If the request fails or the server responds with an unsuccessful status code
+     */
+    public <T> T get(@NonNull URL url, int maxStaleSec, @NonNull RequestScheduler.Priority priority, @NonNull BodyReader<T> reader) throws IOException {
+        final Request request = new Request.Builder()
+                .url(url)
+                .header("Cache-Control", "max-stale=" + maxStaleSec)
+                .build();
+
+        final NetworkMetrics.EndpointMetrics metrics = NetworkMetrics.INSTANCE.getEndpoint(IMAGE_ENDPOINT);
+        final long queuedAt = SystemClock.elapsedRealtime();
+        m_scheduler.acquire(priority);
+        final Semaphore permit;
+        try {
+            permit = acquireHostPermit(url.getHost());
+        } catch (IOException e) {
+            m_scheduler.release(priority);
+            throw e;
+        }
+
+        final long sentAt = SystemClock.elapsedRealtime();
+        metrics.getSchedulerWait().record(sentAt - queuedAt);
+        try {
+            final Response response = m_client.newCall(request).execute();
+            metrics.getTimeToFirstByte().record(SystemClock.elapsedRealtime() - sentAt);
+
+            final MeteredInputStream body = new MeteredInputStream(response.body().byteStream(), metrics, null, null);
+            try {
+                if (!response.isSuccessful()) {
+                    throw new IOException(String.format("Unexpected response %d for %s", response.code(), url));
+                }
+                return reader.read(response.header("Content-Type"), body);
+            } finally {
+                body.close();
+
+                // Bodies served (or revalidated) from the HTTP cache say nothing about the connection. Only the time spent
+                // reading is counted, not the time the reader spent decoding what it read
+                if (response.networkResponse() != null && response.cacheResponse() == null) {
+                    ConnectionQuality.INSTANCE.recordTransfer(body.getCount(), body.getReadTimeMs());
+                }
+            }
+        } finally {
+            permit.release();
+            m_scheduler.release(priority);
+            metrics.getTotal().record(SystemClock.elapsedRealtime() - queuedAt);
+            if (DEBUG) {
+                logCacheStats();
+            }
+        }
+    }
+
+    @Nullable
+    private static Cache createCache() {
+        final Context context = Helpers.INSTANCE.getAppContext();
+        if (context == null) {
+            return null;
+        }
+
+        try {
+            return new Cache(new File(context.getCacheDir(), HTTP_CACHE_DIR_NAME), HTTP_CACHE_MAX_SIZE);
+        } catch (IOException e) {
+            Log.w(LOG_TAG, "createCache(): Could not create HTTP cache, continuing without one", e);
+            return null;
+        }
+    }
+
+    private Semaphore acquireHostPermit(@NonNull String host) throws IOException {
+        Semaphore permit = m_hostPermits.get(host);
+        if (permit == null) {
+            final Semaphore newPermit = new Semaphore(MAX_REQUESTS_PER_HOST, true);
+            permit = m_hostPermits.putIfAbsent(host, newPermit);
+            if (permit == null) {
+                permit = newPermit;
+            }
+        }
+
+        try {
+            permit.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a connection to " + host);
+        }
+        return permit;
+    }
+
+    private boolean isCancelled(@Nullable String callId) {
+        final CallMonitor callMonitor = m_callMonitor;
+        return callId != null && callMonitor != null && callMonitor.isCancelled(callId);
+    }
+
+    private void onBodyRead(@Nullable String callId, long byteCount) {
+        final CallMonitor callMonitor = m_callMonitor;
+        if (callId != null && callMonitor != null) {
+            callMonitor.onBodyRead(callId, byteCount);
+        }
+    }
+
+    /**
+     * @return {@link NetworkMetrics.EndpointMetrics} Metrics of the last Retrofit request executed on the calling
+     * thread, or null if it hasn't executed any
+     */
+    @Nullable
+    static NetworkMetrics.EndpointMetrics getCurrentMetrics() {
+        return s_currentMetrics.get();
+    }
+
+    /**
+     * Scheduler slot and host permit held by a Retrofit call. May be released more than once and from any thread,
+     * only the first release counts
+     */
+    private class Slot {
+        private final RequestScheduler.Priority m_priority;
+        private final Semaphore m_permit;
+        private final AtomicBoolean m_isReleased = new AtomicBoolean();
+
+        Slot(@NonNull RequestScheduler.Priority priority, @NonNull Semaphore permit) {
+            m_priority = priority;
+            m_permit = permit;
+        }
+
+        void release() {
+            if (m_isReleased.compareAndSet(false, true)) {
+                m_permit.release();
+                m_scheduler.release(m_priority);
+            }
+        }
+    }
+
+    /**
+     * Response body that records the number of bytes read from it, under its endpoint and its call, and releases the
+     * call's slot, once it is exhausted or closed
+     */
+    private static class MeteredTypedInput implements TypedInput {
+        private final TypedInput m_body;
+        private final NetworkMetrics.EndpointMetrics m_metrics;
+        private final Slot m_slot;
+        private final String m_callId;
+
+        MeteredTypedInput(@NonNull TypedInput body, @NonNull NetworkMetrics.EndpointMetrics metrics, @NonNull Slot slot, @Nullable String callId) {
+            m_body = body;
+            m_metrics = metrics;
+            m_slot = slot;
+            m_callId = callId;
+        }
+
+        @Override
+        public String mimeType() {
+            return m_body.mimeType();
+        }
+
+        @Override
+        public long length() {
+            return m_body.length();
+        }
+
+        @Override
+        public InputStream in() throws IOException {
+            try {
+                return new MeteredInputStream(m_body.in(), m_metrics, m_slot, m_callId);
+            } catch (IOException e) {
+                m_slot.release();
+                throw e;
+            }
+        }
+    }
+
+    private static class MeteredInputStream extends FilterInputStream {
+        private final NetworkMetrics.EndpointMetrics m_metrics;
+        private final Slot m_slot;
+        private final String m_callId;
+        private long m_count;
+        private long m_readNanos;
+        private boolean m_isRecorded;
+
+        /**
+         * @param slot   {@link Slot} Released once the stream is exhausted or closed, null if the caller releases its own
+         * @param callId {@link String} Call the bytes are reported under to the CallMonitor, null for none
+         */
+        MeteredInputStream(@NonNull InputStream in, @NonNull NetworkMetrics.EndpointMetrics metrics, @Nullable Slot slot, @Nullable String callId) {
+            super(in);
+            m_metrics = metrics;
+            m_slot = slot;
+            m_callId = callId;
+        }
+
+        long getCount() {
+            return m_count;
+        }
+
+        /**
+         * @return Time spent waiting on the underlying stream, excluding whatever the caller did between reads
+         */
+        long getReadTimeMs() {
+            return TimeUnit.NANOSECONDS.toMillis(m_readNanos);
+        }
+
+        @Override
+        public int read() throws IOException {
+            final long startedAt = System.nanoTime();
+            final int result = in.read();
+            m_readNanos += System.nanoTime() - startedAt;
+            if (result == -1) {
+                record();
+            } else {
+                m_count++;
+            }
+            return result;
+        }
+
+        @Override
+        public int read(@NonNull byte[] buffer, int offset, int count) throws IOException {
+            final long startedAt = System.nanoTime();
+            final int result = in.read(buffer, offset, count);
+            m_readNanos += System.nanoTime() - startedAt;
+            if (result == -1) {
+                record();
+            } else {
+                m_count += result;
+            }
+            return result;
+        }
+
+        @Override
+        public long skip(long byteCount) throws IOException {
+            final long startedAt = System.nanoTime();
+            final long result = in.skip(byteCount);
+            m_readNanos += System.nanoTime() - startedAt;
+            m_count += result;
+            return result;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                record();
+            }
+        }
+
+        private void record() {
+            if (!m_isRecorded) {
+                m_isRecorded = true;
+                m_metrics.addBytes(m_count);
+                INSTANCE.onBodyRead(m_callId, m_count);
+            }
+            if (m_slot != null) {
+                m_slot.release();
+            }
+        }
+    }
+
+    private void logCacheStats() {
+        final Cache cache = m_client.getCache();
+        if (cache != null) {
+            Log.d(LOG_TAG, String.format("HTTP cache: %d hits, %d network, %d total", cache.getHitCount(), cache.getNetworkCount(), cache.getRequestCount()));
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package com.dpg.crowdscout.network;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.text.TextUtils;
+import android.util.Log;
+
+import com.crowdscout.api.models.instagram.InstagramMedia;
+import com.dpg.crowdscout.BuildConfig;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Pages through the recent InstagramMedia of a venue, newest first, using the max_id cursor supported by
+ * {@link RestClient#getRecentFoursquareMedia(String, boolean, String, RestClient.PromiseCallback)}.
+ * <p/>
+ * The id of the oldest media in the last page becomes the cursor for the next one. Every media of a page is delivered,
+ * including media delivered before, which may have changed (ie: a revalidated first page). Ids are only tracked to
+ * tell when a page brought nothing new, which ends the feed. At most one page request is in flight at any time. Requests belong to the
+ * current CancellationScope, if any, so a page still loading when the scope is cancelled is dropped and can be
+ * requested again once the screen resumes.
+ * <p/>
+ * Must only be used on the UI thread
+ */
+public class MediaPager {
+    private static final String LOG_TAG = MediaPager.class.getSimpleName();
+    private static final boolean DEBUG = BuildConfig.DEBUG && false;
+
+    /**
+     * Receives the media of each page. Always called on UI thread
+     */
+    public interface Listener {
+        /**
+         * @param media {@link List} Media from the page, including media delivered before, which the listener should
+         *              replace by id. May be empty
+         */
+        public void onPageLoaded(@NonNull List<InstagramMedia> media);
+
+        public void onPageError(@NonNull String message);
+    }
+
+    private final String m_venueId;
+    private final Listener m_listener;
+
+    /**
+     * Ids of every media delivered to the listener so far, to detect the end of the feed
+     */
+    private final Set<String> m_mediaIds = new HashSet<>();
+
+    /**
+     * Cursor of the next page. Null until the first page has been loaded
+     */
+    private String m_nextMaxId;
+
+    private boolean m_isLoading;
+    private boolean m_hasMorePages = true;
+    private boolean m_isCancelled;
+    private CancellationScope m_cancellationScope;
+
+    public MediaPager(@NonNull String venueId, @NonNull Listener listener) {
+        m_venueId = venueId;
+        m_listener = listener;
+    }
+
+    public boolean isLoading() {
+        return m_isLoading;
+    }
+
+    public boolean hasMorePages() {
+        return m_hasMorePages;
+    }
+
+    /**
+     * (Re)loads the newest page. Media that has been posted since the last call is merged in without moving
+     * the cursor once older pages have been loaded.
+     */
+    public void loadFirstPage() {
+        if (m_isLoading || m_isCancelled) {
+            return;
+        }
+
+        requestPage(null);
+    }
+
+    /**
+     * Loads the page following the oldest media delivered so far. Ignored while another page is loading, before
+     * the first page has arrived and once the end of the feed has been reached.
+     */
+    public void loadNextPage() {
+        if (m_isLoading || m_isCancelled || !m_hasMorePages || m_nextMaxId == null) {
+            return;
+        }
+
+        requestPage(m_nextMaxId);
+    }
+
+    /**
+     * @param cancellationScope {@link CancellationScope} Scope that page requests made from now on are cancelled
+     *                          with, or null
+     */
+    public void setCancellationScope(@Nullable CancellationScope cancellationScope) {
+        m_cancellationScope = cancellationScope;
+    }
+
+    /**
+     * Stops delivering pages to the listener. Responses of requests that are still in flight are dropped.
+     */
+    public void cancel() {
+        m_isCancelled = true;
+    }
+
+    private void requestPage(final @Nullable String maxId) {
+        if (DEBUG) {
+            Log.d(LOG_TAG, String.format("requestPage(%s, %s)", m_venueId, maxId));
+        }
+
+        m_isLoading = true;
+
+        // The scoped callback is never invoked once the scope is cancelled, so the request is completed here instead
+        final CancellationScope scope = m_cancellationScope;
+        final CancellationScope.Cancellable onCancelled = new CancellationScope.Cancellable() {
+            @Override
+            public void cancel() {
+                m_isLoading = false;
+            }
+        };
+
+        RestClient.RevalidatingCallback<List<InstagramMedia>> callback = new RestClient.RevalidatingCallback<List<InstagramMedia>>() {
+            @Override
+            public void onSuccess(@NonNull List<InstagramMedia> media) {
+                complete();
+                if (!m_isCancelled) {
+                    deliver(media);
+                }
+            }
+
+            /**
+             * Arrives after the request completed, possibly once later pages have been loaded
+             */
+            @Override
+            public void onRevalidated(@NonNull List<InstagramMedia> media) {
+                if (!m_isCancelled) {
+                    deliver(media);
+                }
+            }
+
+            @Override
+            public void onError(@NonNull String message) {
+                complete();
+                if (!m_isCancelled) {
+                    m_listener.onPageError(message);
+                }
+            }
+
+            private void complete() {
+                m_isLoading = false;
+                if (scope != null) {
+                    scope.remove(onCancelled);
+                }
+            }
+
+            private void deliver(@NonNull List<InstagramMedia> media) {
+                final List<InstagramMedia> pageMedia = new ArrayList<>(media.size());
+                int newCount = 0;
+                for (InstagramMedia item : media) {
+                    if (item != null && item.id != null) {
+                        pageMedia.add(item);
+                        if (m_mediaIds.add(item.id)) {
+                            newCount++;
+                        }
+                    }
+                }
+
+                // Only advance the cursor for the page it pointed at, so a late revalidation of the first
+                // page doesn't rewind it
+                if (TextUtils.equals(maxId, m_nextMaxId)) {
+                    final String lastId = media.isEmpty() ? null : media.get(media.size() - 1).id;
+                    if (lastId == null || lastId.equals(maxId) || (maxId != null && newCount == 0)) {
+                        m_hasMorePages = false;
+                    } else {
+                        m_nextMaxId = lastId;
+                        m_hasMorePages = true;
+                    }
+                }
+
+                if (DEBUG) {
+                    Log.d(LOG_TAG, String.format("deliver(%s): %d of %d new, next max_id = %s", maxId, newCount, pageMedia.size(), m_nextMaxId));
+                }
+
+                m_listener.onPageLoaded(pageMedia);
+            }
+        };
+
+        if (scope != null) {
+            scope.add(onCancelled);
+            callback = scope.wrap(callback);
+        }
+
+        if (maxId == null) {
+            RestClient.INSTANCE.getRecentFoursquareMedia(m_venueId, callback);
+        } else {
+            RestClient.INSTANCE.getRecentFoursquareMedia(m_venueId, false, maxId, callback);
+        }
+    }
+}
@@ -0,0 +1,313 @@
+package com.dpg.crowdscout.network;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-process registry of network metrics, keyed by endpoint ("explore", "venue", "media", "image").
+ * <p/>
+ * Records latency histograms (time spent waiting on the RequestScheduler, time to first byte and total call time
+ * including retries), response body bytes, parse time, cache outcomes, retries, errors by class and circuit breaker
+ * activity. Everything can
+ * be queried at any time from any thread, and dumped to logcat periodically.
+ */
+public enum NetworkMetrics {
+    INSTANCE;
+
+    private static final String LOG_TAG = NetworkMetrics.class.getSimpleName();
+
+    /**
+     * Number of most recent samples each histogram computes its percentiles from
+     */
+    private static final int HISTOGRAM_WINDOW = 512;
+
+    /**
+     * Error classes passed to EndpointMetrics.incrementErrors()
+     */
+    public static final String ERROR_TIMEOUT = "timeout";
+    public static final String ERROR_NETWORK = "network";
+    public static final String ERROR_HTTP_4XX = "http_4xx";
+    public static final String ERROR_HTTP_5XX = "http_5xx";
+    public static final String ERROR_CONVERSION = "conversion";
+    public static final String ERROR_UNEXPECTED = "unexpected";
+    public static final String ERROR_CIRCUIT_OPEN = "circuit_open";
+    public static final String ERROR_CANCELLED = "cancelled";
+
+    /**
+     * Latency samples in milliseconds. Percentiles are computed over the most recent HISTOGRAM_WINDOW samples
+     */
+    public static class Histogram {
+        private final long[] m_samples = new long[HISTOGRAM_WINDOW];
+        private long m_count;
+        private long m_max;
+
+        synchronized void record(long millis) {
+            m_samples[(int) (m_count % HISTOGRAM_WINDOW)] = millis;
+            m_count++;
+            m_max = Math.max(m_max, millis);
+        }
+
+        /**
+         * @return Number of samples recorded since the process started
+         */
+        public synchronized long getCount() {
+            return m_count;
+        }
+
+        /**
+         * @return Largest sample recorded since the process started
+         */
+        public synchronized long getMax() {
+            return m_max;
+        }
+
+        /**
+         * @param percentile Value between 0 and 100, ie: 95 for p95
+         * @return Sample at the percentile within the recent window, or 0 if nothing has been recorded
+         */
+        public synchronized long getPercentile(double percentile) {
+            final int size = (int) Math.min(m_count, HISTOGRAM_WINDOW);
+            if (size == 0) {
+                return 0;
+            }
+
+            final long[] sorted = Arrays.copyOf(m_samples, size);
+            Arrays.sort(sorted);
+            final int index = (int) Math.ceil(percentile / 100 * size) - 1;
+            return sorted[Math.max(0, Math.min(index, size - 1))];
+        }
+
+        @Override
+        public String toString() {
+            return String.format("p50=%d p95=%d p99=%d max=%d n=%d",
+                    getPercentile(50), getPercentile(95), getPercentile(99), getMax(), getCount());
+        }
+    }
+
+    /**
+     * Metrics of a single endpoint
+     */
+    public static class EndpointMetrics {
+        private final String m_name;
+        private final Histogram m_schedulerWait = new Histogram();
+        private final Histogram m_timeToFirstByte = new Histogram();
+        private final Histogram m_total = new Histogram();
+        private final Histogram m_parse = new Histogram();
+
+        private long m_bytes;
+        private int m_cacheHits;
+        private int m_staleCacheHits;
+        private int m_cacheMisses;
+        private int m_notModified;
+        private int m_retries;
+        private int m_timesOpened;
+        private int m_rejectedRequests;
+        private final Map<String, Integer> m_errors = new TreeMap<>();
+
+        EndpointMetrics(@NonNull String name) {
+            m_name = name;
+        }
+
+        @NonNull
+        public String getName() {
+            return m_name;
+        }
+
+        /**
+         * @return {@link Histogram} Time requests spent queued in the RequestScheduler and for a host permit
+         */
+        @NonNull
+        public Histogram getSchedulerWait() {
+            return m_schedulerWait;
+        }
+
+        /**
+         * @return {@link Histogram} Time from sending a request until its response headers arrived. Includes DNS,
+         * connect and TLS time when no pooled connection could be reused
+         */
+        @NonNull
+        public Histogram getTimeToFirstByte() {
+            return m_timeToFirstByte;
+        }
+
+        /**
+         * @return {@link Histogram} Time from the first attempt until the call completed, retries included
+         */
+        @NonNull
+        public Histogram getTotal() {
+            return m_total;
+        }
+
+        /**
+         * @return {@link Histogram} Time spent decoding response bodies
+         */
+        @NonNull
+        public Histogram getParse() {
+            return m_parse;
+        }
+
+        public synchronized long getBytes() {
+            return m_bytes;
+        }
+
+        public synchronized int getCacheHits() {
+            return m_cacheHits;
+        }
+
+        public synchronized int getStaleCacheHits() {
+            return m_staleCacheHits;
+        }
+
+        public synchronized int getCacheMisses() {
+            return m_cacheMisses;
+        }
+
+        public synchronized int getNotModified() {
+            return m_notModified;
+        }
+
+        public synchronized int getRetries() {
+            return m_retries;
+        }
+
+        /**
+         * @return Number of times the endpoint's CircuitBreaker opened, reopening after a failed trial included
+         */
+        public synchronized int getTimesOpened() {
+            return m_timesOpened;
+        }
+
+        /**
+         * @return Number of requests the endpoint's CircuitBreaker turned away while open, retries included
+         */
+        public synchronized int getRejectedRequests() {
+            return m_rejectedRequests;
+        }
+
+        /**
+         * @return {@link Map} Number of failed calls by error class, ie: ERROR_TIMEOUT
+         */
+        @NonNull
+        public synchronized Map<String, Integer> getErrors() {
+            return new TreeMap<>(m_errors);
+        }
+
+        synchronized void addBytes(long bytes) {
+            m_bytes += bytes;
+        }
+
+        synchronized void incrementCacheHits(boolean isStale) {
+            if (isStale) {
+                m_staleCacheHits++;
+            } else {
+                m_cacheHits++;
+            }
+        }
+
+        synchronized void incrementCacheMisses() {
+            m_cacheMisses++;
+        }
+
+        synchronized void incrementNotModified() {
+            m_notModified++;
+        }
+
+        synchronized void incrementRetries() {
+            m_retries++;
+        }
+
+        synchronized void incrementTimesOpened() {
+            m_timesOpened++;
+        }
+
+        synchronized void incrementRejectedRequests() {
+            m_rejectedRequests++;
+        }
+
+        synchronized void incrementErrors(@NonNull String errorClass) {
+            final Integer count = m_errors.get(errorClass);
+            m_errors.put(errorClass, count == null ? 1 : count + 1);
+        }
+
+        @Override
+        public String toString() {
+            final StringBuilder sb = new StringBuilder(m_name).append(':');
+            sb.append("\n  wait  ").append(m_schedulerWait);
+            sb.append("\n  ttfb  ").append(m_timeToFirstByte);
+            sb.append("\n  total ").append(m_total);
+            sb.append("\n  parse ").append(m_parse);
+            synchronized (this) {
+                sb.append(String.format("\n  bytes=%d cache hit/stale/miss=%d/%d/%d 304=%d retries=%d errors=%s breaker opened/rejected=%d/%d",
+                        m_bytes, m_cacheHits, m_staleCacheHits, m_cacheMisses, m_notModified, m_retries, m_errors, m_timesOpened, m_rejectedRequests));
+            }
+            return sb.toString();
+        }
+    }
+
+    private final ConcurrentHashMap<String, EndpointMetrics> m_endpoints = new ConcurrentHashMap<>();
+    private final Handler m_handler = new Handler(Looper.getMainLooper());
+
+    private long m_dumpIntervalMs;
+
+    private final Runnable m_dumpRunnable = new Runnable() {
+        @Override
+        public void run() {
+            dump();
+            m_handler.postDelayed(this, m_dumpIntervalMs);
+        }
+    };
+
+    /**
+     * @param endpoint {@link String} Endpoint name, ie: "explore"
+     * @return {@link EndpointMetrics} Metrics of the endpoint, created on first use
+     */
+    @NonNull
+    public EndpointMetrics getEndpoint(@NonNull String endpoint) {
+        EndpointMetrics metrics = m_endpoints.get(endpoint);
+        if (metrics == null) {
+            final EndpointMetrics newMetrics = new EndpointMetrics(endpoint);
+            metrics = m_endpoints.putIfAbsent(endpoint, newMetrics);
+            if (metrics == null) {
+                metrics = newMetrics;
+            }
+        }
+        return metrics;
+    }
+
+    /**
+     * @return {@link Map} Metrics of every endpoint that has recorded something, sorted by name
+     */
+    @NonNull
+    public Map<String, EndpointMetrics> getEndpoints() {
+        return new TreeMap<>(m_endpoints);
+    }
+
+    /**
+     * Logs the metrics of every endpoint
+     */
+    public void dump() {
+        for (EndpointMetrics metrics : getEndpoints().values()) {
+            Log.i(LOG_TAG, metrics.toString());
+        }
+    }
+
+    /**
+     * Dumps the metrics every intervalMs until stopPeriodicDump() is called. Must be called on the UI thread
+     */
+    public void startPeriodicDump(long intervalMs) {
+        m_dumpIntervalMs = intervalMs;
+        m_handler.removeCallbacks(m_dumpRunnable);
+        m_handler.postDelayed(m_dumpRunnable, intervalMs);
+    }
+
+    public void stopPeriodicDump() {
+        m_handler.removeCallbacks(m_dumpRunnable);
+    }
+}
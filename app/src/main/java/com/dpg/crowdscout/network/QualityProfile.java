@@ -0,0 +1,148 @@
+package com.dpg.crowdscout.network;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.crowdscout.api.models.foursquare.ConcreteImage;
+import com.crowdscout.api.models.instagram.InstagramImageSet;
+import com.crowdscout.api.models.instagram.InstagramMediaObject;
+
+/**
+ * How much bandwidth the app spends on images, pages and prefetching. The active profile is picked by
+ * {@link ConnectionQuality} from the type of network and the throughput measured on it.
+ * <p/>
+ * Image variants are chosen as the smallest one that covers the size it is displayed at, but never larger than the
+ * profile allows. On slow networks images may therefore be upscaled a little rather than downloading variants that
+ * would only be downscaled again once decoded.
+ */
+public enum QualityProfile {
+    /**
+     * 2G, or a connection measured to be very slow
+     */
+    LOW(ConcreteImage.ImageSize.TINY, Variant.THUMBNAIL, 12, 2, 0),
+
+    /**
+     * 3G/4G, metered Wi-Fi, or a connection measured to be slow
+     */
+    STANDARD(ConcreteImage.ImageSize.SMALL, Variant.LOW_RESOLUTION, 20, 4, 256 * 1024),
+
+    /**
+     * Unmetered Wi-Fi and ethernet
+     */
+    HIGH(ConcreteImage.ImageSize.LARGE, Variant.STANDARD_RESOLUTION, 33, 6, 2 * 1024 * 1024);
+
+    /**
+     * Instagram image variants, smallest first, with their nominal widths for when the API omits them
+     */
+    private enum Variant {
+        THUMBNAIL(150),
+        LOW_RESOLUTION(306),
+        STANDARD_RESOLUTION(640);
+
+        final int defaultWidth;
+
+        Variant(int defaultWidth) {
+            this.defaultWidth = defaultWidth;
+        }
+
+        @Nullable
+        InstagramMediaObject get(@NonNull InstagramImageSet images) {
+            switch (this) {
+                case THUMBNAIL:
+                    return images.thumbnail;
+                case LOW_RESOLUTION:
+                    return images.low_resolution;
+                default:
+                    return images.standard_resolution;
+            }
+        }
+    }
+
+    /**
+     * Foursquare photo sizes, smallest first. WIDESCREEN is cropped and never picked
+     */
+    private static final ConcreteImage.ImageSize[] VENUE_PHOTO_SIZES = {
+            ConcreteImage.ImageSize.THUMBNAIL,
+            ConcreteImage.ImageSize.TINY,
+            ConcreteImage.ImageSize.SMALL,
+            ConcreteImage.ImageSize.MEDIUM,
+            ConcreteImage.ImageSize.LARGE,
+            ConcreteImage.ImageSize.HUGE
+    };
+
+    private final ConcreteImage.ImageSize m_maxVenuePhotoSize;
+    private final Variant m_maxMediaVariant;
+    private final int m_mediaPageSize;
+    private final int m_maxConcurrentImageDownloads;
+    private final long m_prefetchByteBudget;
+
+    QualityProfile(@NonNull ConcreteImage.ImageSize maxVenuePhotoSize, @NonNull Variant maxMediaVariant, int mediaPageSize,
+                   int maxConcurrentImageDownloads, long prefetchByteBudget) {
+        m_maxVenuePhotoSize = maxVenuePhotoSize;
+        m_maxMediaVariant = maxMediaVariant;
+        m_mediaPageSize = mediaPageSize;
+        m_maxConcurrentImageDownloads = maxConcurrentImageDownloads;
+        m_prefetchByteBudget = prefetchByteBudget;
+    }
+
+    /**
+     * @param targetWidth Width in pixels the photo is decoded at, after subsampling
+     * @return {@link ConcreteImage.ImageSize} Size of Foursquare photo to request
+     */
+    @NonNull
+    public ConcreteImage.ImageSize getVenuePhotoSize(int targetWidth) {
+        for (ConcreteImage.ImageSize size : VENUE_PHOTO_SIZES) {
+            if (size.width >= targetWidth || size == m_maxVenuePhotoSize) {
+                return size;
+            }
+        }
+        return m_maxVenuePhotoSize;
+    }
+
+    /**
+     * @param images      {@link InstagramImageSet} Variants of an InstagramMedia
+     * @param targetWidth Width in pixels the image is displayed at
+     * @return {@link String} Url of the variant to download, or null if the media has none
+     */
+    @Nullable
+    public String getMediaImageUrl(@Nullable InstagramImageSet images, int targetWidth) {
+        if (images == null) {
+            return null;
+        }
+
+        // Fall back on any larger variant when the preferred one is missing
+        String url = null;
+        for (Variant variant : Variant.values()) {
+            final InstagramMediaObject image = variant.get(images);
+            if (image != null && image.url != null) {
+                url = image.url;
+                final int width = image.width > 0 ? image.width : variant.defaultWidth;
+                if (variant.ordinal() >= m_maxMediaVariant.ordinal() || width >= targetWidth) {
+                    return url;
+                }
+            }
+        }
+        return url;
+    }
+
+    /**
+     * @return Number of InstagramMedia requested per page
+     */
+    public int getMediaPageSize() {
+        return m_mediaPageSize;
+    }
+
+    /**
+     * @return Number of image downloads RequestScheduler lets run at once
+     */
+    public int getMaxConcurrentImageDownloads() {
+        return m_maxConcurrentImageDownloads;
+    }
+
+    /**
+     * @return Bytes that may be spent on speculative fetches per process. 0 disables prefetching
+     */
+    public long getPrefetchByteBudget() {
+        return m_prefetchByteBudget;
+    }
+}
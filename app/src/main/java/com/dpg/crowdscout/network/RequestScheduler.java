@@ -0,0 +1,130 @@
+package com.dpg.crowdscout.network;
+
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import com.dpg.crowdscout.BuildConfig;
+
+import java.io.IOException;
+
+/**
+ * Decides when an outgoing request may start, based on its priority class.
+ * <p/>
+ * Every class has its own concurrency cap. A request only starts once no request of a higher class is waiting,
+ * and while interactive requests are in flight every lower class is paused: requests that are already running
+ * complete, but no new ones start until the interactive work is done. This keeps a user-initiated fetch from
+ * queueing behind a screen full of thumbnails or a prefetch.
+ * <p/>
+ * acquire() blocks, so it must not be called on the UI thread.
+ */
+public class RequestScheduler {
+    private static final String LOG_TAG = RequestScheduler.class.getSimpleName();
+    private static final boolean DEBUG = BuildConfig.DEBUG && false;
+
+    /**
+     * Priority classes, highest first
+     */
+    public enum Priority {
+        /**
+         * Fetches the user is waiting on, ie: venues of a tapped location or media of an opened venue
+         */
+        INTERACTIVE(4),
+
+        /**
+         * Images that are on screen. The cap is replaced by the QualityProfile's number of parallel downloads
+         */
+        VISIBLE_IMAGE(4),
+
+        /**
+         * Speculative fetches for content the user may open next
+         */
+        PREFETCH(2),
+
+        /**
+         * Revalidation of cached responses the user has already been shown
+         */
+        BACKGROUND(1);
+
+        final int maxConcurrentRequests;
+
+        Priority(int maxConcurrentRequests) {
+            this.maxConcurrentRequests = maxConcurrentRequests;
+        }
+    }
+
+    private final int[] m_running = new int[Priority.values().length];
+    private final int[] m_waiting = new int[Priority.values().length];
+
+    /**
+     * Blocks until a request of the provided class may start. Every successful call must be paired with release()
+     * <p/>
+     * Not called on UI thread
+     *
+     * @param priority {@link Priority} Class of the request
+     * @throws IOException If the thread is interrupted while waiting
+     */
+    public synchronized void acquire(@NonNull Priority priority) throws IOException {
+        final int index = priority.ordinal();
+        m_waiting[index]++;
+        try {
+            while (!canStart(priority)) {
+                if (DEBUG) {
+                    Log.d(LOG_TAG, String.format("acquire(%s): Waiting, running: %s", priority, describeRunning()));
+                }
+                wait();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting to send a " + priority + " request");
+        } finally {
+            m_waiting[index]--;
+        }
+
+        m_running[index]++;
+    }
+
+    /**
+     * @param priority {@link Priority} Class that was passed to acquire()
+     */
+    public synchronized void release(@NonNull Priority priority) {
+        m_running[priority.ordinal()]--;
+        notifyAll();
+    }
+
+    private boolean canStart(@NonNull Priority priority) {
+        final int index = priority.ordinal();
+        if (m_running[index] >= getMaxConcurrentRequests(priority)) {
+            return false;
+        }
+
+        // Lower classes are paused while interactive requests are in flight
+        if (priority != Priority.INTERACTIVE && m_running[Priority.INTERACTIVE.ordinal()] > 0) {
+            return false;
+        }
+
+        for (int i = 0; i < index; i++) {
+            if (m_waiting[i] > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int getMaxConcurrentRequests(@NonNull Priority priority) {
+        if (priority == Priority.VISIBLE_IMAGE) {
+            return ConnectionQuality.INSTANCE.getProfile().getMaxConcurrentImageDownloads();
+        }
+        return priority.maxConcurrentRequests;
+    }
+
+    private String describeRunning() {
+        final StringBuilder sb = new StringBuilder();
+        for (Priority priority : Priority.values()) {
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append(priority).append('=').append(m_running[priority.ordinal()]);
+        }
+        return sb.toString();
+    }
+}
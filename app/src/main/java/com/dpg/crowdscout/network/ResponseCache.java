@@ -0,0 +1,288 @@
+package com.dpg.crowdscout.network;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v4.util.LruCache;
+import android.util.Log;
+
+import com.dpg.crowdscout.BuildConfig;
+import com.dpg.crowdscout.utils.DiskLruCache;
+import com.dpg.crowdscout.utils.Helpers;
+import com.dpg.crowdscout.utils.ModelDeserializers;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Strings;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Offline-first cache of parsed ApiResponses. Entries are kept in a small in-memory LRU and persisted to
+ * disk so that revisits (and cold starts) can render the last good response without a network round trip.
+ * The disk tier is a DiskLruCache capped at DISK_CACHE_MAX_SIZE, so the least recently used responses are evicted
+ * as new media pages and explore filters are cached.
+ * <p/>
+ * All disk access happens on a single background thread; results are always delivered on the main thread.
+ */
+public class ResponseCache {
+    private static final String LOG_TAG = ResponseCache.class.getSimpleName();
+    private static final boolean DEBUG = BuildConfig.DEBUG && false;
+
+    private static final String CACHE_DIR_NAME = "responses";
+    private static final long DISK_CACHE_MAX_SIZE = 10 * 1024 * 1024; // 10 MiB
+    private static final int MEMORY_CACHE_MAX_ENTRIES = 32;
+
+    /**
+     * Written at the start of every cache file. Files written in any other format are discarded when read
+     */
+    private static final int FORMAT_VERSION = 2;
+
+    /**
+     * Receives the result of a cache lookup
+     */
+    public interface Listener<T> {
+        /**
+         * @param entry {@link Entry} Cached entry or null if nothing has been cached for the key
+         */
+        public void onResult(@Nullable Entry<T> entry);
+    }
+
+    /**
+     * A cached response along with the time it was received and the validators the server sent with it
+     */
+    public static class Entry<T> {
+        public final T response;
+        public final long timestamp;
+
+        /**
+         * Values of the ETag and Last-Modified response headers, used to revalidate the entry conditionally
+         */
+        @Nullable
+        public final String etag;
+        @Nullable
+        public final String lastModified;
+
+        Entry(@NonNull T response, long timestamp, @Nullable String etag, @Nullable String lastModified) {
+            this.response = response;
+            this.timestamp = timestamp;
+            this.etag = etag;
+            this.lastModified = lastModified;
+        }
+
+        public boolean hasValidators() {
+            return etag != null || lastModified != null;
+        }
+
+        public boolean isOlderThan(long ttlMillis) {
+            return System.currentTimeMillis() - timestamp > ttlMillis;
+        }
+    }
+
+    private final ObjectMapper m_mapper;
+    private final Handler m_mainHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService m_diskExecutor = Executors.newSingleThreadExecutor();
+    private final LruCache<String, Entry<?>> m_memoryCache = new LruCache<>(MEMORY_CACHE_MAX_ENTRIES);
+
+    /**
+     * Opened on first use by the disk thread, which is the only one to touch it. Null until then, or if it could
+     * not be opened
+     */
+    private DiskLruCache m_diskCache;
+    private boolean m_isDiskCacheOpened;
+
+    public ResponseCache() {
+        // Cached models are written by this mapper, so extra getter-derived properties must not break reads
+        m_mapper = new ObjectMapper();
+        m_mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        m_mapper.registerModule(ModelDeserializers.createModule());
+    }
+
+    /**
+     * Looks up the entry associated with the provided key. Memory hits are delivered synchronously, disk hits
+     * and misses are delivered on the main thread once the disk read completes.
+     *
+     * @param key      {@link String} Cache key
+     * @param type     {@link TypeReference} Type that the entry should be deserialized into
+     * @param listener {@link Listener} Listener that will receive the cached entry (or null)
+     */
+    @SuppressWarnings("unchecked")
+    public <T> void get(final @NonNull String key, final @NonNull TypeReference<T> type, final @NonNull Listener<T> listener) {
+        final Entry<T> memoryEntry = (Entry<T>) m_memoryCache.get(key);
+        if (memoryEntry != null) {
+            listener.onResult(memoryEntry);
+            return;
+        }
+
+        m_diskExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final Entry<T> diskEntry = readEntry(key, type);
+                if (diskEntry != null) {
+                    m_memoryCache.put(key, diskEntry);
+                }
+
+                m_mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        listener.onResult(diskEntry);
+                    }
+                });
+            }
+        });
+    }
+
+    public <T> void put(final @NonNull String key, final @NonNull T response) {
+        put(key, response, null, null);
+    }
+
+    /**
+     * Stores the response in memory right away and persists it to disk in the background
+     *
+     * @param key          {@link String} Cache key
+     * @param response     Parsed response that should be cached
+     * @param etag         {@link String} ETag header of the response, if any
+     * @param lastModified {@link String} Last-Modified header of the response, if any
+     */
+    public <T> void put(final @NonNull String key, final @NonNull T response, final @Nullable String etag, final @Nullable String lastModified) {
+        final Entry<T> entry = new Entry<>(response, System.currentTimeMillis(), etag, lastModified);
+        m_memoryCache.put(key, entry);
+
+        m_diskExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                writeEntry(key, entry);
+            }
+        });
+    }
+
+    /**
+     * Marks a cached entry as fresh again after the server confirmed that it has not been modified. The entry is
+     * rewritten on disk with the new timestamp, which also makes it the most recently used one.
+     *
+     * @param key   {@link String} Cache key
+     * @param entry {@link Entry} Entry that was revalidated
+     */
+    public <T> void refresh(final @NonNull String key, final @NonNull Entry<T> entry) {
+        final Entry<T> refreshed = new Entry<>(entry.response, System.currentTimeMillis(), entry.etag, entry.lastModified);
+        m_memoryCache.put(key, refreshed);
+
+        m_diskExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                writeEntry(key, refreshed);
+            }
+        });
+    }
+
+    // *******************************************************
+    // DISK
+    // *******************************************************
+
+    /**
+     * Not called on UI thread
+     *
+     * @return {@link DiskLruCache} Disk tier, or null if it could not be opened
+     */
+    @Nullable
+    private DiskLruCache getDiskCache() {
+        if (!m_isDiskCacheOpened) {
+            m_isDiskCacheOpened = true;
+            try {
+                // Files written before the cache was journaled are unknown to it and get deleted
+                m_diskCache = DiskLruCache.open(new File(Helpers.INSTANCE.getAppContext().getCacheDir(), CACHE_DIR_NAME), DISK_CACHE_MAX_SIZE);
+            } catch (IOException e) {
+                Log.w(LOG_TAG, "getDiskCache(): Could not open disk cache, caching in memory only", e);
+            }
+        }
+        return m_diskCache;
+    }
+
+    /**
+     * Not called on UI thread
+     */
+    @Nullable
+    private <T> Entry<T> readEntry(@NonNull String key, @NonNull TypeReference<T> type) {
+        final DiskLruCache diskCache = getDiskCache();
+        if (diskCache == null) {
+            return null;
+        }
+
+        final String diskKey = DiskLruCache.toKey(key);
+        final InputStream file = diskCache.get(diskKey);
+        if (file == null) {
+            return null;
+        }
+
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(file);
+            final int version = in.readInt();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unsupported cache format " + version);
+            }
+
+            final long timestamp = in.readLong();
+            final String etag = Strings.emptyToNull(in.readUTF());
+            final String lastModified = Strings.emptyToNull(in.readUTF());
+            final T response = m_mapper.readValue(in, type);
+            if (DEBUG) {
+                Log.d(LOG_TAG, String.format("readEntry(%s): Disk hit from %d", key, timestamp));
+            }
+            return response == null ? null : new Entry<>(response, timestamp, etag, lastModified);
+        } catch (IOException e) {
+            Log.w(LOG_TAG, "readEntry(): Discarding unreadable cache entry for " + key, e);
+            diskCache.remove(diskKey);
+        } finally {
+            try {
+                if (in != null) {
+                    in.close();
+                } else {
+                    file.close();
+                }
+            } catch (IOException e) {
+                // ignore -- there's nothing we can do.
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Replaces the entry on disk, evicting the least recently used entries if the cache grows over
+     * DISK_CACHE_MAX_SIZE. Readers never see a partially written entry
+     * <p/>
+     * Not called on UI thread
+     */
+    private void writeEntry(@NonNull String key, @NonNull final Entry<?> entry) {
+        final DiskLruCache diskCache = getDiskCache();
+        if (diskCache == null) {
+            return;
+        }
+
+        final boolean isWritten = diskCache.put(DiskLruCache.toKey(key), new DiskLruCache.EntryWriter() {
+            @Override
+            public boolean write(@NonNull OutputStream file) throws IOException {
+                final DataOutputStream out = new DataOutputStream(file);
+                out.writeInt(FORMAT_VERSION);
+                out.writeLong(entry.timestamp);
+                out.writeUTF(Strings.nullToEmpty(entry.etag));
+                out.writeUTF(Strings.nullToEmpty(entry.lastModified));
+                m_mapper.writeValue(out, entry.response);
+                return true;
+            }
+        });
+
+        if (!isWritten) {
+            Log.w(LOG_TAG, "writeEntry(): Could not write cache entry for " + key);
+        }
+    }
+}
@@ -3,47 +3,216 @@ package com.dpg.crowdscout.network;
 import android.content.Context;
 import android.net.ConnectivityManager;
 import android.net.NetworkInfo;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.util.Log;
 
 import com.crowdscout.api.models.foursquare.FoursquareVenue;
 import com.crowdscout.api.models.instagram.InstagramMedia;
+import com.dpg.crowdscout.BuildConfig;
 import com.dpg.crowdscout.models.LocationModel;
+import com.dpg.crowdscout.models.VenueSummary;
 import com.dpg.crowdscout.utils.JacksonConverter;
+import com.dpg.crowdscout.utils.ModelDeserializers;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.reflect.Type;
+import java.net.SocketTimeoutException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import retrofit.Callback;
+import retrofit.RequestInterceptor;
 import retrofit.RestAdapter;
 import retrofit.RetrofitError;
+import retrofit.client.Header;
 import retrofit.client.Response;
+import retrofit.mime.TypedInput;
+import retrofit.mime.TypedOutput;
+import retrofit.converter.ConversionException;
+import retrofit.converter.Converter;
 
 public enum RestClient {
     INSTANCE;
 
+    /**
+     * Callback used to resolve requests. Both methods are called on the main thread, and only one of them is
+     * called, once: a stale cached response resolves the callback even though it is revalidated in the background.
+     * Callbacks that also want the revalidated response implement {@link RevalidatingCallback}.
+     */
     public interface PromiseCallback<T> {
         public void onSuccess(final @NonNull T t);
 
         public void onError(final @NonNull String message);
     }
 
+    /**
+     * PromiseCallback that is also handed the fresh response once the stale cached response it was resolved with
+     * has been revalidated. onRevalidated() is not called when the server confirms that nothing has changed, nor
+     * when the revalidation fails.
+     */
+    public interface RevalidatingCallback<T> extends PromiseCallback<T> {
+        public void onRevalidated(final @NonNull T t);
+    }
+
+    /**
+     * PromiseCallback that additionally receives items as they are decoded, before the whole response has
+     * arrived. onSuccess() is still called with the complete list once the request resolves. Callbacks that
+     * join a request already in flight only receive the chunks decoded after they joined.
+     * <p/>
+     * Streamed lists are shown while they load, so they are revalidated like any list on screen.
+     */
+    public interface StreamingCallback<T> extends RevalidatingCallback<List<T>> {
+        public void onChunk(final @NonNull List<T> items);
+    }
+
+    /**
+     * PromiseCallback that is told how many response body bytes were downloaded on its behalf, before it is
+     * resolved. Only the callback that started a call is told, once per attempt: joining a call already in flight
+     * or being served from the cache costs nothing.
+     */
+    public interface MeteredCallback<T> extends PromiseCallback<T> {
+        public void onBytesReceived(long byteCount);
+    }
+
     private static final String LOG_TAG = RestClient.class.getSimpleName();
-    private static final String CROWD_SCOUT_API_URL = "http://fast-depths-4366.herokuapp.com/";
+
+    /**
+     * How long cached responses are served without being revalidated
+     */
+    private static final long EXPLORE_CACHE_TTL = TimeUnit.MINUTES.toMillis(15);
+    private static final long MEDIA_CACHE_TTL = TimeUnit.MINUTES.toMillis(2);
+    private static final long VENUE_CACHE_TTL = TimeUnit.MINUTES.toMillis(15);
+
+    /**
+     * Sparse fieldset requested for venue lists, matching what VenueSummary reads
+     */
+    private static final String VENUE_SUMMARY_FIELDS = "id,name,category,photos,tips";
+
+    /**
+     * Number of venues decoded before they are handed to StreamingCallbacks
+     */
+    private static final int STREAMING_CHUNK_SIZE = 10;
+
+    /**
+     * Maximum number of explore requests a batch keeps in flight at once
+     */
+    private static final int BATCH_MAX_PARALLEL_REQUESTS = 3;
+
+    /**
+     * Overall time a call may take, retries included, before its callbacks are failed
+     */
+    private static final long EXPLORE_DEADLINE_MS = TimeUnit.SECONDS.toMillis(20);
+    private static final long MEDIA_DEADLINE_MS = TimeUnit.SECONDS.toMillis(15);
+    private static final long VENUE_DEADLINE_MS = TimeUnit.SECONDS.toMillis(15);
+
+    /**
+     * Retry policy for transient failures. Delays grow exponentially and are fully jittered
+     */
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long RETRY_BASE_DELAY_MS = 500;
+    private static final long RETRY_MAX_DELAY_MS = TimeUnit.SECONDS.toMillis(4);
+
+    /**
+     * Consecutive failures that open an endpoint's circuit breaker, and how long it then fails fast
+     */
+    private static final int CIRCUIT_BREAKER_FAILURE_THRESHOLD = 5;
+    private static final long CIRCUIT_BREAKER_COOL_DOWN_MS = TimeUnit.SECONDS.toMillis(30);
+
+    /**
+     * Separates the request key from the call number in a call ID
+     */
+    private static final char CALL_ID_SEPARATOR = '#';
 
     private final CrowdScoutService m_service;
+    private final JacksonConverter m_converter;
+    private final Handler m_mainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Executes synchronous (streaming) requests. Async requests use Retrofit's own executor
+     */
+    private final ExecutorService m_networkExecutor = Executors.newCachedThreadPool();
+
+    /**
+     * Disk-backed cache of the last good response for each request
+     */
+    private final ResponseCache m_responseCache = new ResponseCache();
+
+    /**
+     * Calls in flight and the callbacks waiting on them, keyed by request signature. Identical concurrent requests
+     * share one HTTP call and one parse; every waiting callback receives the result.
+     */
+    private final Map<String, InFlightCall> m_inFlightRequests = new HashMap<>();
+
+    /**
+     * Number given to the next call registered in m_inFlightRequests. Guarded by m_inFlightRequests
+     */
+    private int m_nextCallNumber;
+
+    /**
+     * Circuit breaker of each endpoint, created on first use
+     */
+    private final Map<String, CircuitBreaker> m_circuitBreakers = new HashMap<>();
+
+    private final Random m_random = new Random();
+
+    /**
+     * TTL that replaces every request's own while it is zero or more. Set by the LoadHarness only
+     */
+    private volatile long m_cacheTtlOverride = -1;
 
     private RestClient() {
+        m_converter = createJacksonConverter();
+
         final RestAdapter m_adapter = new RestAdapter.Builder()
-                .setEndpoint(CROWD_SCOUT_API_URL)
+                .setEndpoint(BuildConfig.CROWD_SCOUT_API_URL)
                 .setLogLevel(RestAdapter.LogLevel.BASIC)
-                .setConverter(createJacksonConverter())
+                .setClient(HttpTransport.INSTANCE.createRetrofitClient())
+                .setConverter(new MeteredConverter(m_converter))
+                .setRequestInterceptor(new RequestInterceptor() {
+                    @Override
+                    public void intercept(RequestFacade request) {
+                        // Let the backend answer in Smile when it can, the converter picks the decoder per response
+                        request.addHeader("Accept", m_converter.getAcceptHeader());
+                    }
+                })
                 .build();
 
         m_service = m_adapter.create(CrowdScoutService.class);
+
+        // Calls are identified by their call ID, so the transport can drop those whose callers went away
+        HttpTransport.INSTANCE.setCallMonitor(new HttpTransport.CallMonitor() {
+            @Override
+            public boolean isCancelled(@NonNull String callId) {
+                return isAbandoned(callId);
+            }
+
+            @Override
+            public void onBodyRead(@NonNull String callId, long byteCount) {
+                dispatchBytesReceived(callId, byteCount);
+            }
+        });
     }
 
     public boolean isNetworkAvailable(@NonNull Context context) {
@@ -54,6 +223,52 @@ public enum RestClient {
         return isNetworkAvailable;
     }
 
+    /**
+     * @param endpoint {@link String} Endpoint name, ie: "explore" or "media"
+     * @return Number of times a failed request to the endpoint has been retried since the process started
+     */
+    public int getRetryCount(@NonNull String endpoint) {
+        return NetworkMetrics.INSTANCE.getEndpoint(endpoint).getRetries();
+    }
+
+    /**
+     * @return Number of revalidations answered with 304 Not Modified since the process started. A 304 reuses the
+     * cached response without downloading or parsing a body
+     */
+    public int getNotModifiedCount() {
+        int notModifiedCount = 0;
+        for (NetworkMetrics.EndpointMetrics metrics : NetworkMetrics.INSTANCE.getEndpoints().values()) {
+            notModifiedCount += metrics.getNotModified();
+        }
+        return notModifiedCount;
+    }
+
+    /**
+     * @param endpoint {@link String} Endpoint name, ie: "explore" or "media"
+     * @return {@link CircuitBreaker.State} Current state of the endpoint's circuit breaker
+     */
+    @NonNull
+    public CircuitBreaker.State getCircuitBreakerState(@NonNull String endpoint) {
+        return getCircuitBreaker(endpoint).getState();
+    }
+
+    /**
+     * Makes cached responses count as stale once they are older than ttlMillis, whatever the endpoint, so that a
+     * load run can have every cache hit revalidated. Pass -1 to restore the TTL of each endpoint
+     */
+    void setCacheTtlOverride(long ttlMillis) {
+        m_cacheTtlOverride = ttlMillis;
+    }
+
+    /**
+     * @return Number of calls in flight, background revalidations included
+     */
+    int getInFlightCount() {
+        synchronized (m_inFlightRequests) {
+            return m_inFlightRequests.size();
+        }
+    }
+
     // *******************************************************
     // FOURSQUARE
     // *******************************************************
@@ -72,17 +287,168 @@ public enum RestClient {
         explore(address, filter, false, callback);
     }
 
+    /**
+     * Cached venues are served right away and revalidated in the background once they are older than
+     * EXPLORE_CACHE_TTL. Venues fetched from the network are streamed: when the callback is a
+     * {@link StreamingCallback}, it receives them in chunks while the rest of the payload is still arriving.
+     *
+     * @param forceRefresh true to bypass the response cache and have the backend refresh its own copy
+     */
     public void explore(final @NonNull String address, final @NonNull LocationModel.VenueFilter filter, final boolean forceRefresh, final @NonNull PromiseCallback<List<FoursquareVenue>> callback) {
         Log.d(LOG_TAG, String.format("exploreVenues(%s:%s)", address, filter));
+        explore(address, createExploreParams(filter), FoursquareVenue.class, new TypeReference<ApiResponse<List<FoursquareVenue>>>() {
+        }, forceRefresh, RequestScheduler.Priority.INTERACTIVE, callback);
+    }
+
+    public void exploreSummaries(final @NonNull String address, final @NonNull LocationModel.VenueFilter filter, final @NonNull PromiseCallback<List<VenueSummary>> callback) {
+        exploreSummaries(address, filter, false, RequestScheduler.Priority.INTERACTIVE, callback);
+    }
+
+    /**
+     * Same as {@link #explore(String, LocationModel.VenueFilter, boolean, PromiseCallback)}, but only asks for the
+     * fields shown in venue lists and decodes each venue into a {@link VenueSummary}. The full venue can be loaded
+     * with {@link #getVenue(String, PromiseCallback)} once it is needed.
+     *
+     * @param priority {@link RequestScheduler.Priority} Class the request is scheduled in when it has to go to the
+     *                 network, ie: PREFETCH for speculative requests
+     */
+    public void exploreSummaries(final @NonNull String address, final @NonNull LocationModel.VenueFilter filter, final boolean forceRefresh,
+                                 final @NonNull RequestScheduler.Priority priority, final @NonNull PromiseCallback<List<VenueSummary>> callback) {
+        Log.d(LOG_TAG, String.format("exploreSummaries(%s:%s)", address, filter));
+        final Map<String, String> queryParams = createExploreParams(filter);
+        queryParams.put("fields", VENUE_SUMMARY_FIELDS);
+        explore(address, queryParams, VenueSummary.class, new TypeReference<ApiResponse<List<VenueSummary>>>() {
+        }, forceRefresh, priority, callback);
+    }
+
+    private static Map<String, String> createExploreParams(final @NonNull LocationModel.VenueFilter filter) {
         final Map<String, String> queryParams = new HashMap<>();
         queryParams.put("section", filter.toString());
         queryParams.put("distance", "5000");
+        return queryParams;
+    }
 
-        if (forceRefresh) {
-            queryParams.put("forceRefresh", "true");
+    private <E> void explore(final @NonNull String address, final @NonNull Map<String, String> queryParams, final @NonNull Class<E> elementType,
+                             final @NonNull TypeReference<ApiResponse<List<E>>> responseType, final boolean forceRefresh,
+                             final @NonNull RequestScheduler.Priority priority, final @NonNull PromiseCallback<List<E>> callback) {
+        fetch(new CacheableRequest<List<E>>("explore", address, queryParams, EXPLORE_CACHE_TTL, EXPLORE_DEADLINE_MS, responseType) {
+            @Override
+            void execute(final @NonNull String callId, final @NonNull Map<String, String> queryParams, final @Nullable ResponseCache.Entry<?> cachedEntry,
+                         final @NonNull RequestScheduler.Priority priority, final @NonNull Callback<ApiResponse<List<E>>> callback) {
+                m_networkExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        android.os.Process.setThreadPriority(android.os.Process.THREAD_PRIORITY_BACKGROUND);
+                        streamRequest(address, queryParams, cachedEntry, priority, elementType, callId, callback);
+                    }
+                });
+            }
+        }, forceRefresh, priority, callback);
+    }
+
+    /**
+     * Get a single FoursquareVenue with all of its details. Cached venues are served right away and revalidated in
+     * the background once they are older than VENUE_CACHE_TTL
+     * <p/>
+     * Assumes a /foursquare/venues/{venueId} endpoint that the backend has yet to confirm, so no screen waits on it:
+     * the details screen opens with the VenueSummary alone
+     *
+     * @param venueId  {@link String} FoursquareVenue ID
+     * @param callback {@link PromiseCallback} Callback to execute after network request is resolved
+     */
+    public void getVenue(final @NonNull String venueId, final @NonNull PromiseCallback<FoursquareVenue> callback) {
+        Log.d(LOG_TAG, String.format("getVenue(%s)", venueId));
+        fetch(new CacheableRequest<FoursquareVenue>("venue", venueId, new HashMap<String, String>(), VENUE_CACHE_TTL, VENUE_DEADLINE_MS,
+                new TypeReference<ApiResponse<FoursquareVenue>>() {
+                }) {
+            @Override
+            void execute(@NonNull String callId, @NonNull Map<String, String> queryParams, @Nullable ResponseCache.Entry<?> cachedEntry,
+                         @NonNull RequestScheduler.Priority priority, @NonNull Callback<ApiResponse<FoursquareVenue>> callback) {
+                m_service.getVenue(venueId, queryParams, getIfNoneMatch(cachedEntry), getIfModifiedSince(cachedEntry), priority, callId, callback);
+            }
+        }, false, RequestScheduler.Priority.INTERACTIVE, callback);
+    }
+
+    /**
+     * Get the venue summaries near an address for several filters at once. Each filter is resolved through
+     * {@link #exploreSummaries(String, LocationModel.VenueFilter, PromiseCallback)}, so cached filters cost nothing
+     * and every response lands in the cache under the same key the venue lists read, which makes switching to a
+     * fetched filter instant. At most BATCH_MAX_PARALLEL_REQUESTS requests are in flight at any time.
+     *
+     * @param address  {@link String} LocationModel.getEncodedName()
+     * @param filters  {@link Collection} Filters to fetch, in the order they should be requested
+     * @param callback {@link PromiseCallback} Called once with the venues of every filter that could be fetched.
+     *                 onError() is only called when none of them could be fetched
+     */
+    public void exploreBatch(final @NonNull String address, final @NonNull Collection<LocationModel.VenueFilter> filters,
+                             final @NonNull PromiseCallback<Map<LocationModel.VenueFilter, List<VenueSummary>>> callback) {
+        Log.d(LOG_TAG, String.format("exploreBatch(%s:%s)", address, filters));
+        new ExploreBatch(address, filters, callback).start();
+    }
+
+    /**
+     * Runs the explore requests of a batch with bounded parallelism. Only used on the main thread
+     */
+    private class ExploreBatch {
+        private final String m_address;
+        private final Queue<LocationModel.VenueFilter> m_pendingFilters;
+        private final Map<LocationModel.VenueFilter, List<VenueSummary>> m_results = new EnumMap<>(LocationModel.VenueFilter.class);
+        private final PromiseCallback<Map<LocationModel.VenueFilter, List<VenueSummary>>> m_callback;
+
+        private int m_runningRequests;
+        private String m_lastError;
+
+        ExploreBatch(@NonNull String address, @NonNull Collection<LocationModel.VenueFilter> filters,
+                     @NonNull PromiseCallback<Map<LocationModel.VenueFilter, List<VenueSummary>>> callback) {
+            m_address = address;
+            m_pendingFilters = new ArrayDeque<>(new LinkedHashSet<>(filters));
+            m_callback = callback;
+        }
+
+        void start() {
+            if (m_pendingFilters.isEmpty()) {
+                m_callback.onSuccess(m_results);
+                return;
+            }
+
+            while (m_runningRequests < BATCH_MAX_PARALLEL_REQUESTS && !m_pendingFilters.isEmpty()) {
+                exploreNext();
+            }
         }
 
-        m_service.exploreVenues(address, queryParams, wrapPromise(callback));
+        private void exploreNext() {
+            final LocationModel.VenueFilter filter = m_pendingFilters.poll();
+            m_runningRequests++;
+
+            exploreSummaries(m_address, filter, new PromiseCallback<List<VenueSummary>>() {
+                @Override
+                public void onSuccess(@NonNull List<VenueSummary> summaries) {
+                    m_results.put(filter, summaries);
+                    complete();
+                }
+
+                @Override
+                public void onError(@NonNull String message) {
+                    Log.w(LOG_TAG, String.format("exploreBatch(%s:%s): %s", m_address, filter, message));
+                    m_lastError = message;
+                    complete();
+                }
+
+                private void complete() {
+                    m_runningRequests--;
+
+                    if (!m_pendingFilters.isEmpty()) {
+                        exploreNext();
+                    } else if (m_runningRequests == 0) {
+                        if (m_results.isEmpty() && m_lastError != null) {
+                            m_callback.onError(m_lastError);
+                        } else {
+                            m_callback.onSuccess(m_results);
+                        }
+                    }
+                }
+            });
+        }
     }
 
     // *******************************************************
@@ -109,12 +475,365 @@ public enum RestClient {
         getRecentFoursquareMedia(venueId, forceRefresh, queryParams, callback);
     }
 
+    /**
+     * Cached media is served right away and revalidated in the background once it is older than
+     * MEDIA_CACHE_TTL. Pages hold as many media as the current QualityProfile allows, unless params has a count
+     *
+     * @param forceRefresh true to bypass the response cache and have the backend refresh its own copy
+     */
     public void getRecentFoursquareMedia(final @NonNull String venueId, final boolean forceRefresh, final @NonNull Map<String, String> params, final @NonNull PromiseCallback<List<InstagramMedia>> callback) {
         Log.d(LOG_TAG, String.format("getRecentFoursquareMedia(%s, %s)", venueId, forceRefresh));
-        final Map<String, String> queryParams = new HashMap<>();
-        queryParams.putAll(params);
+        final Map<String, String> queryParams = new HashMap<>(params);
+
+        // The page size follows the connection, so it is kept out of the cache key: a page cached on Wi-Fi is still
+        // served once the connection degrades, and the other way around
+        String count = queryParams.remove("count");
+        if (count == null) {
+            count = String.valueOf(ConnectionQuality.INSTANCE.getProfile().getMediaPageSize());
+        }
+        final Map<String, String> uncachedParams = new HashMap<>();
+        uncachedParams.put("count", count);
+
+        fetch(new CacheableRequest<List<InstagramMedia>>("media", venueId, queryParams, uncachedParams, MEDIA_CACHE_TTL, MEDIA_DEADLINE_MS,
+                new TypeReference<ApiResponse<List<InstagramMedia>>>() {
+                }) {
+            @Override
+            void execute(@NonNull String callId, @NonNull Map<String, String> queryParams, @Nullable ResponseCache.Entry<?> cachedEntry,
+                         @NonNull RequestScheduler.Priority priority, @NonNull Callback<ApiResponse<List<InstagramMedia>>> callback) {
+                m_service.getRecentFoursquareMedia(venueId, queryParams, getIfNoneMatch(cachedEntry), getIfModifiedSince(cachedEntry), priority, callId, callback);
+            }
+        }, forceRefresh, RequestScheduler.Priority.INTERACTIVE, callback);
+    }
+
+    // *******************************************************
+    // CACHING
+    // *******************************************************
+
+    /**
+     * A request whose response can be served from the ResponseCache
+     */
+    private static abstract class CacheableRequest<T> {
+        final String endpoint;
+        final String resource;
+        final Map<String, String> queryParams;
+        final long ttl;
+        final long deadline;
+        final TypeReference<ApiResponse<T>> responseType;
+
+        /**
+         * Query params sent with the request that don't change which cached response it may be served from, ie: a
+         * page size. They still tell in-flight calls apart
+         */
+        final Map<String, String> uncachedParams;
+
+        CacheableRequest(@NonNull String endpoint, @NonNull String resource, @NonNull Map<String, String> queryParams,
+                         long ttl, long deadline, @NonNull TypeReference<ApiResponse<T>> responseType) {
+            this(endpoint, resource, queryParams, Collections.<String, String>emptyMap(), ttl, deadline, responseType);
+        }
+
+        CacheableRequest(@NonNull String endpoint, @NonNull String resource, @NonNull Map<String, String> queryParams,
+                         @NonNull Map<String, String> uncachedParams, long ttl, long deadline, @NonNull TypeReference<ApiResponse<T>> responseType) {
+            this.endpoint = endpoint;
+            this.resource = resource;
+            this.queryParams = queryParams;
+            this.uncachedParams = uncachedParams;
+            this.ttl = ttl;
+            this.deadline = deadline;
+            this.responseType = responseType;
+        }
+
+        /**
+         * Performs the actual network call. The callback must be invoked on the main thread. May be called
+         * more than once when a failed attempt is retried.
+         *
+         * @param callId      {@link String} ID of the call, to send as its CALL_HEADER
+         * @param cachedEntry {@link ResponseCache.Entry} Entry being revalidated, whose validators should be sent
+         *                    so the server can answer 304 Not Modified. Null for unconditional requests
+         * @param priority    {@link RequestScheduler.Priority} Class the call must be scheduled in
+         */
+        abstract void execute(@NonNull String callId, @NonNull Map<String, String> queryParams, @Nullable ResponseCache.Entry<?> cachedEntry,
+                              @NonNull RequestScheduler.Priority priority, @NonNull Callback<ApiResponse<T>> callback);
+    }
+
+    /**
+     * Serves the cached response when there is one, revalidating it in the background when it has expired. Only
+     * goes to the network with forceRefresh when cached data is actually stale (or when the caller demands it).
+     * The revalidated response is cached either way, and handed to the callback if it is a RevalidatingCallback.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> void fetch(final @NonNull CacheableRequest<T> request, final boolean forceRefresh, final @NonNull RequestScheduler.Priority priority,
+                           final @NonNull PromiseCallback<T> callback) {
+        final String cacheKey = createRequestKey(request.endpoint, request.resource, request.queryParams);
+        final NetworkMetrics.EndpointMetrics metrics = NetworkMetrics.INSTANCE.getEndpoint(request.endpoint);
+
+        if (forceRefresh) {
+            metrics.incrementCacheMisses();
+            executeRequest(request, cacheKey, true, null, priority, callback);
+            return;
+        }
+
+        m_responseCache.get(cacheKey, request.responseType, new ResponseCache.Listener<ApiResponse<T>>() {
+            @Override
+            public void onResult(final ResponseCache.Entry<ApiResponse<T>> entry) {
+                // Nothing cached yet, so the network is the only option
+                if (entry == null) {
+                    metrics.incrementCacheMisses();
+                    executeRequest(request, cacheKey, false, null, priority, callback);
+                    return;
+                }
+
+                Log.d(LOG_TAG, String.format("fetch(%s): Serving cached response", cacheKey));
+                final long ttl = m_cacheTtlOverride;
+                final boolean isStale = entry.isOlderThan(ttl >= 0 ? ttl : request.ttl);
+                metrics.incrementCacheHits(isStale);
+                callback.onSuccess(entry.response.data);
+
+                // Keep serving the cached copy without revalidating while the endpoint is failing fast
+                if (isStale && !getCircuitBreaker(request.endpoint).isOpen()) {
+                    // Revalidate in the background. The caller already has data, so errors are only logged, and a
+                    // 304 that hands back the very same data isn't delivered again
+                    executeRequest(request, cacheKey, true, entry, RequestScheduler.Priority.BACKGROUND, new PromiseCallback<T>() {
+                        @Override
+                        public void onSuccess(@NonNull T t) {
+                            if (t != entry.response.data && callback instanceof RevalidatingCallback) {
+                                ((RevalidatingCallback<T>) callback).onRevalidated(t);
+                            }
+                        }
+
+                        @Override
+                        public void onError(@NonNull String message) {
+                            Log.w(LOG_TAG, String.format("fetch(%s): Revalidation failed: %s", cacheKey, message));
+                        }
+                    });
+                }
+            }
+        });
+    }
+
+    /**
+     * @param cachedEntry {@link ResponseCache.Entry} Cached entry to revalidate conditionally, or null to request the
+     *                    full response
+     */
+    private <T> void executeRequest(final @NonNull CacheableRequest<T> request, final @NonNull String cacheKey, final boolean forceRefresh,
+                                    final @Nullable ResponseCache.Entry<ApiResponse<T>> cachedEntry, final @NonNull RequestScheduler.Priority priority,
+                                    final @NonNull PromiseCallback<T> callback) {
+        final Map<String, String> queryParams = new HashMap<>(request.queryParams);
+        queryParams.putAll(request.uncachedParams);
         queryParams.put("forceRefresh", (forceRefresh ? "true" : "false"));
-        m_service.getRecentFoursquareMedia(venueId, queryParams, wrapPromise(callback));
+
+        final String requestKey = createRequestKey(request.endpoint, request.resource, queryParams);
+        if (CancellationScope.isCancelled(callback)) {
+            return;
+        }
+
+        final String callId = registerInFlight(requestKey, callback);
+        if (callId == null) {
+            return;
+        }
+
+        final CircuitBreaker circuitBreaker = getCircuitBreaker(request.endpoint);
+        if (circuitBreaker.allowRequest()) {
+            new ResilientCall<>(request, callId, queryParams, cachedEntry, priority, circuitBreaker, this.<T>wrapPromise(callId, cacheKey, cachedEntry)).start();
+        } else {
+            failFast(request, callId, cacheKey);
+        }
+    }
+
+    // *******************************************************
+    // RESILIENCE
+    // *******************************************************
+
+    @NonNull
+    private CircuitBreaker getCircuitBreaker(final @NonNull String endpoint) {
+        synchronized (m_circuitBreakers) {
+            CircuitBreaker circuitBreaker = m_circuitBreakers.get(endpoint);
+            if (circuitBreaker == null) {
+                circuitBreaker = new CircuitBreaker(NetworkMetrics.INSTANCE.getEndpoint(endpoint), CIRCUIT_BREAKER_FAILURE_THRESHOLD, CIRCUIT_BREAKER_COOL_DOWN_MS);
+                m_circuitBreakers.put(endpoint, circuitBreaker);
+            }
+            return circuitBreaker;
+        }
+    }
+
+    /**
+     * Resolves the callbacks waiting on a request whose endpoint is failing fast: with the last cached response,
+     * however old, or with an error when nothing has been cached
+     */
+    @SuppressWarnings("unchecked")
+    private <T> void failFast(final @NonNull CacheableRequest<T> request, final @NonNull String callId, final @NonNull String cacheKey) {
+        Log.w(LOG_TAG, String.format("failFast(%s): Circuit breaker is open", callId));
+        NetworkMetrics.INSTANCE.getEndpoint(request.endpoint).incrementErrors(NetworkMetrics.ERROR_CIRCUIT_OPEN);
+
+        m_responseCache.get(cacheKey, request.responseType, new ResponseCache.Listener<ApiResponse<T>>() {
+            @Override
+            public void onResult(ResponseCache.Entry<ApiResponse<T>> entry) {
+                for (PromiseCallback<?> callback : completeInFlight(callId)) {
+                    if (entry != null) {
+                        ((PromiseCallback<T>) callback).onSuccess(entry.response.data);
+                    } else {
+                        callback.onError("Service temporarily unavailable. Try again later!");
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Retries transient failures: network errors, 5xx and 429 responses. Requests are plain GETs, so they are
+     * safe to repeat.
+     */
+    private static boolean isRetryable(final @NonNull RetrofitError error) {
+        switch (error.getKind()) {
+            case NETWORK:
+                return true;
+            case HTTP:
+                final int status = error.getResponse() == null ? 0 : error.getResponse().getStatus();
+                return status >= 500 || status == 429;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * A 304 is how the server confirms that a conditionally requested response has not changed. Retrofit reports it
+     * as an HTTP error because it carries no body.
+     */
+    private static boolean isNotModified(final @NonNull RetrofitError error) {
+        return error.getKind() == RetrofitError.Kind.HTTP && error.getResponse() != null && error.getResponse().getStatus() == 304;
+    }
+
+    /**
+     * Executes a CacheableRequest within its deadline, retrying transient failures with exponential, fully jittered
+     * backoff and reporting every outcome to the endpoint's circuit breaker. Only used on the main thread.
+     * <p/>
+     * Its total time, retries and the class of the error it finally failed with are recorded in NetworkMetrics.
+     */
+    private class ResilientCall<T> implements Callback<ApiResponse<T>> {
+        private final CacheableRequest<T> m_request;
+        private final String m_callId;
+        private final Map<String, String> m_queryParams;
+        private final ResponseCache.Entry<?> m_cachedEntry;
+        private final RequestScheduler.Priority m_priority;
+        private final CircuitBreaker m_circuitBreaker;
+        private final Callback<ApiResponse<T>> m_callback;
+        private final NetworkMetrics.EndpointMetrics m_metrics;
+
+        private long m_startedAt;
+        private long m_deadlineAt;
+        private int m_attempts;
+        private boolean m_isComplete;
+
+        private final Runnable m_attemptRunnable = new Runnable() {
+            @Override
+            public void run() {
+                attempt();
+            }
+        };
+
+        private final Runnable m_deadlineRunnable = new Runnable() {
+            @Override
+            public void run() {
+                if (!m_isComplete) {
+                    Log.w(LOG_TAG, String.format("ResilientCall(%s): Deadline exceeded after %d attempt(s)", m_callId, m_attempts));
+                    m_metrics.incrementErrors(NetworkMetrics.ERROR_TIMEOUT);
+                    complete();
+                    m_callback.failure(RetrofitError.networkError(m_callId, new SocketTimeoutException("Deadline exceeded")));
+                }
+            }
+        };
+
+        ResilientCall(@NonNull CacheableRequest<T> request, @NonNull String callId, @NonNull Map<String, String> queryParams,
+                      @Nullable ResponseCache.Entry<?> cachedEntry, @NonNull RequestScheduler.Priority priority,
+                      @NonNull CircuitBreaker circuitBreaker, @NonNull Callback<ApiResponse<T>> callback) {
+            m_request = request;
+            m_callId = callId;
+            m_queryParams = queryParams;
+            m_cachedEntry = cachedEntry;
+            m_priority = priority;
+            m_circuitBreaker = circuitBreaker;
+            m_callback = callback;
+            m_metrics = NetworkMetrics.INSTANCE.getEndpoint(request.endpoint);
+        }
+
+        void start() {
+            m_startedAt = SystemClock.elapsedRealtime();
+            m_deadlineAt = m_startedAt + m_request.deadline;
+            m_mainHandler.postDelayed(m_deadlineRunnable, m_request.deadline);
+            attempt();
+        }
+
+        private void attempt() {
+            m_attempts++;
+            m_request.execute(m_callId, m_queryParams, m_cachedEntry, m_priority, this);
+        }
+
+        @Override
+        public void success(ApiResponse<T> apiResponse, Response response) {
+            m_circuitBreaker.onSuccess();
+
+            // A response that arrives after the deadline is still passed on so that it gets cached
+            complete();
+            m_callback.success(apiResponse, response);
+        }
+
+        @Override
+        public void failure(RetrofitError error) {
+            if (m_isComplete) {
+                return;
+            }
+
+            // The endpoint answered as asked, the cached response is still valid
+            if (isNotModified(error)) {
+                m_circuitBreaker.onSuccess();
+                m_metrics.incrementNotModified();
+                complete();
+                m_callback.failure(error);
+                return;
+            }
+
+            // Everybody waiting on the call has been cancelled, which is also why the transport aborted it
+            if (isAbandoned(m_callId)) {
+                Log.d(LOG_TAG, String.format("ResilientCall(%s): Abandoned after %d attempt(s)", m_callId, m_attempts));
+                m_metrics.incrementErrors(NetworkMetrics.ERROR_CANCELLED);
+                complete();
+                m_callback.failure(error);
+                return;
+            }
+
+            // The endpoint is up when it answered, even if it turned the request down or sent a body that can't be
+            // decoded. Retrying wouldn't change that, and a half-open breaker would otherwise never close
+            final boolean isRetryable = isRetryable(error);
+            if (isRetryable) {
+                m_circuitBreaker.onFailure();
+            } else if (error.getResponse() != null) {
+                m_circuitBreaker.onSuccess();
+            }
+
+            if (isRetryable && m_attempts < MAX_ATTEMPTS && m_circuitBreaker.allowRequest()) {
+                final long maxDelay = Math.min(RETRY_MAX_DELAY_MS, RETRY_BASE_DELAY_MS << (m_attempts - 1));
+                final long delay = (long) (m_random.nextDouble() * maxDelay);
+
+                if (SystemClock.elapsedRealtime() + delay < m_deadlineAt) {
+                    Log.w(LOG_TAG, String.format("ResilientCall(%s): Attempt %d failed, retrying in %dms: %s", m_callId, m_attempts, delay, error.getMessage()));
+                    m_metrics.incrementRetries();
+                    m_mainHandler.postDelayed(m_attemptRunnable, delay);
+                    return;
+                }
+            }
+
+            m_metrics.incrementErrors(getErrorClass(error));
+            complete();
+            m_callback.failure(error);
+        }
+
+        private void complete() {
+            if (!m_isComplete) {
+                m_metrics.getTotal().record(SystemClock.elapsedRealtime() - m_startedAt);
+            }
+            m_isComplete = true;
+            m_mainHandler.removeCallbacks(m_deadlineRunnable);
+            m_mainHandler.removeCallbacks(m_attemptRunnable);
+        }
     }
 
     // *******************************************************
@@ -122,25 +841,367 @@ public enum RestClient {
     // *******************************************************
 
     private static JacksonConverter createJacksonConverter() {
-        final ObjectMapper mapper = new ObjectMapper();
-        return new JacksonConverter(mapper);
+        final ObjectMapper jsonMapper = new ObjectMapper();
+        jsonMapper.registerModule(ModelDeserializers.createModule());
+
+        final ObjectMapper smileMapper = new ObjectMapper(new SmileFactory());
+        smileMapper.registerModule(ModelDeserializers.createModule());
+
+        return new JacksonConverter(jsonMapper, smileMapper, JacksonConverter.Format.JSON);
+    }
+
+    /**
+     * @return {@link String} NetworkMetrics error class of a call that failed for good
+     */
+    @NonNull
+    private static String getErrorClass(final @NonNull RetrofitError error) {
+        switch (error.getKind()) {
+            case NETWORK:
+                return error.getCause() instanceof SocketTimeoutException ? NetworkMetrics.ERROR_TIMEOUT : NetworkMetrics.ERROR_NETWORK;
+            case HTTP:
+                final int status = error.getResponse() == null ? 0 : error.getResponse().getStatus();
+                return status >= 500 ? NetworkMetrics.ERROR_HTTP_5XX : NetworkMetrics.ERROR_HTTP_4XX;
+            case CONVERSION:
+                return NetworkMetrics.ERROR_CONVERSION;
+            default:
+                return NetworkMetrics.ERROR_UNEXPECTED;
+        }
     }
 
-    private static <T> Callback<ApiResponse<T>> wrapPromise(final @NonNull PromiseCallback<T> callback) {
+    @Nullable
+    private static String getIfNoneMatch(final @Nullable ResponseCache.Entry<?> cachedEntry) {
+        return cachedEntry == null ? null : cachedEntry.etag;
+    }
+
+    @Nullable
+    private static String getIfModifiedSince(final @Nullable ResponseCache.Entry<?> cachedEntry) {
+        return cachedEntry == null ? null : cachedEntry.lastModified;
+    }
+
+    /**
+     * @return {@link String} Value of the first response header with the provided name (case-insensitive), or null
+     */
+    @Nullable
+    private static String getHeader(final @NonNull Response response, final @NonNull String name) {
+        for (Header header : response.getHeaders()) {
+            if (name.equalsIgnoreCase(header.getName())) {
+                return header.getValue();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Builds the signature used to identify identical requests
+     *
+     * @param endpoint    {@link String} Name of the endpoint being requested
+     * @param resource    {@link String} Path param identifying the requested resource (address, venue ID, etc.)
+     * @param queryParams {@link Map} Query params sent with the request
+     * @return {@link String} Key that is identical for requests that would produce the same response
+     */
+    private static String createRequestKey(final @NonNull String endpoint, final @NonNull String resource, final @NonNull Map<String, String> queryParams) {
+        // Sort params so that insertion order does not affect the key
+        return endpoint + "/" + resource + "?" + new TreeMap<>(queryParams);
+    }
+
+    // *******************************************************
+    // STREAMING
+    // *******************************************************
+
+    /**
+     * Executes a streaming explore request, decoding the data array item by item and dispatching each chunk to the
+     * StreamingCallbacks waiting on the call. The callback is resolved on the main thread once decoding completes.
+     * <p/>
+     * Not called on UI thread
+     */
+    private <E> void streamRequest(final @NonNull String address, final @NonNull Map<String, String> queryParams, final @Nullable ResponseCache.Entry<?> cachedEntry,
+                                   final @NonNull RequestScheduler.Priority priority, final @NonNull Class<E> elementType, final @NonNull String callId, final @NonNull Callback<ApiResponse<List<E>>> callback) {
+        Response response = null;
+        try {
+            // A 304 is thrown as a RetrofitError before any of the body is read
+            response = m_service.exploreVenues(address, queryParams, getIfNoneMatch(cachedEntry), getIfModifiedSince(cachedEntry), priority, callId);
+
+            // A 204, or any response without a body, has no venues to decode
+            final TypedInput body = response.getBody();
+            if (body == null) {
+                postFailure(callback, RetrofitError.conversionError(response.getUrl(), response, m_converter, elementType,
+                        new ConversionException("Response has no body: " + response.getStatus())));
+                return;
+            }
+
+            // Decoding overlaps the download, so parse time includes waiting on the rest of the body
+            final long parseStartedAt = SystemClock.elapsedRealtime();
+            final ApiResponse<List<E>> apiResponse = m_converter.readStreaming(body.in(), body.mimeType(), elementType, STREAMING_CHUNK_SIZE,
+                    new JacksonConverter.ChunkListener<E>() {
+                        @Override
+                        public void onChunk(@NonNull List<E> items) throws IOException {
+                            // Stop decoding (and reading) a payload nobody is waiting on anymore
+                            if (isAbandoned(callId)) {
+                                throw new InterruptedIOException("Call cancelled: " + callId);
+                            }
+                            dispatchChunk(callId, items);
+                        }
+                    });
+            NetworkMetrics.INSTANCE.getEndpoint("explore").getParse().record(SystemClock.elapsedRealtime() - parseStartedAt);
+
+            final Response finalResponse = response;
+            m_mainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    callback.success(apiResponse, finalResponse);
+                }
+            });
+        } catch (RetrofitError e) {
+            postFailure(callback, e);
+        } catch (JsonProcessingException e) {
+            postFailure(callback, RetrofitError.conversionError(response.getUrl(), response, m_converter, elementType, new ConversionException(e)));
+        } catch (IOException e) {
+            postFailure(callback, RetrofitError.networkError(response == null ? address : response.getUrl(), e));
+        } catch (RuntimeException e) {
+            // Anything else thrown while decoding (ie: a model rejecting a value) must still resolve the call, rather
+            // than kill the executor thread with the callback never called
+            if (response == null) {
+                postFailure(callback, RetrofitError.unexpectedError(address, e));
+            } else {
+                postFailure(callback, RetrofitError.conversionError(response.getUrl(), response, m_converter, elementType, new ConversionException(e)));
+            }
+        }
+    }
+
+    // *******************************************************
+    // METRICS
+    // *******************************************************
+
+    /**
+     * Records the time spent converting each response body under the endpoint that HttpTransport last executed on
+     * the converting thread
+     */
+    private static class MeteredConverter implements Converter {
+        private final Converter m_converter;
+
+        MeteredConverter(@NonNull Converter converter) {
+            m_converter = converter;
+        }
+
+        @Override
+        public Object fromBody(TypedInput body, Type type) throws ConversionException {
+            final long startedAt = SystemClock.elapsedRealtime();
+            try {
+                return m_converter.fromBody(body, type);
+            } finally {
+                final NetworkMetrics.EndpointMetrics metrics = HttpTransport.getCurrentMetrics();
+                if (metrics != null) {
+                    metrics.getParse().record(SystemClock.elapsedRealtime() - startedAt);
+                }
+            }
+        }
+
+        @Override
+        public TypedOutput toBody(Object object) {
+            return m_converter.toBody(object);
+        }
+    }
+
+    private <T> void postFailure(final @NonNull Callback<T> callback, final @NonNull RetrofitError error) {
+        m_mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                callback.failure(error);
+            }
+        });
+    }
+
+    /**
+     * Tells the callback that started the call, if it is a MeteredCallback, how many bytes the call downloaded. Posted
+     * before the call is resolved, since the transport reports a body before Retrofit (or streamRequest()) posts the
+     * result
+     */
+    private void dispatchBytesReceived(final @NonNull String callId, final long byteCount) {
+        final PromiseCallback<?> callback;
+        synchronized (m_inFlightRequests) {
+            final InFlightCall call = getInFlightCall(callId);
+            callback = call == null || call.callbacks.isEmpty() ? null : call.callbacks.get(0);
+        }
+
+        if (callback instanceof MeteredCallback) {
+            m_mainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    ((MeteredCallback<?>) callback).onBytesReceived(byteCount);
+                }
+            });
+        }
+    }
+
+    /**
+     * Hands decoded items to every StreamingCallback currently waiting on the call
+     */
+    @SuppressWarnings("unchecked")
+    private <E> void dispatchChunk(final @NonNull String callId, final @NonNull List<E> items) {
+        m_mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                final List<PromiseCallback<?>> callbacks;
+                synchronized (m_inFlightRequests) {
+                    final InFlightCall call = getInFlightCall(callId);
+                    callbacks = call == null ? null : new ArrayList<>(call.callbacks);
+                }
+
+                if (callbacks == null) {
+                    return;
+                }
+
+                for (PromiseCallback<?> callback : callbacks) {
+                    if (callback instanceof StreamingCallback) {
+                        ((StreamingCallback<E>) callback).onChunk(items);
+                    }
+                }
+            }
+        });
+    }
+
+    // *******************************************************
+    // IN-FLIGHT REQUESTS
+    // *******************************************************
+
+    /**
+     * A call registered in m_inFlightRequests. Its ID is the request key followed by a number unique to the call, so
+     * a call that completed early (ie: by its deadline) can't be mistaken for a later, identical one
+     */
+    private static class InFlightCall {
+        final String callId;
+        final List<PromiseCallback<?>> callbacks = new ArrayList<>(1);
+
+        InFlightCall(@NonNull String callId) {
+            this.callId = callId;
+        }
+    }
+
+    /**
+     * Adds the callback to the list of callbacks waiting on the request identified by requestKey
+     *
+     * @return {@link String} ID of the call the caller should issue, or null if an identical request is already in
+     * flight and the callback joined it
+     */
+    @Nullable
+    private String registerInFlight(final @NonNull String requestKey, final @NonNull PromiseCallback<?> callback) {
+        synchronized (m_inFlightRequests) {
+            InFlightCall call = m_inFlightRequests.get(requestKey);
+            if (call != null) {
+                Log.d(LOG_TAG, String.format("registerInFlight(%s): Joining in-flight request", call.callId));
+                call.callbacks.add(callback);
+                return null;
+            }
+
+            call = new InFlightCall(requestKey + CALL_ID_SEPARATOR + m_nextCallNumber++);
+            call.callbacks.add(callback);
+            m_inFlightRequests.put(requestKey, call);
+            return call.callId;
+        }
+    }
+
+    /**
+     * @return {@link InFlightCall} The call if it is still registered, null once it has completed. Must hold
+     * m_inFlightRequests
+     */
+    @Nullable
+    private InFlightCall getInFlightCall(final @NonNull String callId) {
+        final InFlightCall call = m_inFlightRequests.get(getRequestKey(callId));
+        return call != null && call.callId.equals(callId) ? call : null;
+    }
+
+    @NonNull
+    private static String getRequestKey(final @NonNull String callId) {
+        return callId.substring(0, callId.lastIndexOf(CALL_ID_SEPARATOR));
+    }
+
+    /**
+     * @return true if every callback waiting on the call belongs to a CancellationScope that has been cancelled.
+     * Calls that are no longer registered (ie: completed by their deadline) are not considered abandoned, so a
+     * late response still gets cached. May be called from any thread
+     */
+    private boolean isAbandoned(final @NonNull String callId) {
+        synchronized (m_inFlightRequests) {
+            final InFlightCall call = getInFlightCall(callId);
+            if (call == null || call.callbacks.isEmpty()) {
+                return false;
+            }
+
+            for (PromiseCallback<?> callback : call.callbacks) {
+                if (!CancellationScope.isCancelled(callback)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Removes the call from the in-flight registry. A call that already completed, and whose request may have been
+     * registered again by a later call since, is left alone
+     *
+     * @return {@link List} Callbacks that were waiting on the call, empty if it had already completed
+     */
+    @NonNull
+    private List<PromiseCallback<?>> completeInFlight(final @NonNull String callId) {
+        synchronized (m_inFlightRequests) {
+            final InFlightCall call = getInFlightCall(callId);
+            if (call == null) {
+                return Collections.emptyList();
+            }
+
+            m_inFlightRequests.remove(getRequestKey(callId));
+            return call.callbacks;
+        }
+    }
+
+    /**
+     * Creates a Retrofit callback that resolves every PromiseCallback waiting on the request. All callbacks
+     * receive the same parsed instance, so they must treat it as read-only.
+     *
+     * @param cachedEntry {@link ResponseCache.Entry} Entry the request revalidates. A 304 resolves the callbacks
+     *                    with its response and renews it in the cache
+     */
+    @SuppressWarnings("unchecked")
+    private <T> Callback<ApiResponse<T>> wrapPromise(final @NonNull String callId, final @NonNull String cacheKey,
+                                                     final @Nullable ResponseCache.Entry<ApiResponse<T>> cachedEntry) {
         return new Callback<ApiResponse<T>>() {
             @Override
-            public void success(ApiResponse apiResponse, Response response) {
+            public void success(ApiResponse<T> apiResponse, Response response) {
+                final List<PromiseCallback<?>> callbacks = completeInFlight(callId);
+
                 if (apiResponse == null || !apiResponse.wasSuccessful()) {
-                    callback.onError(apiResponse.status + ":" + response.getReason());
+                    final String message = (apiResponse == null ? null : apiResponse.status) + ":" + response.getReason();
+                    for (PromiseCallback<?> callback : callbacks) {
+                        callback.onError(message);
+                    }
                     return;
                 }
 
-                callback.onSuccess((T) apiResponse.data);
+                // Only successful responses are cached, along with their validators
+                m_responseCache.put(cacheKey, apiResponse, getHeader(response, "ETag"), getHeader(response, "Last-Modified"));
+
+                for (PromiseCallback<?> callback : callbacks) {
+                    ((PromiseCallback<T>) callback).onSuccess(apiResponse.data);
+                }
             }
 
             @Override
             public void failure(RetrofitError error) {
-                callback.onError(error.getMessage());
+                if (cachedEntry != null && isNotModified(error)) {
+                    Log.d(LOG_TAG, String.format("wrapPromise(%s): Not modified, reusing cached response", callId));
+                    m_responseCache.refresh(cacheKey, cachedEntry);
+
+                    for (PromiseCallback<?> callback : completeInFlight(callId)) {
+                        ((PromiseCallback<T>) callback).onSuccess(cachedEntry.response.data);
+                    }
+                    return;
+                }
+
+                final String message = String.valueOf(error.getMessage());
+                for (PromiseCallback<?> callback : completeInFlight(callId)) {
+                    callback.onError(message);
+                }
             }
         };
     }
@@ -0,0 +1,207 @@
+package com.dpg.crowdscout.network;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.os.BatteryManager;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.PowerManager;
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import com.dpg.crowdscout.BuildConfig;
+import com.dpg.crowdscout.models.LocationModel;
+import com.dpg.crowdscout.models.VenueSummary;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Queue;
+
+/**
+ * Warms the explore cache for locations the user is looking at, so opening one of them can be served from the
+ * ResponseCache instead of waiting on a full round trip.
+ * <p/>
+ * Prefetches only start once the UI has been idle for IDLE_DELAY_MS and run one at a time. They are skipped
+ * entirely when the device is offline, in power save mode or low on battery, and stop once the session's byte
+ * budget has been spent. The budget comes from the active QualityProfile, which disables prefetching on slow
+ * connections and keeps it small on metered ones.
+ * <p/>
+ * Must only be used on the UI thread
+ */
+public class VenuePrefetcher {
+    private static final String LOG_TAG = VenuePrefetcher.class.getSimpleName();
+    private static final boolean DEBUG = BuildConfig.DEBUG && false;
+
+    /**
+     * How long the UI has to be idle before the first prefetch starts
+     */
+    private static final long IDLE_DELAY_MS = 750;
+
+    /**
+     * Below this battery level prefetching is disabled unless the device is charging
+     */
+    private static final int MIN_BATTERY_PERCENT = 20;
+
+    /**
+     * Bytes spent on prefetching by every instance since the process started
+     */
+    private static long s_bytesSpent;
+
+    private final Context m_context;
+    private final Handler m_handler = new Handler(Looper.getMainLooper());
+    private final Queue<LocationModel> m_queue = new ArrayDeque<>();
+
+    /**
+     * Set while a prefetch is in flight, which cancel() doesn't abort, so that the next one never overlaps it
+     */
+    private boolean m_isPrefetching;
+
+    /**
+     * Set while the UI has yet to be idle for IDLE_DELAY_MS since prefetch() was called
+     */
+    private boolean m_isWaitingForIdle;
+
+    private final Runnable m_prefetchNextRunnable = new Runnable() {
+        @Override
+        public void run() {
+            prefetchNext();
+        }
+    };
+
+    public VenuePrefetcher(@NonNull Context context) {
+        m_context = context.getApplicationContext();
+    }
+
+    /**
+     * Replaces the pending prefetches with the provided locations. Prefetching starts once the UI has been idle
+     * for a moment; calling this again (or cancel()) restarts the wait.
+     *
+     * @param locations {@link Collection} Locations currently on screen, most relevant first
+     */
+    public void prefetch(@NonNull Collection<LocationModel> locations) {
+        cancel();
+        m_queue.addAll(new LinkedHashSet<>(locations));
+        m_isWaitingForIdle = true;
+        m_handler.postDelayed(m_prefetchNextRunnable, IDLE_DELAY_MS);
+    }
+
+    /**
+     * Drops every pending prefetch. A request that is already in flight completes and is cached, and is
+     * shared with any screen that asks for the same venues in the meantime. Prefetches queued after this only
+     * start once it has.
+     */
+    public void cancel() {
+        m_queue.clear();
+        m_isWaitingForIdle = false;
+        m_handler.removeCallbacks(m_prefetchNextRunnable);
+    }
+
+    private void prefetchNext() {
+        m_isWaitingForIdle = false;
+
+        // complete() picks the queue up again once the prefetch in flight resolves
+        if (m_isPrefetching) {
+            return;
+        }
+
+        final LocationModel location = m_queue.poll();
+        if (location == null) {
+            return;
+        }
+
+        if (!canPrefetch()) {
+            m_queue.clear();
+            return;
+        }
+
+        m_isPrefetching = true;
+
+        if (DEBUG) {
+            Log.d(LOG_TAG, String.format("prefetchNext(%s:%s)", location.getName(), location.getCategory()));
+        }
+
+        RestClient.INSTANCE.exploreSummaries(location.getEncodedName(), location.getCategory(), false, RequestScheduler.Priority.PREFETCH, new RestClient.MeteredCallback<List<VenueSummary>>() {
+            @Override
+            public void onBytesReceived(long byteCount) {
+                s_bytesSpent += byteCount;
+            }
+
+            @Override
+            public void onSuccess(@NonNull List<VenueSummary> venues) {
+                complete();
+            }
+
+            @Override
+            public void onError(@NonNull String message) {
+                Log.w(LOG_TAG, String.format("prefetchNext(%s): %s", location.getName(), message));
+                complete();
+            }
+
+            private void complete() {
+                m_isPrefetching = false;
+
+                // Locations queued by a prefetch() since wait for the UI to be idle as usual
+                if (!m_isWaitingForIdle) {
+                    m_handler.post(m_prefetchNextRunnable);
+                }
+            }
+        });
+    }
+
+    // *******************************************************
+    // CONSTRAINTS
+    // *******************************************************
+
+    private boolean canPrefetch() {
+        final ConnectivityManager connectivityManager = (ConnectivityManager) m_context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        final NetworkInfo networkInfo = connectivityManager.getActiveNetworkInfo();
+        if (networkInfo == null || !networkInfo.isConnected()) {
+            if (DEBUG) {
+                Log.d(LOG_TAG, "canPrefetch(): Offline");
+            }
+            return false;
+        }
+
+        final long budget = ConnectionQuality.INSTANCE.getProfile().getPrefetchByteBudget();
+        if (s_bytesSpent >= budget) {
+            if (DEBUG) {
+                Log.d(LOG_TAG, String.format("canPrefetch(): Byte budget spent (%d of %d)", s_bytesSpent, budget));
+            }
+            return false;
+        }
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            final PowerManager powerManager = (PowerManager) m_context.getSystemService(Context.POWER_SERVICE);
+            if (powerManager.isPowerSaveMode()) {
+                if (DEBUG) {
+                    Log.d(LOG_TAG, "canPrefetch(): Power save mode");
+                }
+                return false;
+            }
+        }
+
+        // Sticky broadcast, so no receiver is actually registered
+        final Intent batteryStatus = m_context.registerReceiver(null, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+        if (batteryStatus != null) {
+            final int status = batteryStatus.getIntExtra(BatteryManager.EXTRA_STATUS, -1);
+            final boolean isCharging = status == BatteryManager.BATTERY_STATUS_CHARGING || status == BatteryManager.BATTERY_STATUS_FULL;
+            final int level = batteryStatus.getIntExtra(BatteryManager.EXTRA_LEVEL, -1);
+            final int scale = batteryStatus.getIntExtra(BatteryManager.EXTRA_SCALE, -1);
+
+            if (!isCharging && level >= 0 && scale > 0 && level * 100 / scale < MIN_BATTERY_PERCENT) {
+                if (DEBUG) {
+                    Log.d(LOG_TAG, String.format("canPrefetch(): Battery low (%d/%d)", level, scale));
+                }
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,256 @@
+package com.dpg.crowdscout.utils;
+
+import android.graphics.Bitmap;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+
+/**
+ * Process-wide pool of bitmaps that are no longer shown nor cached, handed back to BitmapFactory through
+ * Options.inBitmap so decoding an image doesn't allocate a new bitmap.
+ * <p/>
+ * Only bitmaps decoded by ImageDownloader are tracked. A tracked bitmap enters the pool once no ImageView displays it
+ * and no ImageCache holds it anymore, which ImageDownloader and BitmapLruCache report. Pooled bitmaps are bucketed by
+ * allocation size, and since KitKat any bitmap whose allocation is large enough can be reused whatever its
+ * dimensions. The pool is capped in bytes, and the least recently pooled bitmaps are dropped first.
+ * <p/>
+ * May be called from any thread
+ */
+public enum BitmapPool {
+    INSTANCE;
+
+    private static final String LOG_TAG = BitmapPool.class.getSimpleName();
+
+    /**
+     * Largest allocation, relative to the requested size, that get() may return. Reusing a much larger bitmap would
+     * keep memory tied up that a later, larger image could have used
+     */
+    private static final int MAX_SIZE_MULTIPLE = 2;
+
+    /**
+     * Why a bitmap is still in use. The pool only takes it once both counts drop to 0
+     */
+    private static class Usage {
+        int displayCount;
+        int cacheCount;
+    }
+
+    private final long m_maxBytes;
+
+    /**
+     * Pooled bitmaps by allocation size, and in the order they were pooled. Guarded by this
+     */
+    private final TreeMap<Integer, LinkedHashSet<Bitmap>> m_buckets = new TreeMap<>();
+    private final LinkedHashSet<Bitmap> m_lru = new LinkedHashSet<>();
+    private long m_bytes;
+
+    /**
+     * Usage of tracked bitmaps that aren't pooled. Weak so that bitmaps dropped with their views are simply
+     * collected. Guarded by this
+     */
+    private final Map<Bitmap, Usage> m_usages = new WeakHashMap<>();
+
+    private int m_hits;
+    private int m_misses;
+    private int m_puts;
+    private int m_rejects;
+    private int m_evictions;
+
+    BitmapPool() {
+        // Half of what BitmapLruCache keeps, as pooled bitmaps are only worth keeping while images are scrolled by
+        m_maxBytes = Runtime.getRuntime().maxMemory() / 16;
+    }
+
+    /**
+     * @param byteCount Bytes the decoded image needs
+     * @return {@link Bitmap} Mutable bitmap whose allocation holds at least byteCount, removed from the pool, or null
+     * if none is large enough. Its dimensions and pixels are those of the image it last held
+     */
+    @Nullable
+    public synchronized Bitmap get(int byteCount) {
+        final Map.Entry<Integer, LinkedHashSet<Bitmap>> entry = m_buckets.ceilingEntry(byteCount);
+        if (entry == null || entry.getKey() > (long) byteCount * MAX_SIZE_MULTIPLE) {
+            m_misses++;
+            return null;
+        }
+
+        final Bitmap bitmap = entry.getValue().iterator().next();
+        remove(bitmap);
+        m_hits++;
+        return bitmap;
+    }
+
+    /**
+     * Adds a bitmap nothing references anymore to the pool. Bitmaps that can't be reused are dropped
+     */
+    public synchronized void put(@NonNull Bitmap bitmap) {
+        m_usages.remove(bitmap);
+
+        final int byteCount = bitmap.getAllocationByteCount();
+        if (bitmap.isRecycled() || !bitmap.isMutable() || byteCount > m_maxBytes / 2 || m_lru.contains(bitmap)) {
+            m_rejects++;
+            return;
+        }
+
+        LinkedHashSet<Bitmap> bucket = m_buckets.get(byteCount);
+        if (bucket == null) {
+            bucket = new LinkedHashSet<>();
+            m_buckets.put(byteCount, bucket);
+        }
+        bucket.add(bitmap);
+        m_lru.add(bitmap);
+        m_bytes += byteCount;
+        m_puts++;
+
+        // Drop the bitmaps pooled the longest ago
+        while (m_bytes > m_maxBytes) {
+            remove(m_lru.iterator().next());
+            m_evictions++;
+        }
+    }
+
+    /**
+     * Drops every pooled bitmap, ie: when the system is low on memory
+     */
+    public synchronized void clear() {
+        m_buckets.clear();
+        m_lru.clear();
+        m_bytes = 0;
+    }
+
+    // *******************************************************
+    // Usage Tracking
+    // *******************************************************
+
+    /**
+     * Starts tracking a bitmap that was just decoded, so it returns to the pool once it is no longer used
+     */
+    public synchronized void track(@NonNull Bitmap bitmap) {
+        if (!m_usages.containsKey(bitmap)) {
+            m_usages.put(bitmap, new Usage());
+        }
+    }
+
+    /**
+     * Called when an ImageView starts displaying the bitmap. Ignored for bitmaps that aren't tracked
+     */
+    public synchronized void onDisplayed(@NonNull Bitmap bitmap) {
+        final Usage usage = m_usages.get(bitmap);
+        if (usage != null) {
+            usage.displayCount++;
+        }
+    }
+
+    /**
+     * Called when an ImageView stops displaying the bitmap
+     */
+    public synchronized void onReleased(@NonNull Bitmap bitmap) {
+        final Usage usage = m_usages.get(bitmap);
+        if (usage != null && usage.displayCount > 0) {
+            usage.displayCount--;
+            putIfUnused(bitmap, usage);
+        }
+    }
+
+    /**
+     * Called when an ImageCache starts holding the bitmap
+     */
+    public synchronized void onCached(@NonNull Bitmap bitmap) {
+        final Usage usage = m_usages.get(bitmap);
+        if (usage != null) {
+            usage.cacheCount++;
+        }
+    }
+
+    /**
+     * Called when an ImageCache evicts or replaces the bitmap
+     */
+    public synchronized void onEvicted(@NonNull Bitmap bitmap) {
+        final Usage usage = m_usages.get(bitmap);
+        if (usage != null && usage.cacheCount > 0) {
+            usage.cacheCount--;
+            putIfUnused(bitmap, usage);
+        }
+    }
+
+    private void putIfUnused(@NonNull Bitmap bitmap, @NonNull Usage usage) {
+        if (usage.displayCount == 0 && usage.cacheCount == 0) {
+            put(bitmap);
+        }
+    }
+
+    private void remove(@NonNull Bitmap bitmap) {
+        final int byteCount = bitmap.getAllocationByteCount();
+        final LinkedHashSet<Bitmap> bucket = m_buckets.get(byteCount);
+        if (bucket != null) {
+            bucket.remove(bitmap);
+            if (bucket.isEmpty()) {
+                m_buckets.remove(byteCount);
+            }
+        }
+        m_lru.remove(bitmap);
+        m_bytes -= byteCount;
+    }
+
+    // *******************************************************
+    // Metrics
+    // *******************************************************
+
+    /**
+     * @return Number of get() calls that returned a bitmap
+     */
+    public synchronized int getHits() {
+        return m_hits;
+    }
+
+    /**
+     * @return Number of get() calls that found no bitmap large enough, and so allocated a new one
+     */
+    public synchronized int getMisses() {
+        return m_misses;
+    }
+
+    public synchronized int getPuts() {
+        return m_puts;
+    }
+
+    /**
+     * @return Number of bitmaps that were offered to the pool but couldn't be reused, ie: immutable ones
+     */
+    public synchronized int getRejects() {
+        return m_rejects;
+    }
+
+    /**
+     * @return Number of pooled bitmaps dropped to stay within the byte cap
+     */
+    public synchronized int getEvictions() {
+        return m_evictions;
+    }
+
+    public synchronized long getBytes() {
+        return m_bytes;
+    }
+
+    public long getMaxBytes() {
+        return m_maxBytes;
+    }
+
+    /**
+     * Logs the metrics of the pool
+     */
+    public void dump() {
+        Log.i(LOG_TAG, toString());
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("bitmaps=%d bytes=%d/%d hit/miss=%d/%d puts=%d rejects=%d evictions=%d",
+                m_lru.size(), m_bytes, m_maxBytes, m_hits, m_misses, m_puts, m_rejects, m_evictions);
+    }
+}
@@ -0,0 +1,426 @@
+package com.dpg.crowdscout.utils;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import com.dpg.crowdscout.BuildConfig;
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hashing;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Size bounded cache of files in a directory, evicting the least recently used ones.
+ * <p/>
+ * An in-memory index in access order knows every entry and its size, so lookups and access updates are O(1) and
+ * eviction never lists or stats the directory. The index is rebuilt on open from an append-only journal:
+ * <pre>
+ *     CLEAN &lt;key&gt; &lt;size&gt;    entry written
+ *     READ &lt;key&gt;             entry accessed
+ *     REMOVE &lt;key&gt;           entry evicted or removed
+ * </pre>
+ * The journal is compacted once most of its lines are redundant. Entries are written to a temp file and renamed into
+ * place, so readers only ever see complete files, and a reader keeps reading the file it opened even if the entry is
+ * replaced or evicted in the meantime. Any number of threads may read while a single one writes at a time.
+ */
+public class DiskLruCache {
+    private static final String LOG_TAG = DiskLruCache.class.getSimpleName();
+    private static final boolean DEBUG = BuildConfig.DEBUG && false;
+
+    private static final String JOURNAL_FILE_NAME = "journal";
+    private static final String JOURNAL_TEMP_FILE_NAME = "journal.tmp";
+    private static final String TEMP_FILE_SUFFIX = ".tmp";
+    private static final String MAGIC = "com.dpg.crowdscout.DiskLruCache";
+    private static final String VERSION = "1";
+
+    private static final String CLEAN = "CLEAN";
+    private static final String READ = "READ";
+    private static final String REMOVE = "REMOVE";
+
+    /**
+     * Redundant journal lines tolerated before the journal is compacted
+     */
+    private static final int COMPACT_THRESHOLD = 2000;
+
+    /**
+     * Writes the contents of an entry
+     */
+    public interface EntryWriter {
+        /**
+         * Not called on UI thread
+         *
+         * @return false to abandon the entry, ie: when there was nothing to write
+         */
+        public boolean write(@NonNull OutputStream out) throws IOException;
+    }
+
+    private final File m_directory;
+    private final File m_journalFile;
+    private final long m_maxSize;
+
+    /**
+     * Size of each entry by key, least recently used first. Guarded by this, as are the journal and the sizes
+     */
+    private final LinkedHashMap<String, Long> m_index = new LinkedHashMap<>(0, 0.75f, true);
+    private long m_size;
+    private int m_redundantOpCount;
+    private Writer m_journalWriter;
+
+    /**
+     * Serializes writers, so that entries are written outside of the index lock
+     */
+    private final Object m_writeLock = new Object();
+
+    private DiskLruCache(@NonNull File directory, long maxSize) {
+        m_directory = directory;
+        m_journalFile = new File(directory, JOURNAL_FILE_NAME);
+        m_maxSize = maxSize;
+    }
+
+    /**
+     * Opens the cache in the directory, creating it if needed. Files in the directory that the journal doesn't know
+     * of are deleted. Not called on UI thread
+     *
+     * @param directory {@link File} Directory used only by this cache
+     * @param maxSize   Bytes the entries may take up before the least recently used ones are evicted
+     */
+    @NonNull
+    public static DiskLruCache open(@NonNull File directory, long maxSize) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create cache dir " + directory);
+        }
+
+        final DiskLruCache cache = new DiskLruCache(directory, maxSize);
+        synchronized (cache) {
+            final boolean isJournalValid = cache.readJournal();
+            cache.deleteUnknownFiles();
+            if (isJournalValid && cache.m_redundantOpCount < COMPACT_THRESHOLD) {
+                cache.m_journalWriter = new BufferedWriter(new OutputStreamWriter(
+                        new FileOutputStream(cache.m_journalFile, true), Charsets.UTF_8));
+            } else {
+                cache.rebuildJournal();
+            }
+            cache.trimToSize();
+        }
+
+        if (DEBUG) {
+            Log.d(LOG_TAG, String.format("open(%s): %d entries, %d bytes", directory, cache.m_index.size(), cache.m_size));
+        }
+        return cache;
+    }
+
+    /**
+     * @param key {@link String} Any string, ie: an url
+     * @return {@link String} Key that is safe to use as a file name and in the journal
+     */
+    @NonNull
+    public static String toKey(@NonNull String key) {
+        return Hashing.sha1().hashString(key, Charsets.UTF_8).toString();
+    }
+
+    /**
+     * Not called on UI thread
+     *
+     * @param key {@link String} Key created by toKey()
+     * @return {@link InputStream} Contents of the entry, which the caller must close, or null if it isn't cached
+     */
+    @Nullable
+    public InputStream get(@NonNull String key) {
+        synchronized (this) {
+            // Moves the entry to the most recently used end
+            if (m_index.get(key) == null) {
+                return null;
+            }
+            appendToJournal(READ, key, null);
+        }
+
+        try {
+            return new FileInputStream(getEntryFile(key));
+        } catch (FileNotFoundException e) {
+            // Deleted behind the cache's back
+            remove(key);
+            return null;
+        }
+    }
+
+    /**
+     * Writes an entry, replacing any previous one, and evicts the least recently used entries if the cache has grown
+     * too large. Not called on UI thread
+     *
+     * @param key    {@link String} Key created by toKey()
+     * @param writer {@link EntryWriter} Writes the contents of the entry
+     * @return true if the entry was written
+     */
+    public boolean put(@NonNull String key, @NonNull EntryWriter writer) {
+        synchronized (m_writeLock) {
+            final File tempFile = new File(m_directory, key + TEMP_FILE_SUFFIX);
+            boolean isWritten = false;
+            OutputStream out = null;
+            try {
+                out = new FileOutputStream(tempFile);
+                isWritten = writer.write(out);
+                out.close();
+                out = null;
+            } catch (IOException e) {
+                Log.w(LOG_TAG, "put(): Could not write entry " + key, e);
+                isWritten = false;
+            } finally {
+                if (out != null) {
+                    try {
+                        out.close();
+                    } catch (IOException e) {
+                        // Ignore this exception.
+                    }
+                }
+            }
+
+            if (!isWritten || !tempFile.renameTo(getEntryFile(key))) {
+                deleteFile(tempFile);
+                return false;
+            }
+
+            synchronized (this) {
+                final long size = getEntryFile(key).length();
+                final Long previousSize = m_index.put(key, size);
+                if (previousSize != null) {
+                    m_size -= previousSize;
+                    m_redundantOpCount++;
+                }
+                m_size += size;
+                appendToJournal(CLEAN, key, size);
+                trimToSize();
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Not called on UI thread
+     *
+     * @return true if an entry was removed
+     */
+    public synchronized boolean remove(@NonNull String key) {
+        final Long size = m_index.remove(key);
+        if (size == null) {
+            return false;
+        }
+
+        deleteFile(getEntryFile(key));
+        m_size -= size;
+        appendToJournal(REMOVE, key, null);
+        return true;
+    }
+
+    /**
+     * @return Bytes the entries currently take up
+     */
+    public synchronized long getSize() {
+        return m_size;
+    }
+
+    public long getMaxSize() {
+        return m_maxSize;
+    }
+
+    public synchronized int getEntryCount() {
+        return m_index.size();
+    }
+
+    // *******************************************************
+    // JOURNAL
+    // *******************************************************
+
+    /**
+     * Rebuilds the index from the journal
+     *
+     * @return false if the journal is missing or unreadable, in which case it needs to be rebuilt
+     */
+    private boolean readJournal() {
+        if (!m_journalFile.exists()) {
+            return false;
+        }
+
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new InputStreamReader(new FileInputStream(m_journalFile), Charsets.UTF_8));
+            if (!MAGIC.equals(reader.readLine()) || !VERSION.equals(reader.readLine())) {
+                Log.w(LOG_TAG, "readJournal(): Discarding journal in an unknown format");
+                m_index.clear();
+                return false;
+            }
+
+            int lineCount = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                // A line cut short by the process dying is the end of the journal
+                if (!readJournalLine(line)) {
+                    Log.w(LOG_TAG, "readJournal(): Truncated journal line: " + line);
+                    return false;
+                }
+                lineCount++;
+            }
+
+            m_redundantOpCount = lineCount - m_index.size();
+            return true;
+        } catch (IOException e) {
+            Log.w(LOG_TAG, "readJournal(): Could not read journal", e);
+            return false;
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    // Ignore this exception.
+                }
+            }
+        }
+    }
+
+    private boolean readJournalLine(@NonNull String line) {
+        final String[] parts = line.split(" ");
+        if (parts.length == 3 && CLEAN.equals(parts[0])) {
+            final long size;
+            try {
+                size = Long.parseLong(parts[2]);
+            } catch (NumberFormatException e) {
+                return false;
+            }
+            final Long previousSize = m_index.put(parts[1], size);
+            m_size += size - (previousSize == null ? 0 : previousSize);
+            return true;
+        } else if (parts.length == 2 && READ.equals(parts[0])) {
+            m_index.get(parts[1]);
+            return true;
+        } else if (parts.length == 2 && REMOVE.equals(parts[0])) {
+            final Long size = m_index.remove(parts[1]);
+            if (size != null) {
+                m_size -= size;
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Deletes files left behind by writes that were interrupted before they were journaled
+     */
+    private void deleteUnknownFiles() {
+        final String[] fileNames = m_directory.list();
+        if (fileNames == null) {
+            return;
+        }
+
+        for (String fileName : fileNames) {
+            if (!JOURNAL_FILE_NAME.equals(fileName) && !m_index.containsKey(fileName)) {
+                deleteFile(new File(m_directory, fileName));
+            }
+        }
+    }
+
+    /**
+     * Writes a journal holding only the current index, replacing the existing one atomically
+     */
+    private void rebuildJournal() throws IOException {
+        if (m_journalWriter != null) {
+            m_journalWriter.close();
+        }
+
+        final File tempFile = new File(m_directory, JOURNAL_TEMP_FILE_NAME);
+        final Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tempFile), Charsets.UTF_8));
+        try {
+            writer.write(MAGIC + "\n" + VERSION + "\n");
+            for (Map.Entry<String, Long> entry : m_index.entrySet()) {
+                writer.write(CLEAN + " " + entry.getKey() + " " + entry.getValue() + "\n");
+            }
+        } finally {
+            writer.close();
+        }
+
+        if (!tempFile.renameTo(m_journalFile)) {
+            throw new IOException("Could not replace journal " + m_journalFile);
+        }
+
+        m_journalWriter = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(m_journalFile, true), Charsets.UTF_8));
+        m_redundantOpCount = 0;
+    }
+
+    /**
+     * Must hold the lock on this
+     *
+     * @param size Size of a CLEAN entry, null otherwise
+     */
+    private void appendToJournal(@NonNull String op, @NonNull String key, @Nullable Long size) {
+        if (m_journalWriter == null) {
+            return;
+        }
+
+        try {
+            m_journalWriter.write(size == null ? op + " " + key + "\n" : op + " " + key + " " + size + "\n");
+
+            // Losing READ lines in a crash only makes the order slightly less accurate
+            if (!READ.equals(op)) {
+                m_journalWriter.flush();
+            }
+
+            if (!CLEAN.equals(op)) {
+                m_redundantOpCount++;
+            }
+            if (m_redundantOpCount >= COMPACT_THRESHOLD && m_redundantOpCount >= m_index.size()) {
+                rebuildJournal();
+            }
+        } catch (IOException e) {
+            // The index stays correct for the lifetime of the process, only the next open() starts from scratch
+            Log.w(LOG_TAG, "appendToJournal(): Could not write journal", e);
+            deleteFile(m_journalFile);
+            m_journalWriter = null;
+        }
+    }
+
+    // *******************************************************
+    // EVICTION
+    // *******************************************************
+
+    /**
+     * Must hold the lock on this
+     */
+    private void trimToSize() {
+        final Iterator<Map.Entry<String, Long>> iterator = m_index.entrySet().iterator();
+        while (m_size > m_maxSize && iterator.hasNext()) {
+            final Map.Entry<String, Long> eldest = iterator.next();
+            iterator.remove();
+            deleteFile(getEntryFile(eldest.getKey()));
+            m_size -= eldest.getValue();
+            appendToJournal(REMOVE, eldest.getKey(), null);
+
+            if (DEBUG) {
+                Log.d(LOG_TAG, "trimToSize(): Evicted " + eldest.getKey());
+            }
+        }
+    }
+
+    @NonNull
+    private File getEntryFile(@NonNull String key) {
+        return new File(m_directory, key);
+    }
+
+    private static void deleteFile(@NonNull File file) {
+        if (file.exists() && !file.delete()) {
+            Log.w(LOG_TAG, "deleteFile(): Could not delete " + file);
+        }
+    }
+}
@@ -4,30 +4,25 @@ import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.graphics.drawable.BitmapDrawable;
-import android.net.http.HttpResponseCache;
 import android.os.AsyncTask;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.util.Log;
 
+import com.dpg.crowdscout.network.HttpTransport;
+import com.dpg.crowdscout.network.RequestScheduler;
+
+import java.io.BufferedInputStream;
 import java.io.DataInputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.RandomAccessFile;
-import java.io.Serializable;
-import java.net.HttpURLConnection;
+import java.io.OutputStream;
 import java.net.URL;
 import java.util.Arrays;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.List;
 
 /**
- * Caches downloaded images via the app-global HttpResponseCache, as well as creates and caches thumbnails.
+ * Caches downloaded images via the HTTP cache of the shared HttpTransport, as well as creates and caches thumbnails.
  */
 public class ImageCache {
     private static final String LOG_TAG = ImageCache.class.getSimpleName();
@@ -35,18 +30,24 @@ public class ImageCache {
     private static final boolean DEBUG = false;
 
     private static final int THUMBNAIL_HEADER = 0xf00f0010;
-    private static final int THUMBNAIL_CACHE_MAX_SIZE = 50 * 1024 * 1024; // 50 MiB
 
-    // The minimum size that needs to be deleted from the thumbnail cache when it gets full.
-    // Otherwise we would need to keep on deleting stuff all the time after it peaks.
-    private static final int THUMBNAIL_CACHE_DELETE_SIZE = 5 * 1024 * 1024; // 5 MiB
+    /**
+     * Header, width and height of the custom thumbnail format
+     */
+    private static final int THUMBNAIL_HEADER_SIZE = 12;
+
+    private static final int MAX_STALE_SECONDS = 86400;
+    private static final int THUMBNAIL_CACHE_MAX_SIZE = 50 * 1024 * 1024; // 50 MiB
 
-    private static boolean s_thumbnailCacheInitialized = false;
-    private static long s_thumbnailCacheSize = 0;
+    /**
+     * Opened on first use. Guarded by ImageCache.class
+     */
+    private static DiskLruCache s_thumbnailCache;
 
     public static abstract class DownloadImageTask extends AsyncTask<URL, Void, BitmapDrawable> {
         private BitmapFactory.Options m_options;
         private Context m_context;
+        private RequestScheduler.Priority m_priority = RequestScheduler.Priority.VISIBLE_IMAGE;
 
         public DownloadImageTask() {
             m_options = null;
@@ -71,88 +72,48 @@ public class ImageCache {
             m_options = options;
         }
 
+        /**
+         * @param priority {@link RequestScheduler.Priority} Class the download is scheduled in. Defaults to
+         *                 VISIBLE_IMAGE
+         */
+        public DownloadImageTask(@NonNull Context context, BitmapFactory.Options options, @NonNull RequestScheduler.Priority priority) {
+            this(context, options);
+            m_priority = priority;
+        }
+
         @Override
         protected BitmapDrawable doInBackground(URL... urls) {
             Log.d(LOG_TAG, "DownloadImageTask URLs: " + Arrays.toString(urls));
             if (urls.length > 0) {
-                return getDrawableBitmapFromUrl(urls[0], m_options, m_context);
+                return getDrawableBitmapFromUrl(urls[0], m_options, m_priority, m_context);
             } else {
                 throw new RuntimeException("URL must be passed to DownloadImageTask.execute()");
             }
         }
     }
 
-    private static boolean setLastModifiedDateForFile(File file) {
-        boolean result = true;
-
-        // cannot use system implementation of setLastModified,
-        // see http://code.google.com/p/android/issues/detail?id=18624
-        final boolean isAndroidBuggy = true;
-        if (!isAndroidBuggy) {
-            result = file.setLastModified(System.currentTimeMillis());
-        } else {
-            RandomAccessFile raf = null;
-            try {
-                raf = new RandomAccessFile(file, "rw");
-                long length = raf.length();
-                raf.setLength(length + 1);
-                raf.setLength(length);
-            } catch (IOException e) {
-                result = false;
-                e.printStackTrace();
-            } finally {
-                if (raf != null) {
-                    try {
-                        raf.close();
-                    } catch (IOException e) {
-                        // Ignore this exception.
-                    }
-                }
-            }
-        }
-
-        return result;
-    }
-
     private static String getBitmapFileCacheDir() {
         return Helpers.INSTANCE.getAppContext().getCacheDir() + File.separator + "bitmapcache";
     }
 
     public static String getBitmapThumbnailCacheDir() {
-        String dir = getBitmapFileCacheDir() + "/thumb";
-        if (!s_thumbnailCacheInitialized) {
-            File baseDir = new File(dir);
-            if (baseDir.exists() && baseDir.isDirectory() && baseDir.canRead() && baseDir.canWrite()) {
-                s_thumbnailCacheInitialized = true;
-            } else {
-                if (baseDir.mkdirs()) {
-                    s_thumbnailCacheInitialized = true;
-                } else {
-                    Log.w(LOG_TAG, "getBitmapThumbnailCacheDir: could not create baseDir " + baseDir);
-                }
-            }
-        }
-        Log.d(LOG_TAG, "getBitmapThumbnailCacheDir dir: " + dir);
-        return dir;
+        return getBitmapFileCacheDir() + "/thumb";
     }
 
-    private static String getCacheFilename(URL url) {
-        final String rep = "_";
-        String filename = url.getPath().replace("/", rep);
-
-        String query = url.getQuery();
-        if (query != null && !query.isEmpty()) {
-            query = query.replace("/", rep)
-                    .replace("?", rep)
-                    .replace("\\", rep)
-                    .replace("<", rep)
-                    .replace(">", rep)
-                    .replace("&", rep)
-                    .replace("%", rep);
-            filename = filename.concat(query);
+    /**
+     * @return {@link DiskLruCache} Cache thumbnails are stored in, or null if it could not be opened
+     */
+    @Nullable
+    private static synchronized DiskLruCache getThumbnailCache() {
+        if (s_thumbnailCache == null) {
+            try {
+                // Thumbnails saved before the cache was journaled are unknown to it and get deleted
+                s_thumbnailCache = DiskLruCache.open(new File(getBitmapThumbnailCacheDir()), THUMBNAIL_CACHE_MAX_SIZE);
+            } catch (IOException e) {
+                Log.w(LOG_TAG, "getThumbnailCache(): Could not open thumbnail cache", e);
+            }
         }
-
-        return filename;
+        return s_thumbnailCache;
     }
 
     private static BitmapDrawable getDrawableFromBitmap(Bitmap bitmap, @Nullable Context context) {
@@ -172,215 +133,167 @@ public class ImageCache {
         return null;
     }
 
+    private static boolean isImage(@Nullable String contentType) {
+        return contentType != null && contentType.startsWith("image/");
+    }
+
     /**
      * Downloads an image from an URL.
      *
      * @param imageURL URL to the image
+     * @param options  Options to decode with. An inSampleSize of -1 with an outHeight picks the sample size that
+     *                 brings the image down to about that height
+     * @param priority {@link RequestScheduler.Priority} Class the download is scheduled in
      * @return bitmap The BitmapDrawable object for the image
      */
-    private static BitmapDrawable getDrawableBitmapFromUrl(URL imageURL, BitmapFactory.Options options,
-                                                           @Nullable Context context) {
+    private static BitmapDrawable getDrawableBitmapFromUrl(URL imageURL, final BitmapFactory.Options options,
+                                                           @NonNull RequestScheduler.Priority priority, @Nullable Context context) {
         Bitmap bitmap = null;
-        HttpURLConnection connection = null;
-        HttpURLConnection boundsConnection = null;
         try {
-            connection = (HttpURLConnection) imageURL.openConnection();
+            bitmap = HttpTransport.INSTANCE.get(imageURL, MAX_STALE_SECONDS, priority, new HttpTransport.BodyReader<Bitmap>() {
+                @Override
+                public Bitmap read(String contentType, @NonNull InputStream body) throws IOException {
+                    if (!isImage(contentType)) {
+                        return null;
+                    }
 
-            if (connection.getContentType() != null && connection.getContentType().startsWith("image/")) {
-                if (options != null && options.inSampleSize == -1 && options.outHeight > 0) {
-                    // Create a new connection from the pool as we cannot reset the original connection's stream after
-                    // decoding the bounds. Note that even wrapping the original stream in a BufferedInputStream and
-                    // using mark() / reset() does not work reliably.
-                    boundsConnection = (HttpURLConnection) imageURL.openConnection();
-                    InputStream boundsStream = boundsConnection.getInputStream();
+                    if (options == null || options.inSampleSize != -1 || options.outHeight <= 0) {
+                        // Returns null if the image data could not be decoded.
+                        return BitmapFactory.decodeStream(body, null, options);
+                    }
+
+                    // Decode the bounds from the same body, then rewind it to decode the image, like
+                    // ImageDownloader.decodeBitmap()
+                    final BufferedInputStream stream = new BufferedInputStream(body, ImageDownloader.DECODE_BUFFER_SIZE);
+                    stream.mark(ImageDownloader.MAX_BOUNDS_BYTES);
 
                     final int reqHeight = options.outHeight;
                     options.inSampleSize = 1;
                     options.outHeight = -1;
 
                     options.inJustDecodeBounds = true;
-                    BitmapFactory.decodeStream(boundsStream, null, options);
+                    BitmapFactory.decodeStream(stream, null, options);
+                    options.inJustDecodeBounds = false;
 
                     if (options.outHeight > 0) {
                         final int heightRatio = Math.round((float) options.outHeight / (float) reqHeight);
-                        options.inSampleSize = Integer.highestOneBit(heightRatio);
+                        options.inSampleSize = Math.max(1, Integer.highestOneBit(heightRatio));
                         Log.d(LOG_TAG, "Decoding bitmap with a sample size of " + options.inSampleSize);
                     }
 
-                    options.inJustDecodeBounds = false;
-                    boundsStream.close();
+                    // Fails if decoding the bounds read past the mark
+                    stream.reset();
+                    return BitmapFactory.decodeStream(stream, null, options);
                 }
-
-                InputStream stream = connection.getInputStream();
-
-                // Returns null if the image data could not be decoded.
-                bitmap = BitmapFactory.decodeStream(stream, null, options);
-
-                stream.close();
-            }
-
-            if (DEBUG) {
-                final HttpResponseCache cache = HttpResponseCache.getInstalled();
-                if (cache != null) {
-                    Log.d(LOG_TAG, "HTTP cache stats");
-                    Log.d(LOG_TAG, "Hit count: " + cache.getHitCount());
-                    Log.d(LOG_TAG, "Net requests: " + cache.getNetworkCount());
-                    Log.d(LOG_TAG, "Total requests: " + cache.getRequestCount());
-                }
-            }
+            });
         } catch (IOException ioe) {
             Log.e(LOG_TAG, String.format("Could not load Bitmap from (%s)", imageURL), ioe);
         } catch (OutOfMemoryError oome) {
             // it should not be caught but better than crash.
             Log.e(LOG_TAG, String.format("Could not load Bitmap from (%s)", imageURL), oome);
-        } finally {
-            try {
-                if (connection != null) {
-                    connection.disconnect();
-                }
-            } catch (Exception e) {
-                // ignore the exception
-            }
-            try {
-                if (boundsConnection != null) {
-                    boundsConnection.disconnect();
-                }
-            } catch (Exception e) {
-                // ignore the exception
-            }
         }
 
         return getDrawableFromBitmap(bitmap, context);
     }
 
-    private static class FileDateComparator implements Comparator<File>, Serializable {
-        static final long serialVersionUID = 1L;
-
-        @Override
-        public int compare(File lhs, File rhs) {
-            if (lhs.lastModified() < rhs.lastModified()) {
-                return -1;
-            } else if (lhs.lastModified() > rhs.lastModified()) {
-                return 1;
-            }
-            return 0;
-        }
+    /**
+     * Saves the passed bitmap as a thumbnail, using the sourceURL as the key. The least recently used thumbnails are
+     * evicted once the cache grows over THUMBNAIL_CACHE_MAX_SIZE.
+     */
+    public static void saveThumbnail(final Bitmap bitmap, final URL sourceURL) {
+        saveThumbnail(bitmap, sourceURL.toString());
     }
 
     /**
-     * Remove the oldest files from the cache until we drop under a defined threshold.
+     * Saves the passed bitmap as a thumbnail. Bitmaps with transparency, ie: category icons, are saved as PNG.
+     * Not called on UI thread
+     *
+     * @param key {@link String} Identifies the thumbnail, ie: the url and dimension it was resized to
+     * @return true if the thumbnail was saved
      */
-    private static void pruneThumbnailCache() {
-        if (s_thumbnailCacheSize >= THUMBNAIL_CACHE_MAX_SIZE) {
-            File thumbnailDir = new File(getBitmapThumbnailCacheDir());
-            File[] files = thumbnailDir.listFiles();
-            List<File> fileList = Arrays.asList(files);
-            Collections.sort(fileList, new FileDateComparator());
-
-            int i = 0;
-            while (s_thumbnailCacheSize >= THUMBNAIL_CACHE_MAX_SIZE - THUMBNAIL_CACHE_DELETE_SIZE) {
-                File fileToDelete = fileList.get(i);
-                long fileSize = fileToDelete.length();
-                if (fileToDelete.delete()) {
-                    s_thumbnailCacheSize -= fileSize;
-                }
-                ++i;
-            }
+    public static boolean saveThumbnail(@NonNull final Bitmap bitmap, @NonNull String key) {
+        final DiskLruCache cache = getThumbnailCache();
+        if (cache == null) {
+            return false;
         }
+
+        if (DEBUG) {
+            Log.d(LOG_TAG, "Saving thumbnail for " + key);
+        }
+
+        return cache.put(DiskLruCache.toKey(key), new DiskLruCache.EntryWriter() {
+            @Override
+            public boolean write(@NonNull OutputStream out) throws IOException {
+                return bitmap.hasAlpha()
+                        ? bitmap.compress(Bitmap.CompressFormat.PNG, 100, out)
+                        : bitmap.compress(Bitmap.CompressFormat.JPEG, 75, out);
+            }
+        });
     }
 
     /**
-     * Calculate the size of the thumbnail cache.
+     * Not called on UI thread
      *
-     * @return the amount of bytes that the thumbnail cache presently consumes.
+     * @param key {@link String} Key the thumbnail was saved with
+     * @return {@link InputStream} Encoded thumbnail, which the caller must close, or null if none was saved
      */
-    private static long getThumbnailCacheSize() {
-        String dir = getBitmapThumbnailCacheDir();
-        return Helpers.INSTANCE.calculateSizeRecursive(new File(dir));
+    @Nullable
+    public static InputStream openThumbnail(@NonNull String key) {
+        final DiskLruCache cache = getThumbnailCache();
+        return cache == null ? null : cache.get(DiskLruCache.toKey(key));
     }
 
     /**
-     * Saves the passed bitmap as a thumbnail, using the sourceURL to create the filename.
+     * Drops a thumbnail that turned out to be unreadable. Not called on UI thread
      */
-    public static void saveThumbnail(final Bitmap bitmap, final URL sourceURL) {
-        String dir = getBitmapThumbnailCacheDir();
-        String filename = getCacheFilename(sourceURL);
-        File file = new File(dir, filename);
-        FileOutputStream out = null;
-
-        if (DEBUG) {
-            Log.d(LOG_TAG, "Saving thumbnail for " + sourceURL + " to " + file);
-        }
-
-        try {
-            out = new FileOutputStream(file);
-            bitmap.compress(Bitmap.CompressFormat.JPEG, 75, out);
-            out.close();
-        } catch (FileNotFoundException e) {
-            e.printStackTrace();
-        } catch (IOException e) {
-            e.printStackTrace();
+    public static void removeThumbnail(@NonNull String key) {
+        final DiskLruCache cache = getThumbnailCache();
+        if (cache != null) {
+            cache.remove(DiskLruCache.toKey(key));
         }
-
-        if (s_thumbnailCacheSize == 0) {
-            s_thumbnailCacheSize = getThumbnailCacheSize();
-        }
-
-        s_thumbnailCacheSize += file.length();
-        pruneThumbnailCache();
     }
 
     // Load thumbnail from disk if it exists.
     public static BitmapDrawable loadThumbnail(final URL originalURL) {
+        final String key = originalURL.toString();
+        final InputStream in = openThumbnail(key);
+        if (in == null) {
+            return null;
+        }
+
         BitmapDrawable drawable = null;
+        DataInputStream dis = null;
+        try {
+            dis = new DataInputStream(new BufferedInputStream(in));
+            dis.mark(THUMBNAIL_HEADER_SIZE);
 
-        String path = getCacheFilename(originalURL);
-        File file = new File(getBitmapThumbnailCacheDir(), path);
-        if (file.exists()) {
-            // Update the last modification date so this file does not get pruned since we used it now.
-            if (!setLastModifiedDateForFile(file)) {
-                Log.w(LOG_TAG, "loadThumbnail: Could not update modification date for file " + file);
+            // Skip over width and height, which are now unused, if this is our custom thumbnail format.
+            if (dis.readInt() == THUMBNAIL_HEADER) {
+                dis.readInt();
+                dis.readInt();
+            } else {
+                dis.reset();
             }
 
-            FileInputStream fis = null;
-            DataInputStream dis = null;
+            drawable = getDrawableFromBitmap(BitmapFactory.decodeStream(dis), null);
+        } catch (IOException e) {
+            Log.w(LOG_TAG, "loadThumbnail: Failed loading thumbnail for " + originalURL, e);
+            removeThumbnail(key);
+        } finally {
             try {
-                fis = new FileInputStream(file);
-                dis = new DataInputStream(fis);
-
-                final int header = dis.readInt();
-
-                // Skip over width and height, which are now unused, if this is our custom thumbnail format.
-                if (header == THUMBNAIL_HEADER) {
-                    dis.readInt();
-                    dis.readInt();
-                } else {
+                if (dis != null) {
                     dis.close();
-                    fis = new FileInputStream(file);
+                } else {
+                    in.close();
                 }
-
-                drawable = getDrawableFromBitmap(BitmapFactory.decodeStream(fis), null);
-                dis.close();
-                fis.close();
             } catch (IOException e) {
-                Log.w(LOG_TAG, "loadThumbnail: Failed loading thumbnail from cache file " + file, e);
-            } finally {
-                try {
-                    if (dis != null) {
-                        dis.close();
-                    }
-                    if (fis != null) {
-                        fis.close();
-                    }
-                } catch (IOException e) {
-                    // Ignore this.
-                }
+                // Ignore this.
             }
         }
 
         if (DEBUG) {
             if (drawable != null) {
-                Log.d(LOG_TAG, "Thumbnail cache hit for file " + file);
+                Log.d(LOG_TAG, "Thumbnail cache hit for " + originalURL);
             }
         }
 
@@ -3,33 +3,50 @@ package com.dpg.crowdscout.utils;
 
 import android.annotation.TargetApi;
 import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
 import android.content.Context;
 import android.content.res.Resources;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Rect;
 import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.ColorDrawable;
 import android.graphics.drawable.Drawable;
+import android.graphics.drawable.LayerDrawable;
 import android.graphics.drawable.TransitionDrawable;
-import android.media.ThumbnailUtils;
 import android.os.AsyncTask;
 import android.os.Build;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.support.v4.util.LruCache;
 import android.util.DisplayMetrics;
 import android.util.Log;
 import android.widget.ImageView;
 
 import com.dpg.crowdscout.BuildConfig;
+import com.dpg.crowdscout.network.CancellationScope;
+import com.dpg.crowdscout.network.HttpTransport;
+import com.dpg.crowdscout.network.RequestScheduler;
 
+import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.lang.ref.WeakReference;
-import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 /**
  * Extends functionality provided by ImageCache.DownloadImageTask to ensure that a
@@ -38,6 +55,9 @@ import java.util.concurrent.Executor;
  * active downloads when views are recycled and the active download does not correspond
  * to the image url that should now be downloaded.
  *
+ * Images are looked up in the memory ImageCache first, then in the thumbnail cache on disk where images are saved
+ * once resized, and only then downloaded.
+ *
  * Reference:
  * http://android-developers.blogspot.jp/2010/07/multithreading-for-performance.html
  */
@@ -45,6 +65,23 @@ public class ImageDownloader {
     private static final String LOG_TAG = ImageDownloader.class.getSimpleName();
     private static final boolean DEBUG = BuildConfig.DEBUG && false;
 
+    /**
+     * How long (in seconds) an expired image may still be served from the HTTP cache
+     */
+    private static final int MAX_STALE_SECONDS = 86400;
+
+    /**
+     * How much of an image may be read to decode its bounds. The stream is rewound afterwards, so this is kept in
+     * memory. Headers of the images served by Instagram and Foursquare are well within it
+     */
+    static final int MAX_BOUNDS_BYTES = 256 * 1024;
+    static final int DECODE_BUFFER_SIZE = 16 * 1024;
+
+    /**
+     * Bytes per pixel of ARGB_8888, the largest config images are decoded with
+     */
+    private static final int BYTES_PER_PIXEL = 4;
+
     /**
      * Dimension that will be initialized once using the screen dimensions. If
      * a target dimension is not provided and the downloaded image is bigger than
@@ -52,6 +89,18 @@ public class ImageDownloader {
      */
     private static volatile BitmapDimension s_maxDimension;
 
+    /**
+     * Downloads in progress by getInFlightKey(), across all ImageDownloaders. A view that asks for an image already
+     * being downloaded waits on that download instead of starting another one. Only accessed on the UI thread
+     */
+    private static final Map<String, BitmapDownloaderTask> s_inFlightTasks = new HashMap<>();
+
+    /**
+     * Decode buffer of each decoding thread, sized by setBitmapTempStorageSize(). BitmapFactory writes to inTempStorage
+     * while decoding, so the buffer on the shared options must never be handed to two decodes at once
+     */
+    private static final ThreadLocal<byte[]> s_tempStorage = new ThreadLocal<>();
+
     private final Resources m_resources;
     private Bitmap m_placeholder;
     private BitmapDimension m_targetDimension;
@@ -60,6 +109,13 @@ public class ImageDownloader {
     private int m_fadeInTime = 200;
     private boolean m_fadeIn = false;
     private boolean m_downloadingEnabled = true;
+    private CancellationScope m_cancellationScope;
+
+    /**
+     * Positions on screen of the list this downloader loads images for, used to prioritize downloads queued on an
+     * ImageExecutor
+     */
+    private final ImageExecutor.Viewport m_viewport = new ImageExecutor.Viewport();
 
     public static class BitmapDimension {
         public int width;
@@ -129,10 +185,29 @@ public class ImageDownloader {
         m_targetDimension = targetDimension;
     }
 
+    /**
+     * @param threadExecutor {@link Executor} Executor downloads run on. Downloads queued on the ImageExecutor are
+     *                       prioritized by their position relative to setVisibleRange()
+     */
     public void setExecutor(Executor threadExecutor) {
         m_executor = threadExecutor;
     }
 
+    /**
+     * Updates the adapter positions currently on screen, ie: from AbsListView.OnScrollListener.onScroll()
+     */
+    public void setVisibleRange(int firstPosition, int lastPosition) {
+        m_viewport.set(firstPosition, lastPosition);
+    }
+
+    /**
+     * @param cancellationScope {@link CancellationScope} Scope that downloads started from now on are cancelled with,
+     *                          or null for downloads that are only cancelled when their ImageView is reused
+     */
+    public void setCancellationScope(CancellationScope cancellationScope) {
+        m_cancellationScope = cancellationScope;
+    }
+
     public void enableFadeIn() {
         m_fadeIn = true;
     }
@@ -168,30 +243,35 @@ public class ImageDownloader {
      *                    from when such is enabled.
      * @param oomBitmap   Image to display on out-of-memory failure.   TBD
      * @param errorBitmap Image to display on any other error.   TBD
+     * @param position    Adapter position the ImageView is bound to, or ImageExecutor.NO_POSITION
      * @throws MalformedURLException
      */
     public void loadImageInto(final String imageUrl, final ImageView imageView,
                               final Bitmap placeholder, BitmapDimension targetDimension,
                               final Bitmap oomBitmap,
-                              final Bitmap errorBitmap) {
+                              final Bitmap errorBitmap,
+                              final int position) {
 
         // If a target dimension was not provided, use the max dimensions
         if (targetDimension == null && s_maxDimension != null) {
             targetDimension = new BitmapDimension(s_maxDimension.width, s_maxDimension.height);
         }
 
-        // If an image cache is in use, check to see if it exists in the ImageCache
+        // If an image cache is in use, check to see if it exists in the ImageCache. The lock keeps the bitmap from
+        // being evicted into the BitmapPool before the view has started displaying it
         if (m_imageCache != null) {
-            Bitmap bitmap = getBitmapFromCache(imageUrl, targetDimension);
-            if (bitmap != null) {
-                imageView.setImageBitmap(bitmap);
-                return;
+            synchronized (IMAGE_CACHE_LOCK) {
+                Bitmap bitmap = getBitmapFromCache(imageUrl, targetDimension);
+                if (bitmap != null) {
+                    showBitmap(imageView, bitmap);
+                    return;
+                }
             }
         }
 
-        // Use placeholder image when downloading is disabled
-        if (!m_downloadingEnabled) {
-            imageView.setImageBitmap(placeholder);
+        // Use placeholder image when downloading is disabled, or the screen the view belongs to has gone away
+        if (!m_downloadingEnabled || (m_cancellationScope != null && m_cancellationScope.isCancelled())) {
+            showBitmap(imageView, placeholder);
             return;
         }
 
@@ -199,16 +279,30 @@ public class ImageDownloader {
             final URL url = new URL(imageUrl);
             // If the image hasn't been downloaded yet, try to download it - unless a download is already in progress
             if (cancelPotentialDownload(imageUrl, imageView, placeholder)) {
-                final BitmapDownloaderTask task = new BitmapDownloaderTask(
-                        imageView, imageUrl, targetDimension,
-                        oomBitmap, errorBitmap);
+                // Join a download of the same image started for another view, possibly by another ImageDownloader
+                final String inFlightKey = getInFlightKey(imageUrl, targetDimension);
+                final BitmapDownloaderTask inFlightTask = s_inFlightTasks.get(inFlightKey);
+                if (inFlightTask != null) {
+                    showDrawable(imageView, new DownloadedDrawable(m_resources, placeholder, inFlightTask));
+                    inFlightTask.addWaiter(new Waiter(this, imageView, oomBitmap, errorBitmap, m_cancellationScope));
+                    if (DEBUG) {
+                        Log.d(LOG_TAG, "loadImageInto(): Joined download in flight: " + inFlightKey);
+                    }
+                    return;
+                }
+
+                final BitmapDownloaderTask task = new BitmapDownloaderTask(imageUrl, targetDimension, inFlightKey);
                 final DownloadedDrawable downloadedDrawable = new DownloadedDrawable(
                         m_resources, placeholder, task);
 
-                imageView.setImageDrawable(downloadedDrawable);
+                showDrawable(imageView, downloadedDrawable);
+                s_inFlightTasks.put(inFlightKey, task);
+                task.addWaiter(new Waiter(this, imageView, oomBitmap, errorBitmap, m_cancellationScope));
 
                 // If an Executor has been provided, use that; otherwise, execute normally
-                if (m_executor != null) {
+                if (m_executor instanceof ImageExecutor) {
+                    task.executeOnExecutor(((ImageExecutor) m_executor).atPosition(m_viewport, position), url);
+                } else if (m_executor != null) {
                     task.executeOnExecutor(m_executor, url);
                 } else {
                     task.execute(url);
@@ -219,13 +313,25 @@ public class ImageDownloader {
                 Log.e(LOG_TAG, "MalformedURLException Encountered. Unable to load image url: " + imageUrl, e);
             }
             // Use placeholder image as backup
-            imageView.setImageBitmap(errorBitmap);
+            showBitmap(imageView, errorBitmap);
         }
     }
 
+    public void loadImageInto(final String imageUrl, final ImageView imageView,
+                              final Bitmap placeholder, BitmapDimension targetDimension,
+                              final Bitmap oomBitmap,
+                              final Bitmap errorBitmap) {
+        loadImageInto(imageUrl, imageView, placeholder, targetDimension, oomBitmap, errorBitmap, ImageExecutor.NO_POSITION);
+    }
+
+    public void loadImageInto(final String imageUrl, final ImageView imageView,
+                              final Bitmap placeholder, BitmapDimension targetDimension, final int position) {
+        loadImageInto(imageUrl, imageView, placeholder, targetDimension, placeholder, placeholder, position);
+    }
+
     public void loadImageInto(final String imageUrl, final ImageView imageView,
                               final Bitmap placeholder, BitmapDimension targetDimension) {
-        loadImageInto(imageUrl, imageView, placeholder, targetDimension, placeholder, placeholder);
+        loadImageInto(imageUrl, imageView, placeholder, targetDimension, ImageExecutor.NO_POSITION);
     }
 
     /**
@@ -260,6 +366,17 @@ public class ImageDownloader {
         loadImageInto(imageUrl, imageView, m_placeholder, m_targetDimension);
     }
 
+    /**
+     * Convenience method where instance variables for targetDimension and placeholder will be used
+     *
+     * @param imageUrl
+     * @param imageView
+     * @param position  Adapter position the ImageView is bound to
+     */
+    public void loadImageInto(final String imageUrl, final ImageView imageView, final int position) {
+        loadImageInto(imageUrl, imageView, m_placeholder, m_targetDimension, position);
+    }
+
     public void cancelDownload(ImageView imageView) {
         Bitmap placeholder = m_placeholder != null ? m_placeholder : getPlaceholderBitmap(imageView);
         cancelDownload(imageView, placeholder);
@@ -274,14 +391,10 @@ public class ImageDownloader {
     public void cancelDownloadAndShowDrawable(ImageView imageView, Drawable placeholder) {
         BitmapDownloaderTask bitmapDownloaderTask = getBitmapDownloaderTask(imageView);
         if (bitmapDownloaderTask != null) {
-            bitmapDownloaderTask.cancel(true);
+            bitmapDownloaderTask.removeWaiter(imageView);
         }
 
-        if (placeholder == null) {
-            imageView.setImageDrawable(null);
-        } else {
-            imageView.setImageDrawable(placeholder);
-        }
+        showDrawable(imageView, placeholder);
     }
 
     /**
@@ -311,10 +424,10 @@ public class ImageDownloader {
             // If both the placeholder and provided bitmap are invalid, just remove any
             // existing drawables from the image view
             if (bitmap == null && placeholder == null) {
-                imageView.setImageDrawable(null);
+                showDrawable(imageView, null);
             } else {
                 // Otherwise, use either the placeholder or provided bitmap
-                imageView.setImageDrawable(new BitmapDrawable(m_resources, bitmap == null ? placeholder : bitmap));
+                showDrawable(imageView, new BitmapDrawable(m_resources, bitmap == null ? placeholder : bitmap));
             }
         }
     }
@@ -336,7 +449,7 @@ public class ImageDownloader {
         Helpers.INSTANCE.setBackground(imageView, bitmapDrawable);
 
         // Set image
-        imageView.setImageDrawable(td);
+        showDrawable(imageView, td);
 
         // Specify transition time
         td.startTransition(m_fadeInTime);
@@ -356,28 +469,96 @@ public class ImageDownloader {
     }
 
     /**
-     * The actual AsyncTask that will asynchronously download the image.
+     * An ImageView waiting on a BitmapDownloaderTask, along with the ImageDownloader that bound it. Cancelling it
+     * through its CancellationScope only detaches the view; the download is cancelled once no view waits on it.
      */
-    private class BitmapDownloaderTask extends AsyncTask<URL, Void, Bitmap> {
+    private static class Waiter implements CancellationScope.Cancellable {
+        final ImageDownloader downloader;
+        final WeakReference<ImageView> imageViewReference;
+        final WeakReference<Bitmap> oomBitmapReference;
+        final WeakReference<Bitmap> errorBitmapReference;
+        final CancellationScope scope;
+        BitmapDownloaderTask task;
+
+        Waiter(ImageDownloader downloader, ImageView imageView, Bitmap oomBitmap, Bitmap errorBitmap, CancellationScope scope) {
+            this.downloader = downloader;
+            this.imageViewReference = new WeakReference<ImageView>(imageView);
+            this.oomBitmapReference = new WeakReference<Bitmap>(oomBitmap);
+            this.errorBitmapReference = new WeakReference<Bitmap>(errorBitmap);
+            this.scope = scope;
+        }
+
+        @Override
+        public void cancel() {
+            if (task != null) {
+                task.removeWaiter(this);
+            }
+        }
+
         /**
-         * ImageView is stored as a WeakReference, so that a download in progress
-         * does not prevent a killed activity's ImageView from being garbage collected
+         * Returns the ImageView as long as it is still bound to the task, null otherwise
          */
-        private final WeakReference<ImageView> m_imageViewReference;
+        ImageView getAttachedImageView() {
+            final ImageView imageView = imageViewReference.get();
+            return imageView != null && getBitmapDownloaderTask(imageView) == task ? imageView : null;
+        }
+    }
+
+    /**
+     * The actual AsyncTask that will asynchronously download the image. A single task downloads and decodes an
+     * image for every view it is bound to, see s_inFlightTasks. Views are added and removed on the UI thread.
+     * <p/>
+     * Once no view waits on it anymore the task is cancelled: it is removed from the executor's queue if it hasn't
+     * started yet, and otherwise the download is interrupted and decoding, resizing and caching are skipped.
+     */
+    private class BitmapDownloaderTask extends AsyncTask<URL, Void, Bitmap> {
         private final String m_imageUrl;
         private final BitmapDimension m_bitmapDimension;
-        private final WeakReference<Bitmap> m_oomBitmapReference;
-        private final WeakReference<Bitmap> m_errorBitmapReference;
+        private final String m_inFlightKey;
+        private final List<Waiter> m_waiters = new ArrayList<>(1);
 
-        public BitmapDownloaderTask(ImageView imageView, String imageUrl,
-                                    BitmapDimension targetDimension,
-                                    Bitmap oomBitmap, Bitmap errorBitmap) {
+        /**
+         * Set when the download failed because memory ran out, so waiters show their oomBitmap
+         */
+        private volatile boolean m_isOutOfMemory;
+
+        public BitmapDownloaderTask(String imageUrl, BitmapDimension targetDimension, String inFlightKey) {
             super();
-            m_imageViewReference = new WeakReference<ImageView>(imageView);
-            m_oomBitmapReference = new WeakReference<Bitmap>(oomBitmap);
-            m_errorBitmapReference = new WeakReference<Bitmap>(errorBitmap);
             m_imageUrl = imageUrl;
             m_bitmapDimension = targetDimension;
+            m_inFlightKey = inFlightKey;
+        }
+
+        void addWaiter(@NonNull Waiter waiter) {
+            waiter.task = this;
+            m_waiters.add(waiter);
+            if (waiter.scope != null) {
+                waiter.scope.add(waiter);
+            }
+        }
+
+        void removeWaiter(@NonNull ImageView imageView) {
+            for (Waiter waiter : m_waiters) {
+                if (waiter.imageViewReference.get() == imageView) {
+                    removeWaiter(waiter);
+                    return;
+                }
+            }
+        }
+
+        void removeWaiter(@NonNull Waiter waiter) {
+            if (!m_waiters.remove(waiter)) {
+                return;
+            }
+            if (waiter.scope != null) {
+                waiter.scope.remove(waiter);
+            }
+
+            // Nobody is going to see the image anymore
+            if (m_waiters.isEmpty()) {
+                removeFromInFlightTasks();
+                cancel(true);
+            }
         }
 
         @Override
@@ -386,66 +567,114 @@ public class ImageDownloader {
             android.os.Process.setThreadPriority(android.os.Process.THREAD_PRIORITY_BACKGROUND);
 
             Bitmap bitmap = null;
+            boolean isFromDisk = false;
+            final int densityDpi = m_resources.getDisplayMetrics().densityDpi;
+
+            try {
+                // Thumbnails resized by an earlier download are read from disk, and only then the network is used
+                if (m_diskCacheEnabled) {
+                    bitmap = getBitmapFromDisk(m_inFlightKey, m_bitmapFactoryOptions, m_bitmapDimension, densityDpi);
+                    isFromDisk = bitmap != null;
+                }
 
-            // Download the passed in url
-            if (urls != null && urls.length > 0) {
-                bitmap = getBitmapFromURL(urls[0], m_bitmapFactoryOptions,
-                        m_oomBitmapReference.get(),
-                        m_errorBitmapReference.get());
+                // Download the passed in url
+                if (bitmap == null && urls != null && urls.length > 0 && !isCancelled()) {
+                    bitmap = getBitmapFromURL(urls[0], m_bitmapFactoryOptions, m_bitmapDimension, densityDpi, this);
+                }
+            } catch (OutOfMemoryError oome) {
+                m_isOutOfMemory = true;
             }
 
-            if (bitmap != null) {
+            if (bitmap == null) {
+                return null;
+            }
 
-                // If a target dimension was specified, resize the bitmap now
-                if (m_bitmapDimension != null) {
-                    bitmap = resizeBitmap(bitmap, m_bitmapDimension);
-                }
+            // Don't spend time memory caching an image nobody is going to see. Its bitmap can be reused right away
+            if (isCancelled()) {
+                BitmapPool.INSTANCE.put(bitmap);
+                return null;
+            }
 
-                // Update the cache
-                if (m_imageCache != null) {
-                    addBitmapToCache(m_imageUrl, bitmap, m_bitmapDimension);
-                }
+            // Held on behalf of the waiting views until onPostExecute(), so that the bitmap isn't pooled if it is
+            // evicted from the cache in the meantime
+            BitmapPool.INSTANCE.track(bitmap);
+            BitmapPool.INSTANCE.onDisplayed(bitmap);
+
+            // Update the cache
+            if (m_imageCache != null) {
+                addBitmapToCache(m_imageUrl, bitmap, m_bitmapDimension);
+            }
+            if (m_diskCacheEnabled && !isFromDisk) {
+                saveBitmapToDisk(m_inFlightKey, bitmap);
             }
 
             return bitmap;
         }
 
+        @Override
+        protected void onCancelled(Bitmap bitmap) {
+            removeFromInFlightTasks();
+            clearWaiters();
+            if (bitmap != null) {
+                BitmapPool.INSTANCE.onReleased(bitmap);
+            }
+        }
+
         /**
-         * Once the image is downloaded, associate it with the imageView
+         * Once the image is downloaded, associate it with every view still waiting on it
          */
         @Override
         protected void onPostExecute(Bitmap bitmap) {
+            removeFromInFlightTasks();
+            final List<Waiter> waiters = new ArrayList<>(m_waiters);
+            clearWaiters();
+
             if (isCancelled()) {
                 if (DEBUG) Log.d(LOG_TAG, "onPostExecute(): isCancelled() == true.. returning");
+                if (bitmap != null) {
+                    BitmapPool.INSTANCE.onReleased(bitmap);
+                }
                 return;
             }
 
-            ImageView imageView = getAttachedImageView();
-            if (imageView != null) {
-                // Change bitmap only if this process is still associated with it
-                setImageDrawable(imageView, bitmap);
+            for (Waiter waiter : waiters) {
+                ImageView imageView = waiter.getAttachedImageView();
+                if (imageView == null) {
+                    continue;
+                }
+
+                if (bitmap == null) {
+                    waiter.downloader.setImageDrawable(imageView, m_isOutOfMemory
+                            ? waiter.oomBitmapReference.get() : waiter.errorBitmapReference.get());
+                } else {
+                    // Views bound by other downloaders may use a different image cache
+                    if (waiter.downloader.m_imageCache != m_imageCache) {
+                        waiter.downloader.addBitmapToCache(m_imageUrl, bitmap, m_bitmapDimension);
+                    }
+                    // Change bitmap only if this process is still associated with it
+                    waiter.downloader.setImageDrawable(imageView, bitmap);
+                }
             }
-        }
 
-        /**
-         * Returns the ImageView associated with this task as long as the ImageView's task still
-         * points to this task as well. Returns null otherwise.
-         */
-        private ImageView getAttachedImageView() {
-            // Make sure the image view reference still exists
-            ImageView imageView = m_imageViewReference == null ? null : m_imageViewReference.get();
+            // The views hold the bitmap now
+            if (bitmap != null) {
+                BitmapPool.INSTANCE.onReleased(bitmap);
+            }
+        }
 
-            if (imageView != null) {
-                // Get the download task associated with the image view
-                BitmapDownloaderTask bitmapWorkerTask = getBitmapDownloaderTask(imageView);
+        private void removeFromInFlightTasks() {
+            if (s_inFlightTasks.get(m_inFlightKey) == this) {
+                s_inFlightTasks.remove(m_inFlightKey);
+            }
+        }
 
-                // Return the image view only if this process is still associated with it
-                if (this == bitmapWorkerTask) {
-                    return imageView;
+        private void clearWaiters() {
+            for (Waiter waiter : m_waiters) {
+                if (waiter.scope != null) {
+                    waiter.scope.remove(waiter);
                 }
             }
-
-            return null;
+            m_waiters.clear();
         }
 
         public String getImageUrl() {
@@ -515,41 +744,204 @@ public class ImageDownloader {
         return null;
     }
 
-    private static Bitmap resizeBitmap(Bitmap bitmap, BitmapDimension targetDimension) {
-        int targetWidth = targetDimension.width;
-        int targetHeight = targetDimension.height;
+    /**
+     * @param sharedStorage Decode buffer set on options shared between threads, only read for its size
+     * @return Buffer of at least the same size that only the calling thread decodes with, or null to let BitmapFactory
+     * allocate one per decode
+     */
+    @Nullable
+    private static byte[] getTempStorage(@Nullable byte[] sharedStorage) {
+        if (sharedStorage == null) {
+            return null;
+        }
+
+        byte[] storage = s_tempStorage.get();
+        if (storage == null || storage.length < sharedStorage.length) {
+            storage = new byte[sharedStorage.length];
+            s_tempStorage.set(storage);
+        }
+        return storage;
+    }
+
+    /**
+     * Decodes the image into the smallest bitmap that covers the target dimension, center cropped to its aspect
+     * ratio. Bounds are read first, then the image is subsampled by the largest power of two that still covers the
+     * target, and scaled down the rest of the way while decoding. No full size bitmap is ever allocated.
+     *
+     * @param body            {@link InputStream} Encoded image
+     * @param baseOptions     {@link BitmapFactory.Options} Options to decode with. Not modified, so it may be shared
+     *                        between threads
+     * @param minSampleSize   Smallest sample size to decode with
+     * @param targetDimension {@link BitmapDimension} Size the image is displayed at, or null to decode at full size
+     * @param densityDpi      Density of the screen, which the decoded bitmap keeps
+     * @return {@link Bitmap} Decoded image, or null if it could not be decoded
+     */
+    private static Bitmap decodeBitmap(@NonNull InputStream body, @NonNull BitmapFactory.Options baseOptions,
+                                       int minSampleSize, BitmapDimension targetDimension, int densityDpi) throws IOException {
+        final BufferedInputStream stream = new BufferedInputStream(body, DECODE_BUFFER_SIZE);
+        stream.mark(MAX_BOUNDS_BYTES);
+
+        final BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeStream(stream, null, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+
+        // Fails if decoding the bounds read past the mark
+        stream.reset();
+
+        final int bitmapWidth = options.outWidth;
+        final int bitmapHeight = options.outHeight;
+        int targetWidth = bitmapWidth;
+        int targetHeight = bitmapHeight;
+        if (targetDimension != null) {
+            targetWidth = targetDimension.width;
+            targetHeight = targetDimension.height;
+
+            // Resize based on one dimensions
+            if (targetWidth <= 0) {
+                targetWidth = Math.round(((float) targetHeight / bitmapHeight) * bitmapWidth);
+            } else if (targetHeight <= 0) {
+                targetHeight = Math.round(((float) targetWidth / bitmapWidth) * bitmapHeight);
+            }
+        }
+
+        int sampleSize = Math.max(1, minSampleSize);
+        while (bitmapWidth / (sampleSize * 2) >= targetWidth && bitmapHeight / (sampleSize * 2) >= targetHeight) {
+            sampleSize *= 2;
+        }
 
-        int bitmapWidth = bitmap.getWidth();
-        int bitmapHeight = bitmap.getHeight();
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+        options.inPreferredConfig = baseOptions.inPreferredConfig;
+        options.inPurgeable = baseOptions.inPurgeable;
+        options.inInputShareable = baseOptions.inInputShareable;
+        options.inMutable = baseOptions.inMutable;
+        options.inTempStorage = getTempStorage(baseOptions.inTempStorage);
+
+        // Scale the subsampled image down to cover the target. The ratio between inDensity and inTargetDensity is
+        // the scale, and the bitmap keeps the density of the screen like any other decoded bitmap
+        final float scale = Math.max((float) targetWidth * sampleSize / bitmapWidth, (float) targetHeight * sampleSize / bitmapHeight);
+        if (scale < 1) {
+            options.inScaled = true;
+            options.inTargetDensity = densityDpi;
+            options.inDensity = (int) Math.floor(densityDpi / scale);
+            options.inScreenDensity = densityDpi;
+        } else {
+            options.inScaled = false;
+        }
 
-        // Resize based on one dimensions
-        if (targetWidth <= 0) {
-            targetWidth = Math.round(((float) targetHeight / bitmapHeight) * bitmapWidth);
-        } else if (targetHeight <= 0) {
-            targetHeight = Math.round(((float) targetWidth / bitmapWidth) * bitmapHeight);
+        // Decode into a pooled bitmap when one is large enough. The estimate rounds up, as decoding fails if the
+        // bitmap turns out too small and the stream can't be read again
+        final Bitmap pooledBitmap = baseOptions.inMutable ? BitmapPool.INSTANCE.get(
+                estimateByteCount(bitmapWidth, bitmapHeight, sampleSize, options.inScaled ? (float) options.inTargetDensity / options.inDensity : 1)) : null;
+        if (pooledBitmap != null) {
+            options.inBitmap = pooledBitmap;
+            options.inPurgeable = false;
+        }
+
+        final Bitmap bitmap;
+        try {
+            bitmap = BitmapFactory.decodeStream(stream, null, options);
+        } catch (IllegalArgumentException e) {
+            // The pooled bitmap couldn't hold the image after all
+            if (DEBUG) {
+                Log.e(LOG_TAG, "decodeBitmap(): Could not decode into pooled bitmap", e);
+            }
+            if (pooledBitmap != null) {
+                BitmapPool.INSTANCE.put(pooledBitmap);
+            }
+            return null;
+        }
+        if (bitmap == null) {
+            if (pooledBitmap != null) {
+                BitmapPool.INSTANCE.put(pooledBitmap);
+            }
+            return null;
         }
 
         if (DEBUG) {
-            Log.d(LOG_TAG, "resizeBitmap(): Original Dimensions ("
+            Log.d(LOG_TAG, "decodeBitmap(): Original Dimensions ("
                             + (new BitmapDimension(bitmapWidth, bitmapHeight).toString())
                             + ") => Target Dimensions ("
                             + (new BitmapDimension(targetWidth, targetHeight).toString())
-                            + ")"
+                            + ") => Decoded Dimensions ("
+                            + (new BitmapDimension(bitmap.getWidth(), bitmap.getHeight()).toString())
+                            + ") with a sample size of " + sampleSize
             );
         }
 
-        // If the image is already smaller than the target dimensions, return the original
-        if ((targetWidth >= bitmapWidth) && (targetHeight >= bitmapHeight)) {
+        // Crop whatever exceeds the target, which is at most a few rows or columns unless the aspect ratios differ
+        final int width = Math.min(targetWidth, bitmap.getWidth());
+        final int height = Math.min(targetHeight, bitmap.getHeight());
+        if (width == bitmap.getWidth() && height == bitmap.getHeight()) {
             return bitmap;
+        }
+        // Cropped into another pooled bitmap when possible, and the uncropped one goes back to the pool
+        final Bitmap.Config config = bitmap.getConfig() != null ? bitmap.getConfig() : Bitmap.Config.ARGB_8888;
+        Bitmap cropped = BitmapPool.INSTANCE.get(width * height * BYTES_PER_PIXEL);
+        if (cropped != null) {
+            cropped.reconfigure(width, height, config);
+            cropped.eraseColor(Color.TRANSPARENT);
         } else {
-            // If one of the target dimensions is smaller than the current dimensions, resize the bitmap
-            return ThumbnailUtils.extractThumbnail(bitmap, targetWidth, targetHeight);
+            cropped = Bitmap.createBitmap(width, height, config);
         }
+        cropped.setDensity(bitmap.getDensity());
+
+        final int left = (bitmap.getWidth() - width) / 2;
+        final int top = (bitmap.getHeight() - height) / 2;
+        new Canvas(cropped).drawBitmap(bitmap, new Rect(left, top, left + width, top + height), new Rect(0, 0, width, height), null);
+        BitmapPool.INSTANCE.put(bitmap);
+        return cropped;
     }
 
     /**
-     * Returns true if the current download has been canceled or if there was no download in
-     * progress on this image view.
+     * @return Bytes needed to decode an image at the sample size and scale, rounded up
+     */
+    private static int estimateByteCount(int bitmapWidth, int bitmapHeight, int sampleSize, float scale) {
+        final int width = (int) Math.ceil(Math.ceil((double) bitmapWidth / sampleSize) * scale) + 1;
+        final int height = (int) Math.ceil(Math.ceil((double) bitmapHeight / sampleSize) * scale) + 1;
+        return width * height * BYTES_PER_PIXEL;
+    }
+
+    private static void showBitmap(@NonNull ImageView imageView, Bitmap bitmap) {
+        showDrawable(imageView, bitmap == null ? null : new BitmapDrawable(imageView.getResources(), bitmap));
+    }
+
+    /**
+     * Every drawable ImageDownloader shows goes through here, so that the BitmapPool knows which decoded bitmaps
+     * are still on screen
+     */
+    private static void showDrawable(@NonNull ImageView imageView, Drawable drawable) {
+        final Drawable previousDrawable = imageView.getDrawable();
+        imageView.setImageDrawable(drawable);
+        reportDisplayedBitmaps(drawable, true);
+        reportDisplayedBitmaps(previousDrawable, false);
+    }
+
+    private static void reportDisplayedBitmaps(Drawable drawable, boolean isDisplayed) {
+        if (drawable instanceof BitmapDrawable) {
+            final Bitmap bitmap = ((BitmapDrawable) drawable).getBitmap();
+            if (bitmap != null) {
+                if (isDisplayed) {
+                    BitmapPool.INSTANCE.onDisplayed(bitmap);
+                } else {
+                    BitmapPool.INSTANCE.onReleased(bitmap);
+                }
+            }
+        } else if (drawable instanceof LayerDrawable) {
+            // ie: the TransitionDrawable used to fade images in
+            final LayerDrawable layerDrawable = (LayerDrawable) drawable;
+            for (int i = 0; i < layerDrawable.getNumberOfLayers(); i++) {
+                reportDisplayedBitmaps(layerDrawable.getDrawable(i), isDisplayed);
+            }
+        }
+    }
+
+    /**
+     * Returns true if the image view has been detached from its current download or if there was no download in
+     * progress on this image view. The download itself is cancelled once no other view waits on it.
      * Returns false if the download in progress deals with the same url. The download is not
      * stopped in that case.
      */
@@ -559,8 +951,8 @@ public class ImageDownloader {
         if (bitmapDownloaderTask != null) {
             String bitmapUrl = bitmapDownloaderTask.getImageUrl();
             if ((bitmapUrl == null) || (!bitmapUrl.equals(url))) {
-                bitmapDownloaderTask.cancel(true);
-                imageView.setImageBitmap(placeholder);
+                bitmapDownloaderTask.removeWaiter(imageView);
+                showBitmap(imageView, placeholder);
             } else {
                 // The same URL is already being downloaded.
                 return false;
@@ -574,30 +966,35 @@ public class ImageDownloader {
      * If a problem arises during download, it will return null
      * Inspiration: http://stackoverflow.com/a/8993175/768104
      *
-     * @param url         {@link URL} The image url that should be downloaded
-     * @param oomBitmap   Bitmap to use on out-of-memory situation.  Could be null.
-     * @param errorBitmap Bitmap to use on error situation.  Could be null.
+     * @param url             {@link URL} The image url that should be downloaded
+     * @param targetDimension {@link BitmapDimension} Size the image is displayed at, see decodeBitmap()
+     * @param densityDpi      Density of the screen
+     * @param task            Task the download is made for. The body isn't decoded once it has been cancelled
      * @return {@link Bitmap} Requested image as bitmap or null if there was a problem downloading the image
+     * @throws OutOfMemoryError if the image could not be decoded for lack of memory
      */
-    private static Bitmap getBitmapFromURL(URL url,
-                                           BitmapFactory.Options bitmapFactoryOptions,
-                                           Bitmap oomBitmap,
-                                           Bitmap errorBitmap) {
+    private static Bitmap getBitmapFromURL(final URL url,
+                                           final BitmapFactory.Options bitmapFactoryOptions,
+                                           final BitmapDimension targetDimension,
+                                           final int densityDpi,
+                                           final AsyncTask<?, ?, ?> task) {
         Bitmap bitmap = null;
-        HttpURLConnection connection = null;
-        InputStream inputStream = null;
 
         if (url == null) {
             return null;
         }
 
         try {
-            connection = (HttpURLConnection) url.openConnection();
-            connection.addRequestProperty("Cache-Control", "max-stale=86400");
-            connection.setUseCaches(true);
-            connection.setInstanceFollowRedirects(true);
-            inputStream = connection.getInputStream();
-            bitmap = BitmapFactory.decodeStream(inputStream, null, bitmapFactoryOptions);
+            // Goes through the shared transport so connections are kept alive between downloads
+            bitmap = HttpTransport.INSTANCE.get(url, MAX_STALE_SECONDS, RequestScheduler.Priority.VISIBLE_IMAGE, new HttpTransport.BodyReader<Bitmap>() {
+                @Override
+                public Bitmap read(String contentType, @NonNull InputStream body) throws IOException {
+                    if (task.isCancelled()) {
+                        throw new InterruptedIOException("Download cancelled: " + url);
+                    }
+                    return decodeBitmap(body, bitmapFactoryOptions, bitmapFactoryOptions.inSampleSize, targetDimension, densityDpi);
+                }
+            });
         } catch (OutOfMemoryError oome) {
             // under normal circumstances it doesn't make sense to deal with OOM
             // but in the case of image loading large objects are created and the app might well be
@@ -605,35 +1002,109 @@ public class ImageDownloader {
 
             // for example of a crash see:
             // https://rink.hockeyapp.net/manage/apps/51176/app_versions/14/crash_reasons/9817654
-            bitmap = oomBitmap;
             if (DEBUG) {
                 Log.e(LOG_TAG, String.format("Could not load Bitmap from (%s) due to OutOfMemoryError",
                         url.toString()), oome);
                 oome.printStackTrace();
             }
+            // Rethrown so the task shows each view's oomBitmap rather than caching one
+            throw oome;
         } catch (IOException ioe) {
-            bitmap = errorBitmap;
             if (DEBUG) {
                 Log.e(LOG_TAG, String.format("Could not load Bitmap from (%s)", url.toString()), ioe);
                 ioe.printStackTrace();
             }
-        } finally {
-            // Close the input stream
-            if (inputStream != null) {
-                try {
-                    inputStream.close();
-                } catch (IOException e) {
-                    // ignore -- there's nothing we can do.
+        }
+
+        return bitmap;
+    }
+
+    // *******************************************************
+    // Disk Cache
+    // *******************************************************
+
+    /**
+     * Thumbnails are written to disk one at a time on a low priority thread, so that downloads don't wait on them
+     */
+    private static final ExecutorService s_diskWriteExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(@NonNull final Runnable runnable) {
+            return new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    android.os.Process.setThreadPriority(android.os.Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
                 }
-            }
+            }, "ImageDownloader disk");
+        }
+    });
 
-            // Disconnect from the connection
-            if (connection != null) {
-                connection.disconnect();
+    private boolean m_diskCacheEnabled = true;
+
+    /**
+     * Resized images are saved to, and read back from, the thumbnail cache of ImageCache. Enabled by default
+     */
+    public void enableDiskCache() {
+        m_diskCacheEnabled = true;
+    }
+
+    public void disableDiskCache() {
+        m_diskCacheEnabled = false;
+    }
+
+    /**
+     * Reads a thumbnail saved by saveBitmapToDisk(). It is already resized, so it is decoded as is
+     * <p/>
+     * Not called on UI thread
+     *
+     * @param key {@link String} Key of the thumbnail, see getInFlightKey()
+     * @return {@link Bitmap} Thumbnail or null if none was saved
+     */
+    private static Bitmap getBitmapFromDisk(@NonNull String key, @NonNull BitmapFactory.Options bitmapFactoryOptions,
+                                            BitmapDimension targetDimension, int densityDpi) {
+        // Qualified, as the nested ImageCache interface shadows the class within ImageDownloader
+        final InputStream in = com.dpg.crowdscout.utils.ImageCache.openThumbnail(key);
+        if (in == null) {
+            return null;
+        }
+
+        try {
+            final Bitmap bitmap = decodeBitmap(in, bitmapFactoryOptions, 1, targetDimension, densityDpi);
+            if (bitmap == null) {
+                com.dpg.crowdscout.utils.ImageCache.removeThumbnail(key);
+            } else if (DEBUG) {
+                Log.d(LOG_TAG, "getBitmapFromDisk(): Disk hit for " + key);
+            }
+            return bitmap;
+        } catch (IOException e) {
+            Log.w(LOG_TAG, "getBitmapFromDisk(): Discarding unreadable thumbnail " + key, e);
+            com.dpg.crowdscout.utils.ImageCache.removeThumbnail(key);
+            return null;
+        } finally {
+            try {
+                in.close();
+            } catch (IOException e) {
+                // Ignore this exception.
             }
         }
+    }
 
-        return bitmap;
+    /**
+     * Saves a resized image as a thumbnail in the background
+     */
+    private static void saveBitmapToDisk(@NonNull final String key, @NonNull final Bitmap bitmap) {
+        // Keep the bitmap out of the BitmapPool until it has been compressed
+        BitmapPool.INSTANCE.onDisplayed(bitmap);
+        s_diskWriteExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    com.dpg.crowdscout.utils.ImageCache.saveThumbnail(bitmap, key);
+                } finally {
+                    BitmapPool.INSTANCE.onReleased(bitmap);
+                }
+            }
+        });
     }
 
     // *******************************************************
@@ -669,6 +1140,13 @@ public class ImageDownloader {
         }
     }
 
+    /**
+     * Downloads can only be shared, and thumbnails saved to disk reused, when they decode the same image the same way
+     */
+    private String getInFlightKey(String imageUrl, BitmapDimension bitmapDimension) {
+        return getKey(imageUrl, bitmapDimension) + "/" + m_bitmapFactoryOptions.inSampleSize;
+    }
+
     private static String getKey(String imageUrl, BitmapDimension bitmapDimension) {
         if (bitmapDimension == null) {
             return imageUrl;
@@ -691,53 +1169,75 @@ public class ImageDownloader {
         void destroy();
     }
 
+    /**
+     * Process-wide memory cache of decoded images, sized once to 1/8th of the memory class. Screens share it, so an
+     * image decoded for one screen is a hit on the others, and its entries outlive the screens that added them:
+     * coming back to a screen finds its images still cached. Entries are only dropped by the LRU, by
+     * CrowdScoutApp.onTrimMemory() through trimMemory(), or by clear().
+     * <p/>
+     * Each screen accesses the cache through a {@link Namespace}, which may cap the share of the cache the images it
+     * adds can take up so that, ie: scrolling through a venue's media doesn't flush the thumbnails of every venue.
+     */
     public static class BitmapLruCache extends LruCache<String, Bitmap> implements ImageCache {
+        private static BitmapLruCache s_instance;
+
         /**
-         * Stores a WeakReference to the last BitmapLruCache object created, which is used to copy content
-         * from old image caches to new image caches whenever newInstance() is triggered
+         * Namespace that added each entry, for entries added through one. Guarded by this
          */
-        public static WeakReference<BitmapLruCache> s_previousInstance;
+        private final Map<String, Namespace> m_owners = new HashMap<>();
 
         /**
-         * Helper that will return the last ImageCache created - if it still exists
+         * @return {@link BitmapLruCache} The cache shared by every screen, created on first use
          */
-        static BitmapLruCache getPreviousInstance() {
-            return s_previousInstance == null ? null : s_previousInstance.get();
+        @NonNull
+        public static synchronized BitmapLruCache getInstance(@NonNull Context context) {
+            if (s_instance == null) {
+                int memClass = ((ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE)).getMemoryClass();
+                // Use 1/8th of the available memory for this memory cache.
+                s_instance = new BitmapLruCache(1024 * 1024 * memClass / 8);
+            }
+            return s_instance;
         }
 
         /**
-         * Factory method for creating a new ImageCache
+         * Releases memory according to ComponentCallbacks2.onTrimMemory(). Half the cache is kept while the app is
+         * in the foreground or its UI was just hidden, so that coming back to it stays instant
          */
-        public static BitmapLruCache newInstance(Context context) {
-            int memClass = ((ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE)).getMemoryClass();
-            // Use 1/8th of the available memory for this memory cache.
-            int cacheSize = 1024 * 1024 * memClass / 8;
-
-            // Create a new image cache
-            final BitmapLruCache cache = new BitmapLruCache(cacheSize);
-
-            // Get the last instance created
-            final BitmapLruCache previousInstance = getPreviousInstance();
-
-            // If the last instance created exists, copy its contents into the current ImageCache
-            if (previousInstance != null) {
-                cache.copyContents(previousInstance);
-
-                // Destroy the previous cache once its contents have been copied to the new instance
-                previousInstance.destroy();
+        public static void trimMemory(int level) {
+            final BitmapLruCache cache;
+            synchronized (BitmapLruCache.class) {
+                cache = s_instance;
+            }
+            if (cache == null) {
+                return;
             }
 
-            // Update the weak reference
-            s_previousInstance = new WeakReference<BitmapLruCache>(cache);
+            if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE) {
+                cache.evictAll();
+            } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+                cache.trimToSize(cache.maxSize() / 2);
+            }
 
-            // Return new ImageCache
-            return cache;
+            if (DEBUG) {
+                Log.d(LOG_TAG, String.format("trimMemory(%d): %d/%d bytes cached", level, cache.size(), cache.maxSize()));
+            }
         }
 
         public BitmapLruCache(int maxSize) {
             super(maxSize);
         }
 
+        /**
+         * @param name     {@link String} Name of the screen, ie: its LOG_TAG
+         * @param maxShare Share of the cache, between 0 and 1, that the images added through the namespace may take
+         *                 up before the least recently used of them are evicted. 1 for no quota
+         * @return {@link Namespace} ImageCache for the screen
+         */
+        @NonNull
+        public Namespace getNamespace(@NonNull String name, float maxShare) {
+            return new Namespace(this, name, (int) (maxSize() * Math.min(1, maxShare)));
+        }
+
         @Override
         protected int sizeOf(String key, Bitmap value) {
             return value.getRowBytes() * value.getHeight();
@@ -750,63 +1250,178 @@ public class ImageDownloader {
 
         @Override
         public void putBitmap(String url, Bitmap bitmap) {
-            put(url, bitmap);
+            putBitmap(null, url, bitmap);
         }
 
+        /**
+         * Bitmaps that are evicted or replaced go back to the BitmapPool, unless an ImageView still displays them
+         */
+        @Override
+        protected void entryRemoved(boolean evicted, String key, Bitmap oldValue, Bitmap newValue) {
+            BitmapPool.INSTANCE.onEvicted(oldValue);
+
+            // Replaced entries were already accounted for by putBitmap()
+            if (newValue == null) {
+                synchronized (this) {
+                    final Namespace owner = m_owners.remove(key);
+                    if (owner != null) {
+                        owner.onRemoved(key);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Empties the cache. Screens don't need to call this when they stop, see trimMemory()
+         */
         @Override
         public void clear() {
             evictAll();
         }
 
         /**
-         * In addition to clearing all entries, this method will also remove the static weak reference if
-         * the active LruCache is the same as the object being held in the s_previousInstance weak reference
+         * Does nothing: the cache lives as long as the process and other screens rely on its entries. clear() is the
+         * only way to empty it explicitly
          */
         @Override
         public void destroy() {
-            // Clear all entries
-            clear();
+        }
 
-            // If the current instance is also the value contained in the static weak reference, clear the reference
-            final BitmapLruCache previousInstance = s_previousInstance == null ? null : s_previousInstance.get();
-            if (this == previousInstance) {
-                if (DEBUG) {
-                    Log.d(LOG_TAG, "destroy(): Clearing s_previousInstance");
+        private void putBitmap(@Nullable Namespace owner, @NonNull String key, @NonNull Bitmap bitmap) {
+            synchronized (this) {
+                final Namespace previousOwner = owner == null ? m_owners.remove(key) : m_owners.put(key, owner);
+                if (previousOwner != null) {
+                    previousOwner.onRemoved(key);
                 }
-                s_previousInstance.clear();
-                s_previousInstance = null;
-            } else if (DEBUG) {
-                Log.d(LOG_TAG, "destroy(): Letting s_previousInstance live another day");
+                if (owner != null) {
+                    owner.onAdded(key, sizeOf(key, bitmap));
+                }
+            }
+
+            BitmapPool.INSTANCE.onCached(bitmap);
+            put(key, bitmap);
+
+            if (owner != null) {
+                owner.trimToQuota();
             }
         }
 
         /**
-         * Helper used to copy the contents of another BitmapLruCache into the active one
-         *
-         * @param bitmapLruCache {@link BitmapLruCache} The BitmapLruCache to copy content from
+         * Must hold the lock on this
          */
-        private void copyContents(@NonNull BitmapLruCache bitmapLruCache) {
-            final Map<String, Bitmap> snapshot = bitmapLruCache.snapshot();
+        private void forget(@NonNull Namespace owner) {
+            final Iterator<Namespace> iterator = m_owners.values().iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next() == owner) {
+                    iterator.remove();
+                }
+            }
+        }
+    }
 
-            // If a snapshot could not be created, then there is nothing to copy
-            if (snapshot == null) {
-                return;
+    /**
+     * A screen's view of the shared BitmapLruCache. Lookups hit every entry in the cache, and entries added through
+     * the namespace count against its quota
+     */
+    public static class Namespace implements ImageCache {
+        private final BitmapLruCache m_cache;
+        private final String m_name;
+        private final int m_maxSize;
+
+        /**
+         * Size of each entry added through the namespace, least recently used first. Guarded by m_cache
+         */
+        private final LinkedHashMap<String, Integer> m_entries = new LinkedHashMap<>(0, 0.75f, true);
+        private int m_size;
+
+        Namespace(@NonNull BitmapLruCache cache, @NonNull String name, int maxSize) {
+            m_cache = cache;
+            m_name = name;
+            m_maxSize = maxSize;
+        }
+
+        @Override
+        public Bitmap getBitmap(String key) {
+            final Bitmap bitmap = m_cache.get(key);
+            if (bitmap != null) {
+                synchronized (m_cache) {
+                    m_entries.get(key);
+                }
             }
+            return bitmap;
+        }
 
-            if (DEBUG) {
-                Log.d(LOG_TAG, String.format("copyContents(): Copying (%d) entries into the current ImageCache", snapshot.size()));
+        @Override
+        public void putBitmap(String key, Bitmap bitmap) {
+            m_cache.putBitmap(this, key, bitmap);
+        }
+
+        /**
+         * Evicts the entries added through the namespace
+         */
+        @Override
+        public void clear() {
+            final List<String> keys;
+            synchronized (m_cache) {
+                keys = new ArrayList<>(m_entries.keySet());
+            }
+            for (String key : keys) {
+                m_cache.remove(key);
             }
+        }
 
-            // Add each entry from the snapshot to the current LruCache
-            for (String key : snapshot.keySet()) {
-                Bitmap bitmap = snapshot.get(key);
-                if (bitmap != null) {
-                    if (DEBUG) {
-                        Log.d(LOG_TAG, "copyContent(): Copying bitmap (" + key + ") from old cache!");
+        /**
+         * Called when the screen goes away. Its entries stay cached for when it comes back, but no longer count
+         * against its quota
+         */
+        @Override
+        public void destroy() {
+            synchronized (m_cache) {
+                m_cache.forget(this);
+                m_entries.clear();
+                m_size = 0;
+            }
+        }
+
+        /**
+         * Must hold the lock on m_cache
+         */
+        void onAdded(@NonNull String key, int size) {
+            final Integer previousSize = m_entries.put(key, size);
+            m_size += size - (previousSize == null ? 0 : previousSize);
+        }
+
+        /**
+         * Must hold the lock on m_cache
+         */
+        void onRemoved(@NonNull String key) {
+            final Integer size = m_entries.remove(key);
+            if (size != null) {
+                m_size -= size;
+            }
+        }
+
+        void trimToQuota() {
+            final List<String> evictedKeys = new ArrayList<>();
+            synchronized (m_cache) {
+                int size = m_size;
+                for (Map.Entry<String, Integer> entry : m_entries.entrySet()) {
+                    if (size <= m_maxSize) {
+                        break;
                     }
-                    put(key, bitmap);
+                    evictedKeys.add(entry.getKey());
+                    size -= entry.getValue();
                 }
             }
+
+            if (DEBUG && !evictedKeys.isEmpty()) {
+                Log.d(LOG_TAG, String.format("trimToQuota(%s): Evicting %d entries", m_name, evictedKeys.size()));
+            }
+
+            // Calls back into onRemoved()
+            for (String key : evictedKeys) {
+                m_cache.remove(key);
+            }
         }
     }
 }
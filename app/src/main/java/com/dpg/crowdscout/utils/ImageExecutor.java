@@ -0,0 +1,200 @@
+package com.dpg.crowdscout.utils;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import com.dpg.crowdscout.BuildConfig;
+import com.dpg.crowdscout.network.QualityProfile;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+
+/**
+ * Process-wide executor for image downloads, separate from the AsyncTask pool.
+ * <p/>
+ * Instead of running tasks in the order they were submitted, every idle worker picks the queued task closest to
+ * the rows on screen, and among those the most recently submitted one. During a fling the rows that just scrolled
+ * into view are therefore served before the ones that were bound earlier. Tasks whose Future was cancelled, ie:
+ * because their ImageView was rebound to another url, are dropped from the queue without running.
+ * <p/>
+ * Distance from the screen is measured in adapter positions against a {@link Viewport} that the owner of the list
+ * keeps up to date.
+ */
+public enum ImageExecutor implements Executor {
+    INSTANCE;
+
+    private static final String LOG_TAG = ImageExecutor.class.getSimpleName();
+    private static final boolean DEBUG = BuildConfig.DEBUG && false;
+
+    /**
+     * Position of a task that isn't bound to an adapter position. Treated as visible
+     */
+    public static final int NO_POSITION = -1;
+
+    /**
+     * Range of adapter positions currently on screen. Written on the UI thread, read by the workers
+     */
+    public static class Viewport {
+        private volatile int m_firstPosition = NO_POSITION;
+        private volatile int m_lastPosition = NO_POSITION;
+
+        public void set(int firstPosition, int lastPosition) {
+            m_firstPosition = firstPosition;
+            m_lastPosition = lastPosition;
+        }
+
+        /**
+         * @return Number of positions between the position and the screen, 0 if it is on screen or unknown
+         */
+        int distanceTo(int position) {
+            final int first = m_firstPosition;
+            final int last = m_lastPosition;
+            if (position == NO_POSITION || first == NO_POSITION) {
+                return 0;
+            } else if (position < first) {
+                return first - position;
+            } else if (position > last) {
+                return position - last;
+            }
+            return 0;
+        }
+    }
+
+    private static class Task {
+        final Runnable runnable;
+        final Viewport viewport;
+        final int position;
+        final long sequence;
+
+        Task(@NonNull Runnable runnable, @Nullable Viewport viewport, int position, long sequence) {
+            this.runnable = runnable;
+            this.viewport = viewport;
+            this.position = position;
+            this.sequence = sequence;
+        }
+
+        int getDistance() {
+            return viewport == null ? 0 : viewport.distanceTo(position);
+        }
+
+        boolean isCancelled() {
+            return runnable instanceof Future && ((Future<?>) runnable).isCancelled();
+        }
+    }
+
+    /**
+     * Queued tasks. Guarded by itself
+     */
+    private final List<Task> m_queue = new ArrayList<>();
+    private long m_sequence;
+
+    ImageExecutor() {
+        // Enough workers for the most parallel downloads any QualityProfile allows. The RequestScheduler decides how
+        // many of them actually download at once
+        final int threadCount = QualityProfile.HIGH.getMaxConcurrentImageDownloads();
+        for (int i = 0; i < threadCount; i++) {
+            final Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    // Lower thread priority to limit impact on list scrolling
+                    android.os.Process.setThreadPriority(android.os.Process.THREAD_PRIORITY_BACKGROUND);
+                    runTasks();
+                }
+            }, "ImageExecutor #" + (i + 1));
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Queues a task that isn't tied to a position, so it is ordered only by how recently it was submitted
+     */
+    @Override
+    public void execute(@NonNull Runnable runnable) {
+        enqueue(runnable, null, NO_POSITION);
+    }
+
+    /**
+     * @param viewport {@link Viewport} Range on screen of the list the image is shown in, or null
+     * @param position Adapter position the image is shown at, or NO_POSITION
+     * @return {@link Executor} Executor that queues tasks on this one with the provided position
+     */
+    @NonNull
+    public Executor atPosition(@Nullable final Viewport viewport, final int position) {
+        return new Executor() {
+            @Override
+            public void execute(@NonNull Runnable runnable) {
+                enqueue(runnable, viewport, position);
+            }
+        };
+    }
+
+    private void enqueue(@NonNull Runnable runnable, @Nullable Viewport viewport, int position) {
+        synchronized (m_queue) {
+            m_queue.add(new Task(runnable, viewport, position, m_sequence++));
+            m_queue.notify();
+        }
+    }
+
+    private void runTasks() {
+        while (true) {
+            // Cancelling a task through its Future interrupts the worker, and FutureTask never clears the interrupt.
+            // Clear it so it neither ends the worker in take() nor fails the next task's blocking calls
+            Thread.interrupted();
+
+            final Runnable runnable;
+            try {
+                runnable = take();
+            } catch (InterruptedException e) {
+                continue;
+            }
+
+            try {
+                runnable.run();
+            } catch (RuntimeException e) {
+                Log.e(LOG_TAG, "runTasks(): Image task failed", e);
+            }
+        }
+    }
+
+    /**
+     * Blocks until a task is queued and removes the one closest to the screen, newest first
+     */
+    @NonNull
+    private Runnable take() throws InterruptedException {
+        synchronized (m_queue) {
+            while (true) {
+                Task best = null;
+                int bestDistance = Integer.MAX_VALUE;
+                for (int i = m_queue.size() - 1; i >= 0; i--) {
+                    final Task task = m_queue.get(i);
+                    if (task.isCancelled()) {
+                        m_queue.remove(i);
+                        continue;
+                    }
+
+                    // Iterating from the newest, so ties keep the newest task
+                    final int distance = task.getDistance();
+                    if (distance < bestDistance) {
+                        best = task;
+                        bestDistance = distance;
+                    }
+                }
+
+                if (best != null) {
+                    m_queue.remove(best);
+                    if (DEBUG) {
+                        Log.d(LOG_TAG, String.format("take(): #%d at position %d, distance %d, %d queued",
+                                best.sequence, best.position, bestDistance, m_queue.size()));
+                    }
+                    return best.runnable;
+                }
+
+                m_queue.wait();
+            }
+        }
+    }
+}
@@ -1,13 +1,24 @@
 package com.dpg.crowdscout.utils;
 
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.dpg.crowdscout.network.ApiResponse;
 import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import java.io.IOException;
-import java.io.UnsupportedEncodingException;
+import java.io.InputStream;
 import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
 
 import retrofit.converter.ConversionException;
 import retrofit.converter.Converter;
@@ -15,24 +26,94 @@ import retrofit.mime.TypedByteArray;
 import retrofit.mime.TypedInput;
 import retrofit.mime.TypedOutput;
 
+/**
+ * Retrofit converter backed by Jackson. Besides JSON it can decode Smile, Jackson's binary encoding of the same
+ * data model, which is smaller on the wire and cheaper to parse. The format of each response is picked from its
+ * content type; anything that isn't Smile is read as JSON.
+ */
 public class JacksonConverter implements Converter {
-    private static final String MIME_TYPE = "application/json; charset=UTF-8";
+    private static final String JSON_MIME_TYPE = "application/json; charset=UTF-8";
+    private static final String SMILE_MIME_TYPE = "application/x-jackson-smile";
+
+    /**
+     * Formats a JacksonConverter can read and write
+     */
+    public enum Format {
+        JSON, SMILE
+    }
+
+    /**
+     * Receives items decoded by readStreaming() as soon as each chunk is complete
+     */
+    public interface ChunkListener<E> {
+        /**
+         * Not called on UI thread
+         *
+         * @throws IOException To abort decoding, readStreaming() closes the body and rethrows it
+         */
+        public void onChunk(@NonNull List<E> items) throws IOException;
+    }
 
     private final ObjectMapper objectMapper;
+    private final ObjectMapper smileMapper;
+    private final Format bodyFormat;
+
+    /**
+     * ObjectReaders for the types requested so far, per format. Retrofit only ever asks for a handful of types, so
+     * each reader (and the deserializer it resolves on first use) is created once and shared; ObjectReader is immutable
+     */
+    private final ConcurrentHashMap<Type, ObjectReader> objectReaders = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Type, ObjectReader> smileReaders = new ConcurrentHashMap<>();
 
     public JacksonConverter() {
         this(new ObjectMapper());
     }
 
     public JacksonConverter(ObjectMapper objectMapper) {
+        this(objectMapper, null, Format.JSON);
+    }
+
+    /**
+     * @param objectMapper {@link ObjectMapper} Mapper used for JSON
+     * @param smileMapper  {@link ObjectMapper} Mapper created with a SmileFactory, or null to only support JSON. It
+     *                     should have the same modules registered as objectMapper
+     * @param bodyFormat   {@link Format} Format that toBody() encodes request bodies in
+     */
+    public JacksonConverter(ObjectMapper objectMapper, @Nullable ObjectMapper smileMapper, @NonNull Format bodyFormat) {
+        if (bodyFormat == Format.SMILE && smileMapper == null) {
+            throw new IllegalArgumentException("A Smile mapper is required to encode bodies as Smile");
+        }
+
         this.objectMapper = objectMapper;
+        this.smileMapper = smileMapper;
+        this.bodyFormat = bodyFormat;
+    }
+
+    /**
+     * @return {@link String} Value of the Accept header that lets the server pick any format this converter reads,
+     * preferring Smile when it is supported
+     */
+    @NonNull
+    public String getAcceptHeader() {
+        return smileMapper == null ? JSON_MIME_TYPE : SMILE_MIME_TYPE + ", application/json;q=0.9";
+    }
+
+    /**
+     * @param mimeType {@link String} Content type of a response body, may be null if the server didn't send one
+     * @return {@link Format} Format the body should be decoded as
+     */
+    @NonNull
+    public Format getFormat(@Nullable String mimeType) {
+        if (smileMapper != null && mimeType != null && mimeType.toLowerCase(Locale.US).startsWith(SMILE_MIME_TYPE)) {
+            return Format.SMILE;
+        }
+        return Format.JSON;
     }
 
     @Override
     public Object fromBody(TypedInput body, Type type) throws ConversionException {
         try {
-            JavaType javaType = objectMapper.getTypeFactory().constructType(type);
-            return objectMapper.readValue(body.in(), javaType);
+            return getObjectReader(getFormat(body.mimeType()), type).readValue(body.in());
         } catch (JsonParseException e) {
             throw new ConversionException(e);
         } catch (JsonMappingException e) {
@@ -45,12 +126,103 @@ public class JacksonConverter implements Converter {
     @Override
     public TypedOutput toBody(Object object) {
         try {
-            String json = objectMapper.writeValueAsString(object);
-            return new TypedByteArray(MIME_TYPE, json.getBytes("UTF-8"));
+            if (bodyFormat == Format.SMILE) {
+                return new TypedByteArray(SMILE_MIME_TYPE, smileMapper.writeValueAsBytes(object));
+            }
+            // Jackson always encodes JSON as UTF-8
+            return new TypedByteArray(JSON_MIME_TYPE, objectMapper.writeValueAsBytes(object));
         } catch (JsonProcessingException e) {
             throw new AssertionError(e);
-        } catch (UnsupportedEncodingException e) {
-            throw new AssertionError(e);
         }
     }
+
+    /**
+     * Decodes an ApiResponse whose data attribute is an array by walking the token stream, handing items to
+     * the listener in chunks while the rest of the payload is still being read. Unlike fromBody(), the first items
+     * are available long before the whole response has been materialized.
+     * <p/>
+     * Not called on UI thread
+     *
+     * @param in          {@link InputStream} Response body. Closed once decoding completes
+     * @param mimeType    {@link String} Content type of the response body, selects the format to decode
+     * @param elementType {@link Class} Type of the items contained in the data array
+     * @param chunkSize   Number of items to decode before notifying the listener
+     * @param listener    {@link ChunkListener} Receives each chunk of decoded items
+     * @return {@link ApiResponse} Complete response, including every item that was handed to the listener
+     */
+    @NonNull
+    public <E> ApiResponse<List<E>> readStreaming(@NonNull InputStream in, @Nullable String mimeType, @NonNull Class<E> elementType,
+                                                 int chunkSize, @NonNull ChunkListener<E> listener) throws IOException {
+        final ApiResponse<List<E>> apiResponse = new ApiResponse<>();
+        final Format format = getFormat(mimeType);
+        final JsonParser parser = getMapper(format).getFactory().createParser(in);
+
+        try {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException("Expected ApiResponse object", parser.getCurrentLocation());
+            }
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String fieldName = parser.getCurrentName();
+                final JsonToken valueToken = parser.nextToken();
+
+                if ("data".equals(fieldName) && valueToken == JsonToken.START_ARRAY) {
+                    apiResponse.data = readArray(parser, getObjectReader(format, elementType), chunkSize, listener);
+                } else if ("code".equals(fieldName)) {
+                    apiResponse.code = parser.getValueAsString();
+                } else if ("status".equals(fieldName)) {
+                    apiResponse.status = parser.getValueAsString();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        } finally {
+            parser.close();
+        }
+
+        return apiResponse;
+    }
+
+    private <E> List<E> readArray(@NonNull JsonParser parser, @NonNull ObjectReader reader,
+                                  int chunkSize, @NonNull ChunkListener<E> listener) throws IOException {
+        final List<E> items = new ArrayList<>();
+        List<E> chunk = new ArrayList<>(chunkSize);
+
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            final E item = reader.readValue(parser);
+            if (item == null) {
+                continue;
+            }
+
+            items.add(item);
+            chunk.add(item);
+
+            if (chunk.size() >= chunkSize) {
+                listener.onChunk(chunk);
+                chunk = new ArrayList<>(chunkSize);
+            }
+        }
+
+        if (!chunk.isEmpty()) {
+            listener.onChunk(chunk);
+        }
+
+        return items;
+    }
+
+    private ObjectMapper getMapper(Format format) {
+        return format == Format.SMILE ? smileMapper : objectMapper;
+    }
+
+    private ObjectReader getObjectReader(Format format, Type type) {
+        final ConcurrentHashMap<Type, ObjectReader> readers = format == Format.SMILE ? smileReaders : objectReaders;
+        ObjectReader reader = readers.get(type);
+        if (reader == null) {
+            final ObjectMapper mapper = getMapper(format);
+            final JavaType javaType = mapper.getTypeFactory().constructType(type);
+            reader = mapper.reader(javaType);
+            readers.put(type, reader);
+        }
+        return reader;
+    }
 }
@@ -0,0 +1,318 @@
+package com.dpg.crowdscout.utils;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.view.View;
+import android.widget.AbsListView;
+import android.widget.BaseAdapter;
+import android.widget.ListView;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Maintains an immutable snapshot of a list shown by an adapter, merging refreshed items into it on a background
+ * thread.
+ * <p/>
+ * Each merge dedupes by key (an item replaces the one with the same key), sorts, and computes a {@link Diff} against
+ * the previous snapshot off the UI thread. The UI thread only swaps in the new snapshot and, through
+ * dispatchUpdates(), rebinds the visible rows whose item was replaced, or invalidates the list when rows were
+ * inserted, removed or reordered. Merges are applied in the order they were requested.
+ * <p/>
+ * Must only be used on the UI thread
+ */
+public class ListMerger<T> {
+    /**
+     * Identifies items that represent the same entity, ie: a venue or media id
+     */
+    public interface KeyProvider<T> {
+        /**
+         * Not called on UI thread
+         */
+        @NonNull
+        public Object getKey(@NonNull T item);
+    }
+
+    /**
+     * Always called on UI thread
+     */
+    public interface Listener<T> {
+        /**
+         * @param snapshot {@link List} New, unmodifiable contents of the list
+         * @param diff     {@link Diff} Changes from the previous snapshot
+         */
+        public void onMerged(@NonNull List<T> snapshot, @NonNull Diff diff);
+    }
+
+    /**
+     * Changes between two snapshots
+     */
+    public static class Diff {
+        private final int m_insertedCount;
+        private final int m_removedCount;
+        private final boolean m_isStructural;
+        private final List<Integer> m_changedPositions;
+
+        Diff(int insertedCount, int removedCount, boolean isStructural, @NonNull List<Integer> changedPositions) {
+            m_insertedCount = insertedCount;
+            m_removedCount = removedCount;
+            m_isStructural = isStructural;
+            m_changedPositions = changedPositions;
+        }
+
+        public int getInsertedCount() {
+            return m_insertedCount;
+        }
+
+        public int getRemovedCount() {
+            return m_removedCount;
+        }
+
+        /**
+         * @return true if rows were inserted, removed or moved, which requires invalidating the whole list
+         */
+        public boolean isStructural() {
+            return m_isStructural;
+        }
+
+        /**
+         * @return {@link List} Positions whose item was replaced by a different instance with the same key. Only
+         * meaningful when the diff isn't structural
+         */
+        @NonNull
+        public List<Integer> getChangedPositions() {
+            return m_changedPositions;
+        }
+
+        public boolean isEmpty() {
+            return !m_isStructural && m_changedPositions.isEmpty();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Diff{+%d -%d structural=%b changed=%d}", m_insertedCount, m_removedCount, m_isStructural, m_changedPositions.size());
+        }
+    }
+
+    /**
+     * Merges of every list run on one low priority thread, which keeps them in order
+     */
+    private static final ExecutorService s_executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(@NonNull final Runnable runnable) {
+            return new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    android.os.Process.setThreadPriority(android.os.Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }
+            }, "ListMerger");
+        }
+    });
+
+    private final Handler m_handler = new Handler(Looper.getMainLooper());
+    private final Comparator<? super T> m_comparator;
+    private final KeyProvider<? super T> m_keyProvider;
+
+    /**
+     * Snapshot shown by the adapter. Only accessed on the UI thread
+     */
+    private List<T> m_snapshot = Collections.emptyList();
+
+    /**
+     * Snapshot the next merge starts from. Only accessed on the merge thread
+     */
+    private List<T> m_latest = Collections.emptyList();
+
+    /**
+     * Incremented by clear() so that merges requested before it are not applied
+     */
+    private int m_generation;
+
+    /**
+     * @param comparator  {@link Comparator} Order of the list, or null to keep items in the order they were merged in
+     * @param keyProvider {@link KeyProvider} Identifies items that replace one another
+     */
+    public ListMerger(@Nullable Comparator<? super T> comparator, @NonNull KeyProvider<? super T> keyProvider) {
+        m_comparator = comparator;
+        m_keyProvider = keyProvider;
+    }
+
+    /**
+     * @return {@link List} Unmodifiable snapshot last delivered to a Listener
+     */
+    @NonNull
+    public List<T> getSnapshot() {
+        return m_snapshot;
+    }
+
+    /**
+     * Adds the items to the list, replacing the ones with the same key
+     */
+    public void merge(@NonNull Collection<? extends T> items, @NonNull Listener<T> listener) {
+        final List<T> newItems = new ArrayList<>(items);
+        submit(listener, new Transform<T>() {
+            @Override
+            public List<T> apply(@NonNull List<T> current) {
+                final Map<Object, T> byKey = new LinkedHashMap<>((current.size() + newItems.size()) * 4 / 3 + 1);
+                for (T item : current) {
+                    byKey.put(m_keyProvider.getKey(item), item);
+                }
+                for (T item : newItems) {
+                    if (item != null) {
+                        byKey.put(m_keyProvider.getKey(item), item);
+                    }
+                }
+
+                final List<T> merged = new ArrayList<>(byKey.values());
+                if (m_comparator != null) {
+                    Collections.sort(merged, m_comparator);
+                }
+                return merged;
+            }
+        });
+    }
+
+    /**
+     * Removes the item with the same key as the provided one
+     */
+    public void remove(@NonNull final T item, @NonNull Listener<T> listener) {
+        submit(listener, new Transform<T>() {
+            @Override
+            public List<T> apply(@NonNull List<T> current) {
+                final Object key = m_keyProvider.getKey(item);
+                final List<T> remaining = new ArrayList<>(current.size());
+                for (T existing : current) {
+                    if (!key.equals(m_keyProvider.getKey(existing))) {
+                        remaining.add(existing);
+                    }
+                }
+                return remaining;
+            }
+        });
+    }
+
+    /**
+     * Empties the list right away. Merges that are still pending are dropped
+     */
+    public void clear() {
+        m_generation++;
+        m_snapshot = Collections.emptyList();
+        s_executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                m_latest = Collections.emptyList();
+            }
+        });
+    }
+
+    /**
+     * Applies a diff to the AbsListView showing the adapter: invalidates the list for structural changes, and
+     * otherwise only rebinds the visible rows whose item changed. Must be called after the adapter has switched to
+     * the snapshot the diff was computed for
+     */
+    public static void dispatchUpdates(@NonNull Diff diff, @NonNull BaseAdapter adapter, @Nullable AbsListView listView) {
+        if (diff.isEmpty()) {
+            return;
+        }
+
+        if (diff.isStructural() || listView == null) {
+            adapter.notifyDataSetChanged();
+            return;
+        }
+
+        final int headerCount = listView instanceof ListView ? ((ListView) listView).getHeaderViewsCount() : 0;
+        final int firstVisiblePosition = listView.getFirstVisiblePosition();
+        for (int position : diff.getChangedPositions()) {
+            final int childIndex = position + headerCount - firstVisiblePosition;
+            if (childIndex < 0 || childIndex >= listView.getChildCount()) {
+                continue;
+            }
+
+            // The adapter may decide the row needs a different layout, which only a full pass can attach
+            final View child = listView.getChildAt(childIndex);
+            if (adapter.getView(position, child, listView) != child) {
+                adapter.notifyDataSetChanged();
+                return;
+            }
+        }
+    }
+
+    // *******************************************************
+    // MERGING
+    // *******************************************************
+
+    private interface Transform<T> {
+        /**
+         * Not called on UI thread
+         */
+        public List<T> apply(@NonNull List<T> current);
+    }
+
+    private void submit(@NonNull final Listener<T> listener, @NonNull final Transform<T> transform) {
+        final int generation = m_generation;
+        s_executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final List<T> previous = m_latest;
+                final List<T> snapshot = Collections.unmodifiableList(transform.apply(previous));
+                final Diff diff = diff(previous, snapshot);
+                m_latest = snapshot;
+
+                m_handler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation != m_generation) {
+                            return;
+                        }
+                        m_snapshot = snapshot;
+                        listener.onMerged(snapshot, diff);
+                    }
+                });
+            }
+        });
+    }
+
+    @NonNull
+    private Diff diff(@NonNull List<T> previous, @NonNull List<T> snapshot) {
+        final Set<Object> previousKeys = new HashSet<>(previous.size() * 4 / 3 + 1);
+        for (T item : previous) {
+            previousKeys.add(m_keyProvider.getKey(item));
+        }
+
+        int insertedCount = 0;
+        boolean isStructural = previous.size() != snapshot.size();
+        final List<Integer> changedPositions = new ArrayList<>();
+        for (int i = 0; i < snapshot.size(); i++) {
+            final T item = snapshot.get(i);
+            final Object key = m_keyProvider.getKey(item);
+            if (!previousKeys.contains(key)) {
+                insertedCount++;
+                isStructural = true;
+            } else if (!isStructural) {
+                final T previousItem = previous.get(i);
+                if (!key.equals(m_keyProvider.getKey(previousItem))) {
+                    isStructural = true;
+                } else if (previousItem != item) {
+                    changedPositions.add(i);
+                }
+            }
+        }
+
+        final int removedCount = previous.size() + insertedCount - snapshot.size();
+        return new Diff(insertedCount, removedCount, isStructural,
+                isStructural ? Collections.<Integer>emptyList() : changedPositions);
+    }
+}
@@ -0,0 +1,1453 @@
+package com.dpg.crowdscout.utils;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.crowdscout.api.models.XYPosition;
+import com.crowdscout.api.models.foursquare.FoursquareCategory;
+import com.crowdscout.api.models.foursquare.FoursquareContact;
+import com.crowdscout.api.models.foursquare.FoursquareEvent;
+import com.crowdscout.api.models.foursquare.FoursquareEventProvider;
+import com.crowdscout.api.models.foursquare.FoursquareEventProviderIcon;
+import com.crowdscout.api.models.foursquare.FoursquareHours;
+import com.crowdscout.api.models.foursquare.FoursquareIcon;
+import com.crowdscout.api.models.foursquare.FoursquareLocation;
+import com.crowdscout.api.models.foursquare.FoursquarePhoto;
+import com.crowdscout.api.models.foursquare.FoursquarePrice;
+import com.crowdscout.api.models.foursquare.FoursquareStats;
+import com.crowdscout.api.models.foursquare.FoursquareTip;
+import com.crowdscout.api.models.foursquare.FoursquareUser;
+import com.crowdscout.api.models.foursquare.FoursquareUserPhoto;
+import com.crowdscout.api.models.foursquare.FoursquareVenue;
+import com.crowdscout.api.models.instagram.InstagramCaption;
+import com.crowdscout.api.models.instagram.InstagramImageSet;
+import com.crowdscout.api.models.instagram.InstagramLocation;
+import com.crowdscout.api.models.instagram.InstagramMedia;
+import com.crowdscout.api.models.instagram.InstagramMediaObject;
+import com.crowdscout.api.models.instagram.InstagramUser;
+import com.crowdscout.api.models.instagram.InstagramUserInPhoto;
+import com.crowdscout.api.models.instagram.InstagramVideoSet;
+import com.dpg.crowdscout.models.VenueSummary;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hand-written streaming deserializers for the models returned by the explore and media endpoints.
+ * <p/>
+ * Jackson's default bean deserializers introspect every nested model class through reflection the first time it
+ * is seen and then bind each property through reflective field access, which dominates parse time on older
+ * devices. The readers below walk the token stream once and assign the public fields of the models directly,
+ * mirroring the @JsonProperty names and the lenient coercions (numbers as strings and vice versa) that the
+ * reflective deserializers applied. Unknown properties are skipped, just like @JsonIgnoreProperties(ignoreUnknown).
+ * <p/>
+ * VenueSummary is read from the same venue objects, keeping only the fields shown in venue lists. Its serializer
+ * writes summaries back in that shape so the ResponseCache can read them with the same deserializer.
+ */
+public final class ModelDeserializers {
+
+    private ModelDeserializers() {
+    }
+
+    /**
+     * @return {@link SimpleModule} Module registering the FoursquareVenue, VenueSummary and InstagramMedia
+     * deserializers, and the VenueSummary serializer
+     */
+    @NonNull
+    public static SimpleModule createModule() {
+        final SimpleModule module = new SimpleModule(ModelDeserializers.class.getSimpleName());
+        module.addDeserializer(FoursquareVenue.class, new FoursquareVenueDeserializer());
+        module.addDeserializer(VenueSummary.class, new VenueSummaryDeserializer());
+        module.addSerializer(VenueSummary.class, new VenueSummarySerializer());
+        module.addDeserializer(InstagramMedia.class, new InstagramMediaDeserializer());
+        return module;
+    }
+
+    public static class FoursquareVenueDeserializer extends StdDeserializer<FoursquareVenue> {
+        public FoursquareVenueDeserializer() {
+            super(FoursquareVenue.class);
+        }
+
+        @Override
+        public FoursquareVenue deserialize(JsonParser parser, DeserializationContext ctxt) throws IOException {
+            return readVenue(parser);
+        }
+    }
+
+    public static class VenueSummaryDeserializer extends StdDeserializer<VenueSummary> {
+        public VenueSummaryDeserializer() {
+            super(VenueSummary.class);
+        }
+
+        @Override
+        public VenueSummary deserialize(JsonParser parser, DeserializationContext ctxt) throws IOException {
+            return readVenueSummary(parser);
+        }
+    }
+
+    /**
+     * Writes a VenueSummary as a venue object holding only the fields it was read from
+     */
+    public static class VenueSummarySerializer extends StdSerializer<VenueSummary> {
+        public VenueSummarySerializer() {
+            super(VenueSummary.class);
+        }
+
+        @Override
+        public void serialize(VenueSummary summary, JsonGenerator generator, SerializerProvider provider) throws IOException {
+            generator.writeStartObject();
+            writeStringField(generator, "id", summary.getId());
+            writeStringField(generator, "name", summary.getName());
+
+            if (summary.hasCategory()) {
+                generator.writeObjectFieldStart("category");
+                generator.writeStringField("name", summary.getCategoryName());
+                final FoursquareIcon icon = summary.getCategoryIcon();
+                if (icon != null) {
+                    generator.writeObjectFieldStart("icon");
+                    writeStringField(generator, "prefix", icon.prefix);
+                    writeStringField(generator, "suffix", icon.suffix);
+                    writeStringField(generator, "url", icon.url);
+                    generator.writeEndObject();
+                }
+                generator.writeEndObject();
+            }
+
+            final FoursquarePhoto photo = summary.getFirstPhoto();
+            if (photo != null) {
+                generator.writeArrayFieldStart("photos");
+                generator.writeStartObject();
+                writeStringField(generator, "prefix", photo.prefix);
+                writeStringField(generator, "suffix", photo.suffix);
+                generator.writeEndObject();
+                generator.writeEndArray();
+            }
+
+            if (summary.hasTips()) {
+                generator.writeArrayFieldStart("tips");
+                generator.writeStartObject();
+                generator.writeStringField("text", summary.getTip());
+                generator.writeEndObject();
+                generator.writeEndArray();
+            }
+
+            generator.writeEndObject();
+        }
+
+        private static void writeStringField(@NonNull JsonGenerator generator, @NonNull String fieldName, @Nullable String value) throws IOException {
+            if (value != null) {
+                generator.writeStringField(fieldName, value);
+            }
+        }
+    }
+
+    public static class InstagramMediaDeserializer extends StdDeserializer<InstagramMedia> {
+        public InstagramMediaDeserializer() {
+            super(InstagramMedia.class);
+        }
+
+        @Override
+        public InstagramMedia deserialize(JsonParser parser, DeserializationContext ctxt) throws IOException {
+            return readMedia(parser);
+        }
+    }
+
+    /**
+     * Reads a single element of a JSON array. The parser is positioned on the first token of the element
+     */
+    private interface ElementReader<T> {
+        public T read(@NonNull JsonParser parser) throws IOException;
+    }
+
+    // *******************************************************
+    // FOURSQUARE
+    // *******************************************************
+
+    @Nullable
+    private static FoursquareVenue readVenue(@NonNull JsonParser parser) throws IOException {
+        if (!isObjectStart(parser)) {
+            return null;
+        }
+
+        final FoursquareVenue venue = new FoursquareVenue();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String fieldName = parser.getCurrentName();
+            parser.nextToken();
+
+            switch (fieldName) {
+                case "id":
+                    venue.id = readString(parser);
+                    break;
+                case "name":
+                    venue.name = readString(parser);
+                    break;
+                case "contact":
+                    venue.contact = readContact(parser);
+                    break;
+                case "location":
+                    venue.location = readLocation(parser);
+                    break;
+                case "category":
+                    venue.category = readCategory(parser);
+                    break;
+                case "verified":
+                    venue.verified = readBoolean(parser);
+                    break;
+                case "stats":
+                    venue.stats = readStats(parser);
+                    break;
+                case "url":
+                    venue.url = readString(parser);
+                    break;
+                case "price":
+                    venue.price = readPrice(parser);
+                    break;
+                case "hasMenu":
+                    venue.hasMenu = readBoolean(parser);
+                    break;
+                case "rating":
+                    venue.rating = readDouble(parser);
+                    break;
+                case "ratingSignals":
+                    venue.ratingSignals = readInteger(parser);
+                    break;
+                case "delivery":
+                    venue.delivery = readMap(parser);
+                    break;
+                case "reservations":
+                    venue.reservations = readMap(parser);
+                    break;
+                case "menu":
+                    venue.menu = readMap(parser);
+                    break;
+                case "hours":
+                    venue.hours = readHours(parser);
+                    break;
+                case "events":
+                    venue.events = readList(parser, EVENT_READER);
+                    break;
+                case "hereNowCount":
+                    venue.hereNowCount = readInt(parser);
+                    break;
+                case "venuePageId":
+                    venue.venuePageId = readString(parser);
+                    break;
+                case "storeId":
+                    venue.storeId = readString(parser);
+                    break;
+                case "photos":
+                    venue.photos = readList(parser, PHOTO_READER);
+                    break;
+                case "featuredPhotos":
+                    venue.featuredPhotos = readList(parser, PHOTO_READER);
+                    break;
+                case "canonicalUrl":
+                    venue.canonicalUrl = readString(parser);
+                    break;
+                case "tips":
+                    venue.tips = readList(parser, TIP_READER);
+                    break;
+                case "createdAt":
+                    venue.createdAt = readLong(parser);
+                    break;
+                case "timeZone":
+                    venue.timeZone = readString(parser);
+                    break;
+                case "phrases":
+                    venue.phrases = readList(parser, STRING_READER);
+                    break;
+                case "parent":
+                    venue.parent = readVenue(parser);
+                    break;
+                case "instagram_location_id":
+                    venue.instagram_location_id = readString(parser);
+                    break;
+                default:
+                    parser.skipChildren();
+                    break;
+            }
+        }
+        return venue;
+    }
+
+    /**
+     * Reads only the fields of a venue that VenueSummary keeps; everything else, including the nested objects of
+     * the first tip and photo, is skipped without being materialized
+     */
+    @Nullable
+    private static VenueSummary readVenueSummary(@NonNull JsonParser parser) throws IOException {
+        if (!isObjectStart(parser)) {
+            return null;
+        }
+
+        String id = null;
+        String name = null;
+        String tip = null;
+        FoursquareCategory category = null;
+        FoursquarePhoto photo = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String fieldName = parser.getCurrentName();
+            parser.nextToken();
+
+            switch (fieldName) {
+                case "id":
+                    id = readString(parser);
+                    break;
+                case "name":
+                    name = readString(parser);
+                    break;
+                case "category":
+                    category = readCategory(parser);
+                    break;
+                case "photos":
+                    photo = readFirst(parser, PHOTO_URL_READER);
+                    break;
+                case "tips":
+                    tip = readFirst(parser, TIP_TEXT_READER);
+                    break;
+                default:
+                    parser.skipChildren();
+                    break;
+            }
+        }
+
+        return new VenueSummary(id, name, tip, category == null ? null : category.name, category == null ? null : category.icon, photo);
+    }
+
+    /**
+     * @return {@link FoursquarePhoto} Photo holding only the prefix and suffix its urls are built from
+     */
+    @Nullable
+    private static FoursquarePhoto readPhotoUrl(@NonNull JsonParser parser) throws IOException {
+        if (!isObjectStart(parser)) {
+            return null;
+        }
+
+        final FoursquarePhoto photo = new FoursquarePhoto();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String fieldName = parser.getCurrentName();
+            parser.nextToken();
+
+            switch (fieldName) {
+                case "prefix":
+                    photo.prefix = readString(parser);
+                    break;
+                case "suffix":
+                    photo.suffix = readString(parser);
+                    break;
+                default:
+                    parser.skipChildren();
+                    break;
+            }
+        }
+        return photo;
+    }
+
+    @Nullable
+    private static String readTipText(@NonNull JsonParser parser) throws IOException {
+        if (!isObjectStart(parser)) {
+            return null;
+        }
+
+        String text = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String fieldName = parser.getCurrentName();
+            parser.nextToken();
+
+            if ("text".equals(fieldName)) {
+                text = readString(parser);
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return text;
+    }
+
+    @Nullable
+    private static FoursquareContact readContact(@NonNull JsonParser parser) throws IOException {
+        if (!isObjectStart(parser)) {
+            return null;
+        }
+
+        final FoursquareContact contact = new FoursquareContact();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String fieldName = parser.getCurrentName();
+            parser.nextToken();
+
+            switch (fieldName) {
+                case "phone":
+                    contact.phone = readString(parser);
+                    break;
+                case "formattedPhone":
+                    contact.formattedPhone = readString(parser);
+                    break;
+                case "twitter":
+                    contact.twitter = readString(parser);
+                    break;
+                case "facebook":
+                    contact.facebook = readString(parser);
+                    break;
+                case "facebookUsername":
+                    contact.facebookUsername = readString(parser);
+                    break;
+                case "facebookName":
+                    contact.facebookName = readString(parser);
+                    break;
+                case "email":
+                    contact.email = readString(parser);
+                    break;
+                default:
+                    parser.skipChildren();
+                    break;
+            }
+        }
+        return contact;
+    }
+
+    @Nullable
+    private static FoursquareLocation readLocation(@NonNull JsonParser parser) throws IOException {
+        if (!isObjectStart(parser)) {
+            return null;
+        }
+
+        final FoursquareLocation location = new FoursquareLocation();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String fieldName = parser.getCurrentName();
+            parser.nextToken();
+
+            switch (fieldName) {
+                case "address":
+                    location.address = readString(parser);
+                    break;
+                case "crossStreet":
+                    location.crossStreet = readString(parser);
+                    break;
+                case "lat":
+                    location.lat = readDouble(parser);
+                    break;
+                case "lng":
+                    location.lng = readDouble(parser);
+                    break;
+                case "postalCode":
+                    location.postalCode = readString(parser);
+                    break;
+                case "cc":
+                    location.cc = readString(parser);
+                    break;
+                case "city":
+                    location.city = readString(parser);
+                    break;
+                case "state":
+                    location.state = readString(parser);
+                    break;
+                case "country":
+                    location.country = readString(parser);
+                    break;
+                case "formattedAddress":
+                    location.formattedAddress = readString(parser);
+                    break;
+                case "distance":
+                    location.distance = readLong(parser);
+                    break;
+                default:
+                    parser.skipChildren();
+                    break;
+            }
+        }
+        return location;
+    }
+
+    @Nullable
+    private static FoursquareCategory readCategory(@NonNull JsonParser parser) throws IOException {
+        if (!isObjectStart(parser)) {
+            return null;
+        }
+
+        final FoursquareCategory category = new FoursquareCategory();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String fieldName = parser.getCurrentName();
+            parser.nextToken();
+
+            switch (fieldName) {
+                case "id":
+                    category.id = readString(parser);
+                    break;
+                case "name":
+                    category.name = readString(parser);
+                    break;
+                case "pluralName":
+                    category.pluralName = readString(parser);
+                    break;
+                case "shortName":
+                    category.shortName = readString(parser);
+                    break;
+                case "icon":
+                    category.icon = readIcon(parser);
+                    break;
+                case "primary":
+                    category.primary = Boolean.TRUE.equals(readBoolean(parser));
+                    break;
+                default:
+                    parser.skipChildren();
+                    break;
+            }
+        }
+        return category;
+    }
+
+    @Nullable
+    private static FoursquareIcon readIcon(@NonNull JsonParser parser) throws IOException {
+        if (!isObjectStart(parser)) {
+            return null;
+        }
+
+        final FoursquareIcon icon = new FoursquareIcon();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String fieldName = parser.getCurrentName();
+            parser.nextToken();
+
+            switch (fieldName) {
+                case "prefix":
+                    icon.prefix = readString(parser);
+                    break;
+                case "suffix":
+                    icon.suffix = readString(parser);
+                    break;
+                case "url":
+                    icon.url = readString(parser);
+                    break;
+                default:
+                    parser.skipChildren();
+                    break;
+            }
+        }
+        return icon;
+    }
+
+    @Nullable
+    private static FoursquareStats readStats(@NonNull JsonParser parser) throws IOException {
+        if (!isObjectStart(parser)) {
+            return null;
+        }
+
+        final FoursquareStats stats = new FoursquareStats();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String fieldName = parser.getCurrentName();
+            parser.nextToken();
+
+            switch (fieldName) {
+                case "checkinsCount":
+                    stats.checkinsCount = readLong(parser);
+                    break;
+                case "usersCount":
+                    stats.usersCount = readLong(parser);
+                    break;
+                case "tipCount":
+                    stats.tipCount = readLong(parser);
+                    break;
+                default:
+                    parser.skipChildren();
+                    break;
+            }
+        }
+        return stats;
+    }
+
+    @Nullable
+    private static FoursquarePrice readPrice(@NonNull JsonParser parser) throws IOException {
+        if (!isObjectStart(parser)) {
+            return null;
+        }
+
+        final FoursquarePrice price = new FoursquarePrice();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String fieldName = parser.getCurrentName();
+            parser.nextToken();
+
+            switch (fieldName) {
+                case "tier":
+                    final Integer tier = readInteger(parser);
+                    price.tier = tier == null ? null : tier.shortValue();
+                    break;
+                case "message":
+                    price.message = readString(parser);
+                    break;
+                case "currency":
+                    price.currency = readString(parser);
+                    break;
+                default:
+                    parser.skipChildren();
+                    break;
+            }
+        }
+        return price;
+    }
+
+    @Nullable
+    private static FoursquareHours readHours(@NonNull JsonParser parser) throws IOException {
+        if (!isObjectStart(parser)) {
+            return null;
+        }
+
+        final FoursquareHours hours = new FoursquareHours();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String fieldName = parser.getCurrentName();
+            parser.nextToken();
+
+            switch (fieldName) {
+                case "status":
+                    hours.status = readString(parser);
+                    break;
+                case "isOpen":
+                    hours.isOpen = readBoolean(parser);
+                    break;
+                case "timeframes":
+                    hours.timeframes = readList(parser, MAP_READER);
+                    break;
+                default:
+                    parser.skipChildren();
+                    break;
+            }
+        }
+        return hours;
+    }
+
+    @Nullable
+    private static <P extends FoursquarePhoto> P readPhoto(@NonNull JsonParser parser, @NonNull P photo) throws IOException {
+        if (!isObjectStart(parser)) {
+            return null;
+        }
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String fieldName = parser.getCurrentName();
+            parser.nextToken();
+
+            switch (fieldName) {
+                case "id":
+                    photo.id = readString(parser);
+                    break;
+                case "createdAt":
+                    photo.createdAt = readLong(parser);
+                    break;
+                case "prefix":
+                    photo.prefix = readString(parser);
+                    break;
+                case "suffix":
+                    photo.suffix = readString(parser);
+                    break;
+                case "width":
+                    photo.width = readString(parser);
+                    break;
+                case "height":
+                    photo.height = readString(parser);
+                    break;
+                case "visibility":
+                    photo.visibility = readString(parser);
+                    break;
+                case "user":
+                    photo.user = readUser(parser);
+                    break;
+                case "venue":
+                    photo.venue = readVenue(parser);
+                    break;
+                case "tip":
+                    photo.tip = readTip(parser);
+                    break;
+                case "default":
+                    photo.isDefault = readBoolean(parser);
+                    break;
+                default:
+                    parser.skipChildren();
+                    break;
+            }
+        }
+        return photo;
+    }
+
+    @Nullable
+    private static FoursquareTip readTip(@NonNull JsonParser parser) throws IOException {
+        if (!isObjectStart(parser)) {
+            return null;
+        }
+
+        final FoursquareTip tip = new FoursquareTip();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String fieldName = parser.getCurrentName();
+            parser.nextToken();
+
+            switch (fieldName) {
+                case "id":
+                    tip.id = readString(parser);
+                    break;
+                case "text":
+                    tip.text = readString(parser);
+                    break;
+                case "createdAt":
+                    tip.createdAt = readLong(parser);
+                    break;
+                case "url":
+                    tip.url = readString(parser);
+                    break;
+                case "canonicalUrl":
+                    tip.canonicalUrl = readString(parser);
+                    break;
+                case "photourl":
+                    tip.photourl = readString(parser);
+                    break;
+                case "photo":
+                    tip.photo = readPhoto(parser, new FoursquarePhoto());
+                    break;
+                case "venue":
+                    tip.venue = readVenue(parser);
+                    break;
+                case "numLikes":
+                    tip.numLikes = readInt(parser);
+                    break;
+                case "user":
+                    tip.user = readUser(parser);
+                    break;
+                case "type":
+                    tip.type = readString(parser);
+                    break;
+                case "lang":
+                    tip.lang = readString(parser);
+                    break;
+                default:
+                    parser.skipChildren();
+                    break;
+            }
+        }
+        return tip;
+    }
+
+    @Nullable
+    private static FoursquareUser readUser(@NonNull JsonParser parser) throws IOException {
+        if (!isObjectStart(parser)) {
+            return null;
+        }
+
+        final FoursquareUser user = new FoursquareUser();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String fieldName = parser.getCurrentName();
+            parser.nextToken();
+
+            switch (fieldName) {
+                case "id":
+                    user.id = readString(parser);
+                    break;
+                case "firstName":
+                    user.firstName = readString(parser);
+                    break;
+                case "lastName":
+                    user.lastName = readString(parser);
+                    break;
+                case "gender":
+                    user.gender = readString(parser);
+                    break;
+                case "photo":
+                    user.photo = readPhoto(parser, new FoursquareUserPhoto());
+                    break;
+                case "type":
+                    user.type = readString(parser);
+                    break;
+                case "venue":
+                    user.venue = readMap(parser);
+                    break;
+                case "contact":
+                    user.contact = readContact(parser);
+                    break;
+                default:
+                    parser.skipChildren();
+                    break;
+            }
+        }
+        return user;
+    }
+
+    @Nullable
+    private static FoursquareEvent readEvent(@NonNull JsonParser parser) throws IOException {
+        if (!isObjectStart(parser)) {
+            return null;
+        }
+
+        final FoursquareEvent event = new FoursquareEvent();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String fieldName = parser.getCurrentName();
+            parser.nextToken();
+
+            switch (fieldName) {
+                case "id":
+                    event.id = readString(parser);
+                    break;
+                case "name":
+                    event.name = readString(parser);
+                    break;
+                case "categories":
+                    event.categories = readList(parser, CATEGORY_READER);
+                    break;
+                case "startAt":
+                    event.startAt = readLong(parser);
+                    break;
+                case "endAt":
+                    event.endAt = readLong(parser);
+                    break;
+                case "allDay":
+                    event.allDay = readBoolean(parser);
+                    break;
+                case "timeZone":
+                    event.timeZone = readString(parser);
+                    break;
+                case "text":
+                    event.text = readString(parser);
+                    break;
+                case "url":
+                    event.url = readString(parser);
+                    break;
+                case "images":
+                    event.images = readList(parser, STRING_READER);
+                    break;
+                case "provider":
+                    event.provider = readEventProvider(parser);
+                    break;
+                case "stats":
+                    event.stats = readStats(parser);
+                    break;
+                case "hereNowCount":
+                    event.hereNowCount = readInt(parser);
+                    break;
+                case "date":
+                    event.date = readLong(parser);
+                    break;
+                default:
+                    parser.skipChildren();
+                    break;
+            }
+        }
+        return event;
+    }
+
+    @Nullable
+    private static FoursquareEventProvider readEventProvider(@NonNull JsonParser parser) throws IOException {
+        if (!isObjectStart(parser)) {
+            return null;
+        }
+
+        final FoursquareEventProvider provider = new FoursquareEventProvider();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String fieldName = parser.getCurrentName();
+            parser.nextToken();
+
+            switch (fieldName) {
+                case "urlText":
+                    provider.urlText = readString(parser);
+                    break;
+                case "name":
+                    provider.name = readString(parser);
+                    break;
+                case "iconUrl":
+                    provider.iconUrl = readEventProviderIcon(parser);
+                    break;
+                default:
+                    parser.skipChildren();
+                    break;
+            }
+        }
+        return provider;
+    }
+
+    @Nullable
+    private static FoursquareEventProviderIcon readEventProviderIcon(@NonNull JsonParser parser) throws IOException {
+        if (!isObjectStart(parser)) {
+            return null;
+        }
+
+        final FoursquareEventProviderIcon icon = new FoursquareEventProviderIcon();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String fieldName = parser.getCurrentName();
+            parser.nextToken();
+
+            switch (fieldName) {
+                case "name":
+                    icon.name = readString(parser);
+                    break;
+                case "prefix":
+                    icon.prefix = readString(parser);
+                    break;
+                case "sizes":
+                    icon.sizes = readList(parser, INTEGER_READER);
+                    break;
+                default:
+                    parser.skipChildren();
+                    break;
+            }
+        }
+        return icon;
+    }
+
+    // *******************************************************
+    // INSTAGRAM
+    // *******************************************************
+
+    @Nullable
+    private static InstagramMedia readMedia(@NonNull JsonParser parser) throws IOException {
+        if (!isObjectStart(parser)) {
+            return null;
+        }
+
+        final InstagramMedia media = new InstagramMedia();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String fieldName = parser.getCurrentName();
+            parser.nextToken();
+
+            switch (fieldName) {
+                case "tags":
+                    media.tags = readList(parser, STRING_READER);
+                    break;
+                case "location":
+                    media.location = readInstagramLocation(parser);
+                    break;
+                case "comments":
+                    media.comments = readList(parser, CAPTION_READER);
+                    break;
+                case "filter":
+                    media.filter = readString(parser);
+                    break;
+                case "link":
+                    media.link = readString(parser);
+                    break;
+                case "likes":
+                    media.likes = readList(parser, INSTAGRAM_USER_READER);
+                    break;
+                case "images":
+                    media.images = readImageSet(parser);
+                    break;
+                case "videos":
+                    media.videos = readVideoSet(parser);
+                    break;
+                case "caption":
+                    media.caption = readCaption(parser);
+                    break;
+                case "type":
+                    media.type = readMediaType(parser);
+                    break;
+                case "id":
+                    media.id = readString(parser);
+                    break;
+                case "user":
+                    media.user = readInstagramUser(parser);
+                    break;
+                case "users_in_photo":
+                    media.users_in_photo = readList(parser, USER_IN_PHOTO_READER);
+                    break;
+                case "created_time":
+                    // Goes through the setter, which normalizes second and millisecond timestamps
+                    media.setCreatedTime(readLong(parser, 0));
+                    break;
+                default:
+                    parser.skipChildren();
+                    break;
+            }
+        }
+        return media;
+    }
+
+    @Nullable
+    private static InstagramMedia.Type readMediaType(@NonNull JsonParser parser) throws IOException {
+        final String type = readString(parser);
+        if (type == null) {
+            return null;
+        }
+
+        try {
+            return InstagramMedia.Type.valueOf(type);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    @Nullable
+    private static InstagramLocation readInstagramLocation(@NonNull JsonParser parser) throws IOException {
+        if (!isObjectStart(parser)) {
+            return null;
+        }
+
+        final InstagramLocation location = new InstagramLocation();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String fieldName = parser.getCurrentName();
+            parser.nextToken();
+
+            switch (fieldName) {
+                case "id":
+                    location.id = readString(parser);
+                    break;
+                case "foursquare_venue_id":
+                    location.foursquare_venue_id = readString(parser);
+                    break;
+                case "name":
+                    location.name = readString(parser);
+                    break;
+                case "latitude":
+                    location.latitude = readDouble(parser);
+                    break;
+                case "longitude":
+                    location.longitude = readDouble(parser);
+                    break;
+                default:
+                    parser.skipChildren();
+                    break;
+            }
+        }
+        return location;
+    }
+
+    @Nullable
+    private static InstagramCaption readCaption(@NonNull JsonParser parser) throws IOException {
+        if (!isObjectStart(parser)) {
+            return null;
+        }
+
+        final InstagramCaption caption = new InstagramCaption();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String fieldName = parser.getCurrentName();
+            parser.nextToken();
+
+            switch (fieldName) {
+                case "id":
+                    caption.id = readString(parser);
+                    break;
+                case "text":
+                    caption.text = readString(parser);
+                    break;
+                case "from":
+                    caption.from = readInstagramUser(parser);
+                    break;
+                case "created_time":
+                    caption.setCreatedTime(readLong(parser, 0));
+                    break;
+                default:
+                    parser.skipChildren();
+                    break;
+            }
+        }
+        return caption;
+    }
+
+    @Nullable
+    private static InstagramUser readInstagramUser(@NonNull JsonParser parser) throws IOException {
+        if (!isObjectStart(parser)) {
+            return null;
+        }
+
+        final InstagramUser user = new InstagramUser();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String fieldName = parser.getCurrentName();
+            parser.nextToken();
+
+            switch (fieldName) {
+                case "id":
+                    user.id = readString(parser);
+                    break;
+                case "username":
+                    user.username = readString(parser);
+                    break;
+                case "website":
+                    user.website = readString(parser);
+                    break;
+                case "profile_picture":
+                    user.profile_picture = readString(parser);
+                    break;
+                case "full_name":
+                    user.full_name = readString(parser);
+                    break;
+                case "bio":
+                    user.bio = readString(parser);
+                    break;
+                default:
+                    parser.skipChildren();
+                    break;
+            }
+        }
+        return user;
+    }
+
+    @Nullable
+    private static InstagramUserInPhoto readUserInPhoto(@NonNull JsonParser parser) throws IOException {
+        if (!isObjectStart(parser)) {
+            return null;
+        }
+
+        final InstagramUserInPhoto userInPhoto = new InstagramUserInPhoto();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String fieldName = parser.getCurrentName();
+            parser.nextToken();
+
+            switch (fieldName) {
+                case "position":
+                    userInPhoto.position = readPosition(parser);
+                    break;
+                case "user":
+                    userInPhoto.user = readInstagramUser(parser);
+                    break;
+                default:
+                    parser.skipChildren();
+                    break;
+            }
+        }
+        return userInPhoto;
+    }
+
+    @Nullable
+    private static XYPosition readPosition(@NonNull JsonParser parser) throws IOException {
+        if (!isObjectStart(parser)) {
+            return null;
+        }
+
+        final XYPosition position = new XYPosition();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String fieldName = parser.getCurrentName();
+            parser.nextToken();
+
+            switch (fieldName) {
+                case "x":
+                    position.x = readDouble(parser, 0);
+                    break;
+                case "y":
+                    position.y = readDouble(parser, 0);
+                    break;
+                default:
+                    parser.skipChildren();
+                    break;
+            }
+        }
+        return position;
+    }
+
+    @Nullable
+    private static InstagramImageSet readImageSet(@NonNull JsonParser parser) throws IOException {
+        if (!isObjectStart(parser)) {
+            return null;
+        }
+
+        final InstagramImageSet imageSet = new InstagramImageSet();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String fieldName = parser.getCurrentName();
+            parser.nextToken();
+
+            switch (fieldName) {
+                case "low_resolution":
+                    imageSet.low_resolution = readMediaObject(parser);
+                    break;
+                case "thumbnail":
+                    imageSet.thumbnail = readMediaObject(parser);
+                    break;
+                case "standard_resolution":
+                    imageSet.standard_resolution = readMediaObject(parser);
+                    break;
+                default:
+                    parser.skipChildren();
+                    break;
+            }
+        }
+        return imageSet;
+    }
+
+    @Nullable
+    private static InstagramVideoSet readVideoSet(@NonNull JsonParser parser) throws IOException {
+        if (!isObjectStart(parser)) {
+            return null;
+        }
+
+        final InstagramVideoSet videoSet = new InstagramVideoSet();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String fieldName = parser.getCurrentName();
+            parser.nextToken();
+
+            switch (fieldName) {
+                case "low_resolution":
+                    videoSet.low_resolution = readMediaObject(parser);
+                    break;
+                case "standard_resolution":
+                    videoSet.standard_resolution = readMediaObject(parser);
+                    break;
+                default:
+                    parser.skipChildren();
+                    break;
+            }
+        }
+        return videoSet;
+    }
+
+    @Nullable
+    private static InstagramMediaObject readMediaObject(@NonNull JsonParser parser) throws IOException {
+        if (!isObjectStart(parser)) {
+            return null;
+        }
+
+        final InstagramMediaObject mediaObject = new InstagramMediaObject();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String fieldName = parser.getCurrentName();
+            parser.nextToken();
+
+            switch (fieldName) {
+                case "url":
+                    mediaObject.url = readString(parser);
+                    break;
+                case "width":
+                    mediaObject.width = readInt(parser);
+                    break;
+                case "height":
+                    mediaObject.height = readInt(parser);
+                    break;
+                default:
+                    parser.skipChildren();
+                    break;
+            }
+        }
+        return mediaObject;
+    }
+
+    // *******************************************************
+    // ELEMENT READERS
+    // *******************************************************
+
+    private static final ElementReader<String> STRING_READER = new ElementReader<String>() {
+        @Override
+        public String read(@NonNull JsonParser parser) throws IOException {
+            return readString(parser);
+        }
+    };
+
+    private static final ElementReader<Integer> INTEGER_READER = new ElementReader<Integer>() {
+        @Override
+        public Integer read(@NonNull JsonParser parser) throws IOException {
+            return readInteger(parser);
+        }
+    };
+
+    private static final ElementReader<Map<String, Object>> MAP_READER = new ElementReader<Map<String, Object>>() {
+        @Override
+        public Map<String, Object> read(@NonNull JsonParser parser) throws IOException {
+            return readMap(parser);
+        }
+    };
+
+    private static final ElementReader<FoursquarePhoto> PHOTO_READER = new ElementReader<FoursquarePhoto>() {
+        @Override
+        public FoursquarePhoto read(@NonNull JsonParser parser) throws IOException {
+            return readPhoto(parser, new FoursquarePhoto());
+        }
+    };
+
+    private static final ElementReader<FoursquarePhoto> PHOTO_URL_READER = new ElementReader<FoursquarePhoto>() {
+        @Override
+        public FoursquarePhoto read(@NonNull JsonParser parser) throws IOException {
+            return readPhotoUrl(parser);
+        }
+    };
+
+    private static final ElementReader<String> TIP_TEXT_READER = new ElementReader<String>() {
+        @Override
+        public String read(@NonNull JsonParser parser) throws IOException {
+            return readTipText(parser);
+        }
+    };
+
+    private static final ElementReader<FoursquareTip> TIP_READER = new ElementReader<FoursquareTip>() {
+        @Override
+        public FoursquareTip read(@NonNull JsonParser parser) throws IOException {
+            return readTip(parser);
+        }
+    };
+
+    private static final ElementReader<FoursquareEvent> EVENT_READER = new ElementReader<FoursquareEvent>() {
+        @Override
+        public FoursquareEvent read(@NonNull JsonParser parser) throws IOException {
+            return readEvent(parser);
+        }
+    };
+
+    private static final ElementReader<FoursquareCategory> CATEGORY_READER = new ElementReader<FoursquareCategory>() {
+        @Override
+        public FoursquareCategory read(@NonNull JsonParser parser) throws IOException {
+            return readCategory(parser);
+        }
+    };
+
+    private static final ElementReader<InstagramCaption> CAPTION_READER = new ElementReader<InstagramCaption>() {
+        @Override
+        public InstagramCaption read(@NonNull JsonParser parser) throws IOException {
+            return readCaption(parser);
+        }
+    };
+
+    private static final ElementReader<InstagramUser> INSTAGRAM_USER_READER = new ElementReader<InstagramUser>() {
+        @Override
+        public InstagramUser read(@NonNull JsonParser parser) throws IOException {
+            return readInstagramUser(parser);
+        }
+    };
+
+    private static final ElementReader<InstagramUserInPhoto> USER_IN_PHOTO_READER = new ElementReader<InstagramUserInPhoto>() {
+        @Override
+        public InstagramUserInPhoto read(@NonNull JsonParser parser) throws IOException {
+            return readUserInPhoto(parser);
+        }
+    };
+
+    // *******************************************************
+    // PRIMITIVES
+    // *******************************************************
+
+    /**
+     * @return True if the parser is positioned at the start of an object. Anything else is skipped and read as null
+     */
+    private static boolean isObjectStart(@NonNull JsonParser parser) throws IOException {
+        if (parser.getCurrentToken() == JsonToken.START_OBJECT) {
+            return true;
+        }
+        parser.skipChildren();
+        return false;
+    }
+
+    /**
+     * @return True if the current value is a number, string or boolean. Containers are skipped and read as null
+     */
+    private static boolean isScalarValue(@NonNull JsonParser parser) throws IOException {
+        final JsonToken token = parser.getCurrentToken();
+        if (token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return false;
+        }
+        return token != JsonToken.VALUE_NULL;
+    }
+
+    @Nullable
+    private static String readString(@NonNull JsonParser parser) throws IOException {
+        return isScalarValue(parser) ? parser.getValueAsString() : null;
+    }
+
+    private static int readInt(@NonNull JsonParser parser) throws IOException {
+        return isScalarValue(parser) ? parser.getValueAsInt() : 0;
+    }
+
+    private static long readLong(@NonNull JsonParser parser, long defaultValue) throws IOException {
+        return isScalarValue(parser) ? parser.getValueAsLong(defaultValue) : defaultValue;
+    }
+
+    private static double readDouble(@NonNull JsonParser parser, double defaultValue) throws IOException {
+        return isScalarValue(parser) ? parser.getValueAsDouble(defaultValue) : defaultValue;
+    }
+
+    @Nullable
+    private static Integer readInteger(@NonNull JsonParser parser) throws IOException {
+        return isScalarValue(parser) ? parser.getValueAsInt() : null;
+    }
+
+    @Nullable
+    private static Long readLong(@NonNull JsonParser parser) throws IOException {
+        return isScalarValue(parser) ? parser.getValueAsLong() : null;
+    }
+
+    @Nullable
+    private static Double readDouble(@NonNull JsonParser parser) throws IOException {
+        return isScalarValue(parser) ? parser.getValueAsDouble() : null;
+    }
+
+    @Nullable
+    private static Boolean readBoolean(@NonNull JsonParser parser) throws IOException {
+        return isScalarValue(parser) ? parser.getValueAsBoolean() : null;
+    }
+
+    @Nullable
+    private static <T> List<T> readList(@NonNull JsonParser parser, @NonNull ElementReader<T> reader) throws IOException {
+        if (parser.getCurrentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return null;
+        }
+
+        final List<T> items = new ArrayList<>();
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            final T item = reader.read(parser);
+            if (item != null) {
+                items.add(item);
+            }
+        }
+        return items;
+    }
+
+    /**
+     * @return First non-null element of the array. The remaining elements are skipped without being read
+     */
+    @Nullable
+    private static <T> T readFirst(@NonNull JsonParser parser, @NonNull ElementReader<T> reader) throws IOException {
+        if (parser.getCurrentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return null;
+        }
+
+        T first = null;
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (first == null) {
+                first = reader.read(parser);
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return first;
+    }
+
+    /**
+     * Reads free-form objects (delivery, reservations, menu, hours timeframes) as plain maps, lists and scalars
+     */
+    @SuppressWarnings("unchecked")
+    @Nullable
+    private static Map<String, Object> readMap(@NonNull JsonParser parser) throws IOException {
+        if (parser.getCurrentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return null;
+        }
+        return (Map<String, Object>) readUntyped(parser);
+    }
+
+    @Nullable
+    private static Object readUntyped(@NonNull JsonParser parser) throws IOException {
+        switch (parser.getCurrentToken()) {
+            case START_OBJECT:
+                final Map<String, Object> map = new LinkedHashMap<>();
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    final String fieldName = parser.getCurrentName();
+                    parser.nextToken();
+                    map.put(fieldName, readUntyped(parser));
+                }
+                return map;
+            case START_ARRAY:
+                final List<Object> list = new ArrayList<>();
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    list.add(readUntyped(parser));
+                }
+                return list;
+            case VALUE_STRING:
+                return parser.getText();
+            case VALUE_NUMBER_INT:
+            case VALUE_NUMBER_FLOAT:
+                return parser.getNumberValue();
+            case VALUE_TRUE:
+                return Boolean.TRUE;
+            case VALUE_FALSE:
+                return Boolean.FALSE;
+            default:
+                return null;
+        }
+    }
+}
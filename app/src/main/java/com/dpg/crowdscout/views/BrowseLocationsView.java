@@ -8,6 +8,7 @@ import android.util.AttributeSet;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewTreeObserver;
+import android.widget.AbsListView;
 import android.widget.AdapterView;
 import android.widget.FrameLayout;
 import android.widget.GridView;
@@ -379,6 +380,31 @@ public class BrowseLocationsView extends FrameLayout {
         }
     }
 
+    /**
+     * Sets a listener that should be executed whenever the grid view scrolls
+     *
+     * @param listener {@link android.widget.AbsListView.OnScrollListener} Listener to execute onScroll
+     */
+    public void setGridViewOnScrollListener(AbsListView.OnScrollListener listener) {
+        if (m_gridView != null) {
+            m_gridView.setOnScrollListener(listener);
+        }
+    }
+
+    /**
+     * @return {@link int} Adapter position of the first visible grid item
+     */
+    public int getGridViewFirstVisiblePosition() {
+        return m_gridView == null ? AdapterView.INVALID_POSITION : m_gridView.getFirstVisiblePosition();
+    }
+
+    /**
+     * @return {@link int} Adapter position of the last visible grid item
+     */
+    public int getGridViewLastVisiblePosition() {
+        return m_gridView == null ? AdapterView.INVALID_POSITION : m_gridView.getLastVisiblePosition();
+    }
+
     /**
      * Sets a simple listener that should be executed whenever the layout changes
      *
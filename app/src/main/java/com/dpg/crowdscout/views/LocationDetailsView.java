@@ -7,14 +7,16 @@ import android.util.AttributeSet;
 import android.view.LayoutInflater;
 import android.view.animation.Animation;
 import android.view.animation.AnimationUtils;
+import android.widget.AbsListView;
 import android.widget.AdapterView;
 import android.widget.FrameLayout;
 import android.widget.ListView;
 
-import com.crowdscout.api.models.foursquare.FoursquareVenue;
 import com.dpg.crowdscout.R;
 import com.dpg.crowdscout.adapters.LocationDetailsAdapter;
 import com.dpg.crowdscout.models.LocationModel;
+import com.dpg.crowdscout.models.VenueSummary;
+import com.dpg.crowdscout.utils.ListMerger;
 
 /**
  * Created by dgraves on 1/28/15.
@@ -104,6 +106,16 @@ public class LocationDetailsView extends FrameLayout {
         }
     }
 
+    /**
+     * Re-renders the rows affected by a merge, once the adapter holds the merged snapshot
+     *
+     * @param diff    {@link ListMerger.Diff} Changes computed by ListMerger
+     * @param adapter {@link LocationDetailsAdapter} Adapter set through setAdapter()
+     */
+    public void dispatchUpdates(@NonNull ListMerger.Diff diff, @NonNull LocationDetailsAdapter adapter) {
+        ListMerger.dispatchUpdates(diff, adapter, m_listView);
+    }
+
     /**
      * Sets an click listener that should be executed whenever an item is clicked
      *
@@ -115,6 +127,17 @@ public class LocationDetailsView extends FrameLayout {
         }
     }
 
+    /**
+     * Sets a scroll listener that should be executed whenever the list scrolls
+     *
+     * @param listener {@link android.widget.AbsListView.OnScrollListener} Listener to execute onScroll
+     */
+    public void setListViewOnScrollListener(AbsListView.OnScrollListener listener) {
+        if (m_listView != null) {
+            m_listView.setOnScrollListener(listener);
+        }
+    }
+
     /**
      * Triggers a smooth scroll to the top of the list
      */
@@ -170,11 +193,11 @@ public class LocationDetailsView extends FrameLayout {
         }
     }
 
-    public FoursquareVenue getListViewItem(int position) {
+    public VenueSummary getListViewItem(int position) {
         if (position >= 0) {
             final Object item = m_listView.getItemAtPosition(position);
-            if (item != null && (item instanceof FoursquareVenue)) {
-                return ((FoursquareVenue) item);
+            if (item != null && (item instanceof VenueSummary)) {
+                return ((VenueSummary) item);
             }
         }
         return null;
@@ -0,0 +1,86 @@
+package com.dpg.crowdscout.benchmarks;
+
+import com.crowdscout.api.models.foursquare.FoursquareVenue;
+import com.dpg.crowdscout.models.VenueSummary;
+import com.dpg.crowdscout.network.ApiResponse;
+import com.dpg.crowdscout.utils.ModelDeserializers;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decodes explore responses of 50 and 200 venues, in JSON and in Smile:
+ * <ul>
+ * <li>reflectiveVenues: Jackson's bean deserializers, which RestClient used before ModelDeserializers</li>
+ * <li>venues: the hand-written FoursquareVenue deserializer, used for full venues</li>
+ * <li>summaries: straight into VenueSummary, the way venue lists are loaded</li>
+ * </ul>
+ * Readers are created once, as JacksonConverter caches them. Run with:
+ * <pre>
+ *   mvn -B compile exec:exec -Djmh.args=DeserializerBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DeserializerBenchmark {
+    @Param({"50", "200"})
+    public int venueCount;
+
+    @Param({"JSON", "SMILE"})
+    public Fixtures.Format format;
+
+    private byte[] m_payload;
+    private ObjectReader m_reflectiveReader;
+    private ObjectReader m_venueReader;
+    private ObjectReader m_summaryReader;
+
+    @Setup
+    public void setUp() throws IOException {
+        m_payload = Fixtures.createExploreResponse(venueCount, format);
+
+        m_reflectiveReader = Fixtures.createMapper(format).reader(new TypeReference<ApiResponse<List<FoursquareVenue>>>() {
+        });
+
+        final ObjectMapper mapper = Fixtures.createMapper(format);
+        mapper.registerModule(ModelDeserializers.createModule());
+        m_venueReader = mapper.reader(new TypeReference<ApiResponse<List<FoursquareVenue>>>() {
+        });
+        m_summaryReader = mapper.reader(new TypeReference<ApiResponse<List<VenueSummary>>>() {
+        });
+    }
+
+    @Benchmark
+    public ApiResponse<List<FoursquareVenue>> reflectiveVenues() throws IOException {
+        return m_reflectiveReader.readValue(m_payload);
+    }
+
+    @Benchmark
+    public ApiResponse<List<FoursquareVenue>> venues() throws IOException {
+        return m_venueReader.readValue(m_payload);
+    }
+
+    @Benchmark
+    public ApiResponse<List<VenueSummary>> summaries() throws IOException {
+        return m_summaryReader.readValue(m_payload);
+    }
+}
@@ -0,0 +1,79 @@
+package com.dpg.crowdscout.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.google.common.io.Files;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Response payloads built from the stand-in server fixtures (tools/standin-server/fixtures). The fixture directory
+ * is read from the crowdscout.fixtures system property, which the pom sets for tests and benchmarks.
+ */
+public final class Fixtures {
+    public static final String FIXTURES_PROPERTY = "crowdscout.fixtures";
+
+    public static final String EXPLORE = "explore/default.json";
+    public static final String VENUE = "venues/default.json";
+    public static final String MEDIA = "media/default.json";
+
+    /**
+     * Wire formats the app negotiates with the API
+     */
+    public enum Format {
+        JSON, SMILE
+    }
+
+    private static final ObjectMapper s_jsonMapper = new ObjectMapper();
+
+    private Fixtures() {
+    }
+
+    /**
+     * @return {@link ObjectMapper} New mapper for the format, without any module registered
+     */
+    public static ObjectMapper createMapper(Format format) {
+        return format == Format.SMILE ? new ObjectMapper(new SmileFactory()) : new ObjectMapper();
+    }
+
+    /**
+     * @param path {@link String} Fixture path, ie: EXPLORE
+     * @return Fixture re-encoded in the format, the way the stand-in server serves it
+     */
+    public static byte[] read(String path, Format format) throws IOException {
+        return encode(readTree(path), format);
+    }
+
+    /**
+     * @return Explore response holding venueCount venues. The fixture's venues are repeated as needed, each copy with
+     * its own id so that nothing downstream can dedupe them
+     */
+    public static byte[] createExploreResponse(int venueCount, Format format) throws IOException {
+        final ObjectNode response = (ObjectNode) readTree(EXPLORE);
+        final JsonNode venues = response.get("data");
+        if (venues == null || venues.size() == 0) {
+            throw new IOException(EXPLORE + " has no venues");
+        }
+
+        final ArrayNode data = response.putArray("data");
+        for (int i = 0; i < venueCount; i++) {
+            final ObjectNode venue = (ObjectNode) venues.get(i % venues.size()).deepCopy();
+            venue.put("id", venue.path("id").asText() + "-" + i);
+            data.add(venue);
+        }
+        return encode(response, format);
+    }
+
+    private static JsonNode readTree(String path) throws IOException {
+        final String dir = System.getProperty(FIXTURES_PROPERTY, "../standin-server/fixtures");
+        return s_jsonMapper.readTree(Files.toByteArray(new File(dir, path)));
+    }
+
+    private static byte[] encode(JsonNode tree, Format format) throws IOException {
+        return createMapper(format).writeValueAsBytes(tree);
+    }
+}
@@ -0,0 +1,78 @@
+package com.dpg.crowdscout.benchmarks;
+
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.profile.InternalProfiler;
+import org.openjdk.jmh.results.AggregationPolicy;
+import org.openjdk.jmh.results.IterationResult;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.ScalarResult;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reports how far the heap grew above what was live before each iteration, as peakHeap. Enable it with
+ * -prof com.dpg.crowdscout.benchmarks.PeakHeapProfiler.
+ * <p/>
+ * Only single shot benchmarks are measured, so that an iteration is one invocation. They should run with a young
+ * generation large enough that no collection happens during the invocation. The figure then includes the garbage
+ * the invocation created, which is what a device has to find room for when the decode runs.
+ */
+public class PeakHeapProfiler implements InternalProfiler {
+    private final List<MemoryPoolMXBean> m_heapPools = new ArrayList<>();
+    private long m_usedBefore;
+
+    public PeakHeapProfiler() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                m_heapPools.add(pool);
+            }
+        }
+    }
+
+    @Override
+    public String getDescription() {
+        return "Heap growth during each single shot invocation";
+    }
+
+    @Override
+    public void beforeIteration(BenchmarkParams benchmarkParams, IterationParams iterationParams) {
+        if (!isSingleShot(benchmarkParams)) {
+            return;
+        }
+
+        System.gc();
+        long used = 0;
+        for (MemoryPoolMXBean pool : m_heapPools) {
+            pool.resetPeakUsage();
+            used += pool.getUsage().getUsed();
+        }
+        m_usedBefore = used;
+    }
+
+    @Override
+    public Collection<? extends Result> afterIteration(BenchmarkParams benchmarkParams, IterationParams iterationParams,
+                                                       IterationResult result) {
+        if (!isSingleShot(benchmarkParams)) {
+            return Collections.emptyList();
+        }
+
+        // Pools peak at different times, so the sum is an upper bound. Without a collection only eden grows
+        long peak = 0;
+        for (MemoryPoolMXBean pool : m_heapPools) {
+            peak += pool.getPeakUsage().getUsed();
+        }
+        return Collections.singletonList(new ScalarResult("peakHeap", (peak - m_usedBefore) / 1024.0, "KB", AggregationPolicy.AVG));
+    }
+
+    private static boolean isSingleShot(BenchmarkParams benchmarkParams) {
+        return benchmarkParams.getMode() == Mode.SingleShotTime;
+    }
+}
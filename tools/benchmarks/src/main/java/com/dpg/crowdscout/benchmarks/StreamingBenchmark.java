@@ -0,0 +1,233 @@
+package com.dpg.crowdscout.benchmarks;
+
+import com.dpg.crowdscout.models.VenueSummary;
+import com.dpg.crowdscout.network.ApiResponse;
+import com.dpg.crowdscout.utils.JacksonConverter;
+import com.dpg.crowdscout.utils.ModelDeserializers;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import retrofit.converter.ConversionException;
+import retrofit.mime.TypedInput;
+
+/**
+ * Compares loading a venue list by streaming the explore response with JacksonConverter.readStreaming(), as
+ * RestClient does, against the databind path it replaced: Retrofit handing the response body to fromBody().
+ * <ul>
+ * <li>firstVenue*: time until the first venues can be shown, ie: the first chunk for streaming, the whole response
+ * for databind. The body arrives at bandwidthKbps, 0 for as fast as it can be read</li>
+ * <li>decode*: single shot decode of the whole response. Run with PeakHeapProfiler to get the peak heap of each</li>
+ * </ul>
+ * <pre>
+ *   mvn -B compile exec:exec -Djmh.args="StreamingBenchmark -prof com.dpg.crowdscout.benchmarks.PeakHeapProfiler"
+ * </pre>
+ */
+@Fork(1)
+public class StreamingBenchmark {
+    /**
+     * Same as RestClient.STREAMING_CHUNK_SIZE
+     */
+    private static final int STREAMING_CHUNK_SIZE = 10;
+
+    private static final Type RESPONSE_TYPE = new TypeReference<ApiResponse<List<VenueSummary>>>() {
+    }.getType();
+
+    /**
+     * Thrown by the chunk listener to stop reading once the first chunk has been handed over
+     */
+    private static final IOException FIRST_CHUNK_DELIVERED = new IOException("First chunk delivered");
+
+    @State(Scope.Benchmark)
+    public static class Payload {
+        @Param({"50", "200"})
+        public int venueCount;
+
+        @Param({"JSON", "SMILE"})
+        public Fixtures.Format format;
+
+        byte[] body;
+        String mimeType;
+        JacksonConverter converter;
+
+        @Setup
+        public void setUp() throws IOException {
+            body = Fixtures.createExploreResponse(venueCount, format);
+            mimeType = format == Fixtures.Format.SMILE ? "application/x-jackson-smile" : "application/json; charset=UTF-8";
+
+            // Set up like RestClient.createJacksonConverter()
+            final ObjectMapper jsonMapper = Fixtures.createMapper(Fixtures.Format.JSON);
+            jsonMapper.registerModule(ModelDeserializers.createModule());
+            final ObjectMapper smileMapper = Fixtures.createMapper(Fixtures.Format.SMILE);
+            smileMapper.registerModule(ModelDeserializers.createModule());
+            converter = new JacksonConverter(jsonMapper, smileMapper, JacksonConverter.Format.JSON);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Network {
+        @Param({"0", "512"})
+        public int bandwidthKbps;
+    }
+
+    // *******************************************************
+    // TIME TO FIRST VENUE
+    // *******************************************************
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 5, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    public VenueSummary firstVenueDatabind(Payload payload, Network network) throws ConversionException {
+        final InputStream in = new PacedInputStream(payload.body, network.bandwidthKbps * 1024L);
+        return decodeDatabind(payload, in).data.get(0);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 5, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    public VenueSummary firstVenueStreaming(Payload payload, Network network) throws IOException {
+        final InputStream in = new PacedInputStream(payload.body, network.bandwidthKbps * 1024L);
+        final VenueSummary[] first = new VenueSummary[1];
+        try {
+            payload.converter.readStreaming(in, payload.mimeType, VenueSummary.class, STREAMING_CHUNK_SIZE,
+                    new JacksonConverter.ChunkListener<VenueSummary>() {
+                        @Override
+                        public void onChunk(List<VenueSummary> items) throws IOException {
+                            first[0] = items.get(0);
+                            throw FIRST_CHUNK_DELIVERED;
+                        }
+                    });
+        } catch (IOException e) {
+            if (e != FIRST_CHUNK_DELIVERED) {
+                throw e;
+            }
+        }
+        return first[0];
+    }
+
+    // *******************************************************
+    // WHOLE RESPONSE
+    // *******************************************************
+
+    /**
+     * Young generation large enough that a decode never triggers a collection, and no TLABs so that eden usage
+     * grows by each allocation rather than by buffer, for PeakHeapProfiler
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 50)
+    @Measurement(iterations = 50)
+    @Fork(value = 1, jvmArgsAppend = {"-XX:+UseSerialGC", "-XX:-UseTLAB", "-Xms512m", "-Xmx512m", "-Xmn384m"})
+    public ApiResponse<List<VenueSummary>> decodeDatabind(Payload payload) throws ConversionException {
+        return decodeDatabind(payload, new PacedInputStream(payload.body, 0));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 50)
+    @Measurement(iterations = 50)
+    @Fork(value = 1, jvmArgsAppend = {"-XX:+UseSerialGC", "-XX:-UseTLAB", "-Xms512m", "-Xmx512m", "-Xmn384m"})
+    public ApiResponse<List<VenueSummary>> decodeStreaming(Payload payload) throws IOException {
+        return payload.converter.readStreaming(new PacedInputStream(payload.body, 0), payload.mimeType, VenueSummary.class,
+                STREAMING_CHUNK_SIZE, new JacksonConverter.ChunkListener<VenueSummary>() {
+                    @Override
+                    public void onChunk(List<VenueSummary> items) {
+                    }
+                });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ApiResponse<List<VenueSummary>> decodeDatabind(final Payload payload, final InputStream in) throws ConversionException {
+        // Retrofit hands bodies that are converted to a type straight to the converter, without buffering them
+        return (ApiResponse<List<VenueSummary>>) payload.converter.fromBody(new TypedInput() {
+            @Override
+            public String mimeType() {
+                return payload.mimeType;
+            }
+
+            @Override
+            public long length() {
+                return payload.body.length;
+            }
+
+            @Override
+            public InputStream in() {
+                return in;
+            }
+        }, RESPONSE_TYPE);
+    }
+
+    /**
+     * Serves a body in socket-sized reads, paced to a bandwidth the way the stand-in server paces its responses
+     */
+    static class PacedInputStream extends InputStream {
+        private static final int READ_SIZE = 4 * 1024;
+
+        private final byte[] m_body;
+        private final long m_bytesPerSecond;
+        private final long m_startedAt = System.nanoTime();
+        private int m_position;
+
+        /**
+         * @param bytesPerSecond Bandwidth to pace reads to, 0 for no pacing
+         */
+        PacedInputStream(byte[] body, long bytesPerSecond) {
+            m_body = body;
+            m_bytesPerSecond = bytesPerSecond;
+        }
+
+        @Override
+        public int read() throws IOException {
+            final byte[] single = new byte[1];
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (m_position >= m_body.length) {
+                return -1;
+            }
+
+            final int count = Math.min(Math.min(length, READ_SIZE), m_body.length - m_position);
+            if (m_bytesPerSecond > 0) {
+                final long dueAt = m_startedAt + (m_position + count) * TimeUnit.SECONDS.toNanos(1) / m_bytesPerSecond;
+                final long delay = dueAt - System.nanoTime();
+                if (delay > 0) {
+                    try {
+                        TimeUnit.NANOSECONDS.sleep(delay);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException(e);
+                    }
+                }
+            }
+
+            System.arraycopy(m_body, m_position, buffer, offset, count);
+            m_position += count;
+            return count;
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package android.os;
+
+/**
+ * Stand-in for the Android class referenced by the Parcelable constructors of the models. Never instantiated.
+ */
+public final class Parcel {
+    private Parcel() {
+    }
+}
@@ -0,0 +1,17 @@
+package android.os;
+
+/**
+ * Stand-in for the Android interface the models in crowd-scout-models.jar implement. Only needed so they load on
+ * a plain JVM; nothing here ever parcels them.
+ */
+public interface Parcelable {
+    public int describeContents();
+
+    public void writeToParcel(Parcel dest, int flags);
+
+    public interface Creator<T> {
+        public T createFromParcel(Parcel source);
+
+        public T[] newArray(int size);
+    }
+}
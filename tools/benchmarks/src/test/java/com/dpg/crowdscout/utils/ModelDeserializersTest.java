@@ -0,0 +1,152 @@
+package com.dpg.crowdscout.utils;
+
+import com.crowdscout.api.models.foursquare.FoursquarePhoto;
+import com.crowdscout.api.models.foursquare.FoursquareVenue;
+import com.crowdscout.api.models.instagram.InstagramMedia;
+import com.dpg.crowdscout.benchmarks.Fixtures;
+import com.dpg.crowdscout.models.VenueSummary;
+import com.dpg.crowdscout.network.ApiResponse;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Checks that ModelDeserializers decode the stand-in fixtures into the same models as Jackson's annotation-driven
+ * bean deserializers, in both wire formats, and that what the ResponseCache writes reads back unchanged.
+ * <p/>
+ * Models are compared through the trees Jackson serializes them to, since their equals() only compares ids.
+ */
+public class ModelDeserializersTest {
+    private static final TypeReference<ApiResponse<List<FoursquareVenue>>> VENUES = new TypeReference<ApiResponse<List<FoursquareVenue>>>() {
+    };
+    private static final TypeReference<ApiResponse<FoursquareVenue>> VENUE = new TypeReference<ApiResponse<FoursquareVenue>>() {
+    };
+    private static final TypeReference<ApiResponse<List<VenueSummary>>> SUMMARIES = new TypeReference<ApiResponse<List<VenueSummary>>>() {
+    };
+    private static final TypeReference<ApiResponse<List<InstagramMedia>>> MEDIA = new TypeReference<ApiResponse<List<InstagramMedia>>>() {
+    };
+
+    private final ObjectMapper m_treeMapper = new ObjectMapper();
+
+    @Test
+    public void venuesMatchReflectiveDeserializers() throws IOException {
+        for (Fixtures.Format format : Fixtures.Format.values()) {
+            assertSameAsReflective(Fixtures.read(Fixtures.EXPLORE, format), format, VENUES);
+            assertSameAsReflective(Fixtures.createExploreResponse(200, format), format, VENUES);
+        }
+    }
+
+    @Test
+    public void venueMatchesReflectiveDeserializers() throws IOException {
+        for (Fixtures.Format format : Fixtures.Format.values()) {
+            assertSameAsReflective(Fixtures.read(Fixtures.VENUE, format), format, VENUE);
+        }
+    }
+
+    @Test
+    public void mediaMatchReflectiveDeserializers() throws IOException {
+        for (Fixtures.Format format : Fixtures.Format.values()) {
+            assertSameAsReflective(Fixtures.read(Fixtures.MEDIA, format), format, MEDIA);
+        }
+    }
+
+    /**
+     * Summaries must hold what venue lists showed when they were built from full venues
+     */
+    @Test
+    public void summariesMatchReflectiveVenues() throws IOException {
+        for (Fixtures.Format format : Fixtures.Format.values()) {
+            final byte[] payload = Fixtures.read(Fixtures.EXPLORE, format);
+            final List<FoursquareVenue> venues = Fixtures.createMapper(format).<ApiResponse<List<FoursquareVenue>>>readValue(payload, VENUES).data;
+            final List<VenueSummary> summaries = createMapper(format).<ApiResponse<List<VenueSummary>>>readValue(payload, SUMMARIES).data;
+
+            assertFalse(venues.isEmpty());
+            assertEquals(venues.size(), summaries.size());
+            for (int i = 0; i < venues.size(); i++) {
+                assertSameTree(toSummary(venues.get(i)), summaries.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void venuesSurviveCacheRoundTrip() throws IOException {
+        assertSurvivesCacheRoundTrip(Fixtures.read(Fixtures.EXPLORE, Fixtures.Format.JSON), VENUES);
+        assertSurvivesCacheRoundTrip(Fixtures.read(Fixtures.VENUE, Fixtures.Format.JSON), VENUE);
+    }
+
+    @Test
+    public void summariesSurviveCacheRoundTrip() throws IOException {
+        assertSurvivesCacheRoundTrip(Fixtures.read(Fixtures.EXPLORE, Fixtures.Format.JSON), SUMMARIES);
+    }
+
+    @Test
+    public void mediaSurviveCacheRoundTrip() throws IOException {
+        assertSurvivesCacheRoundTrip(Fixtures.read(Fixtures.MEDIA, Fixtures.Format.JSON), MEDIA);
+    }
+
+    // *******************************************************
+    // HELPERS
+    // *******************************************************
+
+    /**
+     * @return {@link ObjectMapper} Mapper set up like the one RestClient decodes responses with
+     */
+    private static ObjectMapper createMapper(Fixtures.Format format) {
+        final ObjectMapper mapper = Fixtures.createMapper(format);
+        mapper.registerModule(ModelDeserializers.createModule());
+        return mapper;
+    }
+
+    /**
+     * @return {@link ObjectMapper} Mapper set up like the one the ResponseCache writes and reads entries with
+     */
+    private static ObjectMapper createCacheMapper() {
+        final ObjectMapper mapper = new ObjectMapper();
+        mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        mapper.registerModule(ModelDeserializers.createModule());
+        return mapper;
+    }
+
+    private <T> void assertSameAsReflective(byte[] payload, Fixtures.Format format, TypeReference<ApiResponse<T>> type) throws IOException {
+        final ApiResponse<T> expected = Fixtures.createMapper(format).readValue(payload, type);
+        final ApiResponse<T> actual = createMapper(format).readValue(payload, type);
+        assertNotNull(expected.data);
+        assertSameTree(expected, actual);
+    }
+
+    /**
+     * Decodes the response the way RestClient does, then writes it and reads it back the way the ResponseCache does
+     */
+    private <T> void assertSurvivesCacheRoundTrip(byte[] payload, TypeReference<ApiResponse<T>> type) throws IOException {
+        final ApiResponse<T> response = createMapper(Fixtures.Format.JSON).readValue(payload, type);
+        final ObjectMapper cacheMapper = createCacheMapper();
+        final ApiResponse<T> cached = cacheMapper.readValue(cacheMapper.writeValueAsBytes(response), type);
+        assertNotNull(response.data);
+        assertSameTree(response, cached);
+    }
+
+    private void assertSameTree(Object expected, Object actual) {
+        assertEquals(m_treeMapper.valueToTree(expected), m_treeMapper.valueToTree(actual));
+    }
+
+    private static VenueSummary toSummary(FoursquareVenue venue) {
+        FoursquarePhoto photo = null;
+        if (venue.photos != null && !venue.photos.isEmpty()) {
+            photo = new FoursquarePhoto();
+            photo.prefix = venue.photos.get(0).prefix;
+            photo.suffix = venue.photos.get(0).suffix;
+        }
+        final String tip = venue.tips == null || venue.tips.isEmpty() ? null : venue.tips.get(0).text;
+        return new VenueSummary(venue.id, venue.name, tip, venue.category == null ? null : venue.category.name,
+                venue.category == null ? null : venue.category.icon, photo);
+    }
+}
@@ -0,0 +1,785 @@
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+
+/**
+ * Local stand-in for the CrowdScout API, serving recorded fixtures with configurable latency, bandwidth and
+ * error injection so the client can be benchmarked repeatably. JSON fixtures are served as Smile to clients that
+ * prefer it, like the app does. Plain JDK, no dependencies:
+ * <pre>
+ *   javac StandInServer.java && java StandInServer --fixtures fixtures --latency-ms 150 --bandwidth-kbps 512
+ * </pre>
+ * Run with --help for every option, and see README.md for the fixture layout.
+ */
+public class StandInServer {
+    private static final String EXPLORE_PREFIX = "/foursquare/explore/near/";
+    private static final String VENUES_PREFIX = "/foursquare/venues/";
+    private static final String MEDIA_SUFFIX = "/instagram/media";
+    private static final String IMAGES_PREFIX = "/images/";
+
+    private static final String JSON_CONTENT_TYPE = "application/json; charset=UTF-8";
+    private static final String SMILE_CONTENT_TYPE = "application/x-jackson-smile";
+
+    private static final String DEFAULT_FIXTURE = "default";
+    private static final int CHUNK_SIZE = 4 * 1024;
+
+    private static final String USAGE = "Usage: java StandInServer [options]\n"
+            + "  --port <n>             Port to listen on (default 8080)\n"
+            + "  --fixtures <dir>       Fixture directory (default ./fixtures)\n"
+            + "  --latency-ms <n>       Delay before each response is sent (default 0)\n"
+            + "  --jitter-ms <n>        Random extra delay of up to n ms (default 0)\n"
+            + "  --bandwidth-kbps <n>   Per-response throughput cap in KB/s, 0 for unlimited (default 0)\n"
+            + "  --error-rate <0..1>    Share of API requests answered with --error-status (default 0)\n"
+            + "  --error-status <n>     Status of injected errors (default 503)\n"
+            + "  --record <url>         Fetch missing API fixtures from this base URL and save them\n"
+            + "  --smile <true|false>   Answer in Smile when the Accept header prefers it (default true)\n"
+            + "  --seed <n>             Seed for jitter and error injection, for reproducible runs";
+
+    private final File m_fixtures;
+    private final long m_latencyMs;
+    private final long m_jitterMs;
+    private final long m_bytesPerSecond;
+    private final double m_errorRate;
+    private final int m_errorStatus;
+    private final String m_recordUrl;
+    private final boolean m_isSmileEnabled;
+    private final Random m_random;
+
+    /**
+     * Smile encodings of the fixtures served so far, keyed by path. Encoded again when the fixture changes
+     */
+    private final ConcurrentHashMap<String, EncodedFixture> m_smileFixtures = new ConcurrentHashMap<>();
+
+    StandInServer(File fixtures, long latencyMs, long jitterMs, long bytesPerSecond, double errorRate, int errorStatus,
+                  String recordUrl, boolean isSmileEnabled, Random random) {
+        m_fixtures = fixtures;
+        m_latencyMs = latencyMs;
+        m_jitterMs = jitterMs;
+        m_bytesPerSecond = bytesPerSecond;
+        m_errorRate = errorRate;
+        m_errorStatus = errorStatus;
+        m_recordUrl = recordUrl;
+        m_isSmileEnabled = isSmileEnabled;
+        m_random = random;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = 8080;
+        File fixtures = new File("fixtures");
+        long latencyMs = 0;
+        long jitterMs = 0;
+        long bandwidthKbps = 0;
+        double errorRate = 0;
+        int errorStatus = 503;
+        String recordUrl = null;
+        boolean isSmileEnabled = true;
+        Random random = new Random();
+
+        for (int i = 0; i < args.length; i++) {
+            final String option = args[i];
+            if ("--help".equals(option) || i + 1 >= args.length) {
+                System.out.println(USAGE);
+                System.exit("--help".equals(option) ? 0 : 1);
+            }
+
+            final String value = args[++i];
+            switch (option) {
+                case "--port":
+                    port = Integer.parseInt(value);
+                    break;
+                case "--fixtures":
+                    fixtures = new File(value);
+                    break;
+                case "--latency-ms":
+                    latencyMs = Long.parseLong(value);
+                    break;
+                case "--jitter-ms":
+                    jitterMs = Long.parseLong(value);
+                    break;
+                case "--bandwidth-kbps":
+                    bandwidthKbps = Long.parseLong(value);
+                    break;
+                case "--error-rate":
+                    errorRate = Double.parseDouble(value);
+                    break;
+                case "--error-status":
+                    errorStatus = Integer.parseInt(value);
+                    break;
+                case "--record":
+                    recordUrl = value.endsWith("/") ? value.substring(0, value.length() - 1) : value;
+                    break;
+                case "--smile":
+                    isSmileEnabled = Boolean.parseBoolean(value);
+                    break;
+                case "--seed":
+                    random = new Random(Long.parseLong(value));
+                    break;
+                default:
+                    System.out.println("Unknown option " + option + "\n" + USAGE);
+                    System.exit(1);
+            }
+        }
+
+        final StandInServer standIn = new StandInServer(fixtures, latencyMs, jitterMs, bandwidthKbps * 1024, errorRate,
+                errorStatus, recordUrl, isSmileEnabled, random);
+        final HttpServer server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    standIn.handle(exchange);
+                } catch (IOException e) {
+                    log("%s %s failed: %s", exchange.getRequestMethod(), exchange.getRequestURI(), e.getMessage());
+                } finally {
+                    exchange.close();
+                }
+            }
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+
+        log("Serving %s on port %d (latency=%dms jitter=%dms bandwidth=%s errors=%.0f%% smile=%s%s)", fixtures.getAbsolutePath(),
+                port, latencyMs, jitterMs, bandwidthKbps == 0 ? "unlimited" : bandwidthKbps + "KB/s", errorRate * 100,
+                isSmileEnabled, recordUrl == null ? "" : ", recording from " + recordUrl);
+    }
+
+    // *******************************************************
+    // REQUEST HANDLING
+    // *******************************************************
+
+    void handle(HttpExchange exchange) throws IOException {
+        final long startedAt = System.currentTimeMillis();
+        final String path = exchange.getRequestURI().getRawPath();
+        final String query = exchange.getRequestURI().getRawQuery();
+
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            sendStatus(exchange, 405);
+            return;
+        }
+
+        final boolean isImage = path.startsWith(IMAGES_PREFIX);
+        final File fixture = isImage ? resolveImage(path) : resolveApiFixture(path, parseQuery(query));
+        if (fixture == null) {
+            sendStatus(exchange, 404);
+            log("GET %s -> 404 (no fixture)", exchange.getRequestURI());
+            return;
+        }
+
+        delay();
+
+        if (!isImage && m_errorRate > 0 && nextDouble() < m_errorRate) {
+            sendBody(exchange, m_errorStatus, JSON_CONTENT_TYPE, null,
+                    String.format("{\"code\":\"%d\",\"status\":\"Injected error\"}", m_errorStatus).getBytes("UTF-8"));
+            log("GET %s -> %d (injected) in %dms", exchange.getRequestURI(), m_errorStatus, System.currentTimeMillis() - startedAt);
+            return;
+        }
+
+        if (!fixture.isFile() && m_recordUrl != null && !isImage) {
+            record(path, query, fixture);
+        }
+        if (!fixture.isFile()) {
+            sendStatus(exchange, 404);
+            log("GET %s -> 404 (missing %s)", exchange.getRequestURI(), fixture.getPath());
+            return;
+        }
+
+        // Each encoding of a fixture is a different representation, so it gets its own ETag
+        final boolean isSmile = !isImage && m_isSmileEnabled && prefersSmile(exchange.getRequestHeaders().getFirst("Accept"));
+        final byte[] body = isSmile ? getSmileFixture(fixture) : readFully(new FileInputStream(fixture));
+        final String etag = createETag(body);
+        if (!isImage) {
+            exchange.getResponseHeaders().set("Vary", "Accept");
+        }
+        if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+            exchange.getResponseHeaders().set("ETag", etag);
+            exchange.sendResponseHeaders(304, -1);
+            log("GET %s -> 304 in %dms", exchange.getRequestURI(), System.currentTimeMillis() - startedAt);
+            return;
+        }
+
+        final String contentType = isImage ? getImageContentType(fixture) : isSmile ? SMILE_CONTENT_TYPE : JSON_CONTENT_TYPE;
+        sendBody(exchange, 200, contentType, etag, body);
+        log("GET %s -> 200 %s as %s (%d bytes) in %dms", exchange.getRequestURI(), fixture.getName(), contentType, body.length,
+                System.currentTimeMillis() - startedAt);
+    }
+
+    /**
+     * @return Smile encoding of a JSON fixture, reused until the fixture is modified
+     */
+    private byte[] getSmileFixture(File fixture) throws IOException {
+        final EncodedFixture cached = m_smileFixtures.get(fixture.getPath());
+        if (cached != null && cached.lastModified == fixture.lastModified()) {
+            return cached.body;
+        }
+
+        final long lastModified = fixture.lastModified();
+        final byte[] body = SmileEncoder.encode(new String(readFully(new FileInputStream(fixture)), "UTF-8"));
+        m_smileFixtures.put(fixture.getPath(), new EncodedFixture(lastModified, body));
+        return body;
+    }
+
+    private static class EncodedFixture {
+        final long lastModified;
+        final byte[] body;
+
+        EncodedFixture(long lastModified, byte[] body) {
+            this.lastModified = lastModified;
+            this.body = body;
+        }
+    }
+
+    /**
+     * Explore fixtures are keyed by address and section, ie: explore/New York, NY__food.json, falling back to the
+     * address alone and then explore/default.json. Venue and media fixtures are keyed by venue id, falling back to
+     * venues/default.json and media/default.json
+     *
+     * @return The most specific fixture that exists, or the one a recording should be saved to. null if the path
+     * isn't part of the API
+     */
+    private File resolveApiFixture(String path, Map<String, String> params) throws IOException {
+        final File dir;
+        final String key;
+        if (path.startsWith(EXPLORE_PREFIX)) {
+            dir = new File(m_fixtures, "explore");
+            final String address = decode(path.substring(EXPLORE_PREFIX.length()));
+            final String section = params.get("section");
+            key = section == null ? address : address + "__" + section;
+
+            final File addressFixture = new File(dir, toFileName(address));
+            if (!new File(dir, toFileName(key)).isFile() && addressFixture.isFile()) {
+                return addressFixture;
+            }
+        } else if (path.startsWith(VENUES_PREFIX) && path.endsWith(MEDIA_SUFFIX)) {
+            dir = new File(m_fixtures, "media");
+            key = decode(path.substring(VENUES_PREFIX.length(), path.length() - MEDIA_SUFFIX.length()));
+        } else if (path.startsWith(VENUES_PREFIX) && path.indexOf('/', VENUES_PREFIX.length()) == -1) {
+            dir = new File(m_fixtures, "venues");
+            key = decode(path.substring(VENUES_PREFIX.length()));
+        } else {
+            return null;
+        }
+
+        final File fixture = new File(dir, toFileName(key));
+        final File defaultFixture = new File(dir, toFileName(DEFAULT_FIXTURE));
+        if (!fixture.isFile() && m_recordUrl == null && defaultFixture.isFile()) {
+            return defaultFixture;
+        }
+        return fixture;
+    }
+
+    private File resolveImage(String path) throws IOException {
+        final File root = new File(m_fixtures, "images").getCanonicalFile();
+        final File image = new File(root, decode(path.substring(IMAGES_PREFIX.length()))).getCanonicalFile();
+        return image.getPath().startsWith(root.getPath() + File.separator) ? image : null;
+    }
+
+    /**
+     * Fetches a response from the --record upstream and saves it as the fixture, when it was successful
+     */
+    private void record(String path, String query, File fixture) throws IOException {
+        final URL url = new URL(m_recordUrl + path + (query == null ? "" : "?" + query));
+        final HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        try {
+            connection.setRequestProperty("Accept", "application/json");
+            if (connection.getResponseCode() != 200) {
+                log("Recording %s failed: %d", url, connection.getResponseCode());
+                return;
+            }
+
+            final byte[] body = readFully(connection.getInputStream());
+            fixture.getParentFile().mkdirs();
+            final OutputStream out = new FileOutputStream(fixture);
+            try {
+                out.write(body);
+            } finally {
+                out.close();
+            }
+            log("Recorded %s -> %s (%d bytes)", url, fixture.getPath(), body.length);
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    // *******************************************************
+    // NETWORK CONDITIONS
+    // *******************************************************
+
+    private void delay() {
+        final long delay = m_latencyMs + (m_jitterMs > 0 ? (long) (nextDouble() * m_jitterMs) : 0);
+        if (delay > 0) {
+            sleep(delay);
+        }
+    }
+
+    /**
+     * Writes the body in CHUNK_SIZE pieces, pacing them to the configured bandwidth
+     */
+    private void sendBody(HttpExchange exchange, int status, String contentType, String etag, byte[] body) throws IOException {
+        final Headers headers = exchange.getResponseHeaders();
+        headers.set("Content-Type", contentType);
+        if (etag != null) {
+            headers.set("ETag", etag);
+        }
+        exchange.sendResponseHeaders(status, body.length);
+
+        final OutputStream out = exchange.getResponseBody();
+        final long startedAt = System.currentTimeMillis();
+        for (int offset = 0; offset < body.length; offset += CHUNK_SIZE) {
+            final int count = Math.min(CHUNK_SIZE, body.length - offset);
+            out.write(body, offset, count);
+            out.flush();
+
+            if (m_bytesPerSecond > 0) {
+                final long dueAt = startedAt + (offset + count) * 1000L / m_bytesPerSecond;
+                sleep(dueAt - System.currentTimeMillis());
+            }
+        }
+        out.close();
+    }
+
+    private static void sendStatus(HttpExchange exchange, int status) throws IOException {
+        exchange.sendResponseHeaders(status, -1);
+    }
+
+    private synchronized double nextDouble() {
+        return m_random.nextDouble();
+    }
+
+    // *******************************************************
+    // SMILE
+    // *******************************************************
+
+    /**
+     * Re-encodes a JSON document as Smile (see the format specification of jackson-dataformat-smile), so the server
+     * can answer in Smile without depending on Jackson. Writes the 4-byte header with no shared name or value
+     * references, which every Smile decoder accepts. Integers that don't fit a long are not supported.
+     */
+    static class SmileEncoder {
+        private static final byte TOKEN_NULL = 0x21;
+        private static final byte TOKEN_FALSE = 0x22;
+        private static final byte TOKEN_TRUE = 0x23;
+        private static final byte TOKEN_INT32 = 0x24;
+        private static final byte TOKEN_INT64 = 0x25;
+        private static final byte TOKEN_FLOAT64 = 0x29;
+        private static final byte TOKEN_EMPTY_STRING = 0x20;
+        private static final byte TOKEN_LONG_ASCII = (byte) 0xE0;
+        private static final byte TOKEN_LONG_UNICODE = (byte) 0xE4;
+        private static final byte TOKEN_START_ARRAY = (byte) 0xF8;
+        private static final byte TOKEN_END_ARRAY = (byte) 0xF9;
+        private static final byte TOKEN_START_OBJECT = (byte) 0xFA;
+        private static final byte TOKEN_END_OBJECT = (byte) 0xFB;
+        private static final byte TOKEN_END_STRING = (byte) 0xFC;
+        private static final byte KEY_EMPTY = 0x20;
+        private static final byte KEY_LONG = 0x34;
+
+        private final String m_json;
+        private final ByteArrayOutputStream m_out;
+        private int m_position;
+
+        private SmileEncoder(String json) {
+            m_json = json;
+            m_out = new ByteArrayOutputStream(json.length() / 2);
+        }
+
+        static byte[] encode(String json) throws IOException {
+            final SmileEncoder encoder = new SmileEncoder(json);
+            encoder.m_out.write(new byte[]{':', ')', '\n', 0});
+            encoder.writeValue();
+            if (encoder.skipWhitespace() != -1) {
+                throw encoder.error("Trailing content");
+            }
+            return encoder.m_out.toByteArray();
+        }
+
+        private void writeValue() throws IOException {
+            final int c = skipWhitespace();
+            switch (c) {
+                case '{':
+                    m_position++;
+                    m_out.write(TOKEN_START_OBJECT);
+                    if (skipWhitespace() == '}') {
+                        m_position++;
+                    } else {
+                        do {
+                            if (skipWhitespace() != '"') {
+                                throw error("Expected a field name");
+                            }
+                            writeKey(readString());
+                            expect(':');
+                            writeValue();
+                        } while (nextSeparator('}'));
+                    }
+                    m_out.write(TOKEN_END_OBJECT);
+                    break;
+                case '[':
+                    m_position++;
+                    m_out.write(TOKEN_START_ARRAY);
+                    if (skipWhitespace() == ']') {
+                        m_position++;
+                    } else {
+                        do {
+                            writeValue();
+                        } while (nextSeparator(']'));
+                    }
+                    m_out.write(TOKEN_END_ARRAY);
+                    break;
+                case '"':
+                    writeString(readString());
+                    break;
+                case 't':
+                    expectLiteral("true");
+                    m_out.write(TOKEN_TRUE);
+                    break;
+                case 'f':
+                    expectLiteral("false");
+                    m_out.write(TOKEN_FALSE);
+                    break;
+                case 'n':
+                    expectLiteral("null");
+                    m_out.write(TOKEN_NULL);
+                    break;
+                default:
+                    if (c == '-' || (c >= '0' && c <= '9')) {
+                        writeNumber();
+                    } else {
+                        throw error("Unexpected character");
+                    }
+            }
+        }
+
+        /**
+         * @return true if another element follows the comma, false once the closing character was read
+         */
+        private boolean nextSeparator(char close) throws IOException {
+            final int c = skipWhitespace();
+            m_position++;
+            if (c == ',') {
+                return true;
+            } else if (c == close) {
+                return false;
+            }
+            throw error("Expected ',' or '" + close + "'");
+        }
+
+        private void writeKey(String name) throws IOException {
+            final byte[] bytes = name.getBytes("UTF-8");
+            final boolean isAscii = bytes.length == name.length();
+            if (bytes.length == 0) {
+                m_out.write(KEY_EMPTY);
+                return;
+            } else if (isAscii && bytes.length <= 64) {
+                m_out.write(0x80 + bytes.length - 1);
+            } else if (!isAscii && bytes.length <= 57) {
+                m_out.write(0xC0 + bytes.length - 2);
+            } else {
+                m_out.write(KEY_LONG);
+                m_out.write(bytes);
+                m_out.write(TOKEN_END_STRING);
+                return;
+            }
+            m_out.write(bytes);
+        }
+
+        private void writeString(String value) throws IOException {
+            final byte[] bytes = value.getBytes("UTF-8");
+            final boolean isAscii = bytes.length == value.length();
+            if (bytes.length == 0) {
+                m_out.write(TOKEN_EMPTY_STRING);
+                return;
+            } else if (isAscii && bytes.length <= 32) {
+                m_out.write(0x40 + bytes.length - 1);
+            } else if (isAscii && bytes.length <= 64) {
+                m_out.write(0x60 + bytes.length - 33);
+            } else if (!isAscii && bytes.length <= 33) {
+                m_out.write(0x80 + bytes.length - 2);
+            } else if (!isAscii && bytes.length <= 65) {
+                m_out.write(0xA0 + bytes.length - 34);
+            } else {
+                m_out.write(isAscii ? TOKEN_LONG_ASCII : TOKEN_LONG_UNICODE);
+                m_out.write(bytes);
+                m_out.write(TOKEN_END_STRING);
+                return;
+            }
+            m_out.write(bytes);
+        }
+
+        private void writeNumber() throws IOException {
+            final int start = m_position;
+            boolean isInteger = true;
+            while (m_position < m_json.length()) {
+                final char c = m_json.charAt(m_position);
+                if (c == '.' || c == 'e' || c == 'E') {
+                    isInteger = false;
+                } else if (!(c == '-' || c == '+' || (c >= '0' && c <= '9'))) {
+                    break;
+                }
+                m_position++;
+            }
+
+            final String number = m_json.substring(start, m_position);
+            try {
+                if (!isInteger) {
+                    final long bits = Double.doubleToRawLongBits(Double.parseDouble(number));
+                    m_out.write(TOKEN_FLOAT64);
+                    // 64 bits spread over 10 bytes of 7 bits each, most significant first
+                    for (int shift = 63; shift >= 0; shift -= 7) {
+                        m_out.write((int) (bits >>> shift) & 0x7F);
+                    }
+                    return;
+                }
+
+                final long value = Long.parseLong(number);
+                if (value >= -16 && value <= 15) {
+                    m_out.write(0xC0 + (int) zigzag(value));
+                } else if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+                    m_out.write(TOKEN_INT32);
+                    writeVInt(zigzag(value) & 0xFFFFFFFFL);
+                } else {
+                    m_out.write(TOKEN_INT64);
+                    writeVInt(zigzag(value));
+                }
+            } catch (NumberFormatException e) {
+                throw error("Unsupported number " + number);
+            }
+        }
+
+        private static long zigzag(long value) {
+            return (value << 1) ^ (value >> 63);
+        }
+
+        /**
+         * Unsigned variable length integer: 7 bits per byte, most significant first, and 6 bits in the last
+         * byte, which is the only one with its high bit set
+         */
+        private void writeVInt(long value) {
+            int shift = 6;
+            while (shift < 64 && (value >>> shift) != 0) {
+                shift += 7;
+            }
+            for (shift -= 7; shift >= 6; shift -= 7) {
+                m_out.write((int) (value >>> shift) & 0x7F);
+            }
+            m_out.write(0x80 | (int) (value & 0x3F));
+        }
+
+        private String readString() throws IOException {
+            final StringBuilder sb = new StringBuilder();
+            m_position++;
+            while (true) {
+                if (m_position >= m_json.length()) {
+                    throw error("Unterminated string");
+                }
+                final char c = m_json.charAt(m_position++);
+                if (c == '"') {
+                    return sb.toString();
+                } else if (c != '\\') {
+                    sb.append(c);
+                    continue;
+                }
+
+                if (m_position >= m_json.length()) {
+                    throw error("Unterminated string");
+                }
+                final char escaped = m_json.charAt(m_position++);
+                switch (escaped) {
+                    case 'b':
+                        sb.append('\b');
+                        break;
+                    case 'f':
+                        sb.append('\f');
+                        break;
+                    case 'n':
+                        sb.append('\n');
+                        break;
+                    case 'r':
+                        sb.append('\r');
+                        break;
+                    case 't':
+                        sb.append('\t');
+                        break;
+                    case 'u':
+                        if (m_position + 4 > m_json.length()) {
+                            throw error("Truncated escape");
+                        }
+                        try {
+                            sb.append((char) Integer.parseInt(m_json.substring(m_position, m_position + 4), 16));
+                        } catch (NumberFormatException e) {
+                            throw error("Invalid escape");
+                        }
+                        m_position += 4;
+                        break;
+                    default:
+                        sb.append(escaped);
+                }
+            }
+        }
+
+        private void expect(char expected) throws IOException {
+            if (skipWhitespace() != expected) {
+                throw error("Expected '" + expected + "'");
+            }
+            m_position++;
+        }
+
+        private void expectLiteral(String literal) throws IOException {
+            if (!m_json.startsWith(literal, m_position)) {
+                throw error("Expected " + literal);
+            }
+            m_position += literal.length();
+        }
+
+        /**
+         * @return The next character that isn't whitespace, without consuming it, or -1 at the end of the document
+         */
+        private int skipWhitespace() {
+            while (m_position < m_json.length()) {
+                final char c = m_json.charAt(m_position);
+                if (c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+                    return c;
+                }
+                m_position++;
+            }
+            return -1;
+        }
+
+        private IOException error(String message) {
+            return new IOException(message + " at offset " + m_position);
+        }
+    }
+
+    // *******************************************************
+    // STATIC HELPERS
+    // *******************************************************
+
+    private static Map<String, String> parseQuery(String query) throws IOException {
+        final Map<String, String> params = new HashMap<>();
+        if (query == null) {
+            return params;
+        }
+        for (String pair : query.split("&")) {
+            final int separator = pair.indexOf('=');
+            if (separator > 0) {
+                params.put(decode(pair.substring(0, separator)), decode(pair.substring(separator + 1)));
+            }
+        }
+        return params;
+    }
+
+    private static String decode(String value) throws IOException {
+        return URLDecoder.decode(value, "UTF-8");
+    }
+
+    /**
+     * Keeps fixture names readable while making sure a key can't escape its directory
+     */
+    private static String toFileName(String key) {
+        return key.replaceAll("[/\\\\:*?\"<>|]", "_") + ".json";
+    }
+
+    /**
+     * @return true if the Accept header ranks Smile above JSON. Media ranges without a q parameter have q=1
+     */
+    static boolean prefersSmile(String accept) {
+        if (accept == null) {
+            return false;
+        }
+
+        double smileQuality = 0;
+        double jsonQuality = 0;
+        for (String range : accept.split(",")) {
+            final String[] parts = range.split(";");
+            final String type = parts[0].trim().toLowerCase(Locale.US);
+            double quality = 1;
+            for (int i = 1; i < parts.length; i++) {
+                final String param = parts[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        quality = Double.parseDouble(param.substring(2));
+                    } catch (NumberFormatException e) {
+                        quality = 0;
+                    }
+                }
+            }
+
+            if (SMILE_CONTENT_TYPE.equals(type)) {
+                smileQuality = Math.max(smileQuality, quality);
+            } else if ("application/json".equals(type) || "application/*".equals(type) || "*/*".equals(type)) {
+                jsonQuality = Math.max(jsonQuality, quality);
+            }
+        }
+        return smileQuality > jsonQuality;
+    }
+
+    private static String getImageContentType(File image) {
+        final String name = image.getName().toLowerCase(Locale.US);
+        if (name.endsWith(".png")) {
+            return "image/png";
+        } else if (name.endsWith(".webp")) {
+            return "image/webp";
+        }
+        return "image/jpeg";
+    }
+
+    private static String createETag(byte[] body) {
+        try {
+            final byte[] digest = MessageDigest.getInstance("SHA-1").digest(body);
+            final StringBuilder sb = new StringBuilder("\"");
+            for (int i = 0; i < 8; i++) {
+                sb.append(String.format("%02x", digest[i]));
+            }
+            return sb.append('"').toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        try {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[CHUNK_SIZE];
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                out.write(buffer, 0, count);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void log(String format, Object... args) {
+        System.out.println(String.format(Locale.US, format, args));
+    }
+}